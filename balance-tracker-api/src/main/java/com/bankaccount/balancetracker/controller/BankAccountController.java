@@ -1,30 +1,48 @@
 package com.bankaccount.balancetracker.controller;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.bankaccount.balancetracker.dto.BalanceResponse;
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
+import com.bankaccount.balancetracker.dto.BatchTransactionResponse;
 import com.bankaccount.balancetracker.dto.ErrorResponse;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
 import com.bankaccount.balancetracker.exception.BalanceTrackerException;
 import com.bankaccount.balancetracker.service.BankAccountService;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
+import com.bankaccount.balancetracker.service.helper.TransactionValidator;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -37,74 +55,214 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class BankAccountController {
 
-	@Value("${msa.bank.transaction.amount.min}")
-	private BigDecimal minAmount;
+	private static final Pattern ACCOUNT_ID_PATTERN = Pattern.compile("[A-Za-z0-9-]{1,34}");
 
-	@Value("${msa.bank.transaction.amount.max}")
-	private BigDecimal maxAmount;
+	@Value("${msa.bank.transaction.batch.max-size:1000}")
+	private int maxBatchSize;
 
 	private final BankAccountService bankAccountService;
+	private final Validator validator;
+	private final BalanceBroadcaster balanceBroadcaster;
+	private final TransactionValidator transactionValidator;
 
-	public BankAccountController(@Qualifier("dbService") BankAccountService bankAccountService) {
+	public BankAccountController(@Qualifier("dbService") BankAccountService bankAccountService,
+			Validator validator, BalanceBroadcaster balanceBroadcaster, TransactionValidator transactionValidator) {
 		this.bankAccountService = bankAccountService;
+		this.validator = validator;
+		this.balanceBroadcaster = balanceBroadcaster;
+		this.transactionValidator = transactionValidator;
 	}
 
 	/**
 	 * Adds credit and debit transaction to the bank account
 	 * 
 	 * @param transaction
-	 * @return 201 Created
+	 * @return 201 Created, or 200 Ok when the transaction Id was already applied
 	 */
 	// Authentication and Authorization using OAuth or JWT could be applied in
 	// Production grade application.
 	@Operation(summary = "Add Transaction", description = "Adds credit and debit transaction to the bank account")
 	@ApiResponse(responseCode = "201", description = "Transaction completed successfully")
+	@ApiResponse(responseCode = "200", description = "Transaction already applied, the replay is ignored", content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransactionResult.class)))
 	@ApiResponse(responseCode = "400", description = "Invalid transaction input", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
 	@ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
 	@PostMapping("/transactions")
-	public ResponseEntity<Void> addTransaction(@Valid @RequestBody Transaction transaction) {
+	public ResponseEntity<TransactionResult> addTransaction(@Valid @RequestBody Transaction transaction) {
 		log.info("Received Transaction : transaction Id = {}, amount = {}, timestamp = {}",
 				transaction.getTransactionId(), transaction.getAmount(), LocalDateTime.now());
 		// validation for amount min & max range and signs for credit and debit
-		validateTransaction(transaction);
-		bankAccountService.processTransaction(transaction);
+		transactionValidator.validate(transaction);
+		if (!bankAccountService.processTransaction(transaction)) {
+			return ResponseEntity.ok(new TransactionResult(transaction.getTransactionId(),
+					TransactionResult.ALREADY_APPLIED, "Transaction already applied"));
+		}
 		return ResponseEntity.status(HttpStatus.CREATED).build();
 	}
 
 	/**
-	 * Retrieves the account balance
+	 * Adds a batch of credit and debit transactions to the bank account. Valid
+	 * transactions are applied together with a single balance update, invalid ones
+	 * and those the store rejects are reported per item without failing the
+	 * batch. Replayed transactions are reported as already applied, without
+	 * applying them again.
+	 * 
+	 * @param transactions
+	 * @return 201 Created when no transaction is rejected, 207 Multi-Status
+	 *         otherwise
+	 */
+	@Operation(summary = "Add Transactions", description = "Adds a batch of credit and debit transactions to the bank account with a single balance update")
+	@ApiResponse(responseCode = "201", description = "All transactions completed successfully or already applied", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchTransactionResponse.class)))
+	@ApiResponse(responseCode = "207", description = "Some transactions were rejected", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchTransactionResponse.class)))
+	@ApiResponse(responseCode = "400", description = "Empty or oversized batch", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@PostMapping("/transactions/batch")
+	public ResponseEntity<BatchTransactionResponse> addTransactions(@RequestBody List<Transaction> transactions) {
+		log.info("Received Transaction batch : size = {}, timestamp = {}",
+				transactions != null ? transactions.size() : "null", LocalDateTime.now());
+		if (transactions == null || transactions.isEmpty() || transactions.size() > maxBatchSize) {
+			throw new BalanceTrackerException("Batch must contain between 1 and " + maxBatchSize + " transactions",
+					HttpStatus.BAD_REQUEST);
+		}
+
+		TransactionResult[] results = new TransactionResult[transactions.size()];
+		List<Transaction> accepted = new ArrayList<>(transactions.size());
+		List<Integer> acceptedIndexes = new ArrayList<>(transactions.size());
+		Set<String> transactionIds = new HashSet<>();
+		for (int i = 0; i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			String rejection = rejectionReason(transaction, transactionIds);
+			if (rejection == null) {
+				accepted.add(transaction);
+				acceptedIndexes.add(i);
+			} else {
+				String transactionId = transaction != null ? transaction.getTransactionId() : null;
+				results[i] = new TransactionResult(transactionId, TransactionResult.REJECTED, rejection);
+			}
+		}
+
+		// Outcomes of the valid transactions are known only once they are persisted
+		if (!accepted.isEmpty()) {
+			List<TransactionResult> processed = bankAccountService.processTransactions(accepted);
+			for (int i = 0; i < processed.size(); i++) {
+				results[acceptedIndexes.get(i)] = processed.get(i);
+			}
+		}
+
+		int acceptedCount = countOf(results, TransactionResult.ACCEPTED);
+		int rejectedCount = countOf(results, TransactionResult.REJECTED);
+		int alreadyAppliedCount = countOf(results, TransactionResult.ALREADY_APPLIED);
+		log.info("Processed Transaction batch : accepted = {}, rejected = {}, already applied = {}", acceptedCount,
+				rejectedCount, alreadyAppliedCount);
+		BatchTransactionResponse response = new BatchTransactionResponse(acceptedCount, rejectedCount,
+				alreadyAppliedCount, List.of(results));
+		return ResponseEntity.status(rejectedCount == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+				.body(response);
+	}
+
+	/**
+	 * Retrieves the account balance. The response carries an ETag, and a request
+	 * with a matching If-None-Match gets 304 Not Modified without a body.
 	 * 
-	 * @return 200 Ok
+	 * @param request web request, for the If-None-Match check
+	 * @return 200 Ok, or 304 Not Modified when the balance is unchanged
 	 */
 	// Authentication, Authorization and Retry option on 404 could be applied in
 	// Production grade application.
 	@Operation(summary = "Retrieve Balance", description = "Retrieves account balance")
 	@ApiResponse(responseCode = "200", description = "Balance retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BalanceResponse.class)))
+	@ApiResponse(responseCode = "304", description = "Balance unchanged since the ETag in If-None-Match")
 	@ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
 	@GetMapping("/balance")
-	public ResponseEntity<BalanceResponse> getBalance() {
+	public ResponseEntity<byte[]> getBalance(WebRequest request) {
 		log.info("Retrive Balance : entry");
-		double balance = bankAccountService.retrieveBalance();
-		return ResponseEntity.ok(new BalanceResponse(balance));
+		return balanceResponse(bankAccountService.retrieveBalanceSnapshot(), request);
 	}
 
 	/**
-	 * Validation for amount
+	 * Streams the account balance as Server-Sent Events, the current balance
+	 * first and then each change, coalesced to the configured max rate, with
+	 * heartbeat comments in between
 	 * 
-	 * @param transaction transaction received.
+	 * @return event stream of `balance` events
 	 */
-	private void validateTransaction(Transaction transaction) {
-		BigDecimal amount = transaction.getAmount();
-		if (amount == null || amount.abs().compareTo((minAmount)) < 0 || amount.abs().compareTo(maxAmount) > 0) {
-			throw new BalanceTrackerException("Amount must be between £" + minAmount + " and £" + maxAmount,
-					HttpStatus.BAD_REQUEST);
+	@Operation(summary = "Stream Balance", description = "Streams the account balance as Server-Sent Events")
+	@ApiResponse(responseCode = "200", description = "Balance stream opened", content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = BalanceResponse.class)))
+	@ApiResponse(responseCode = "503", description = "Too many balance subscribers", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@GetMapping(path = "/balance/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamBalance() {
+		log.info("Stream Balance : entry");
+		return balanceBroadcaster.subscribe(BankAccountService.DEFAULT_ACCOUNT_ID,
+				() -> bankAccountService.retrieveBalanceSnapshot());
+	}
+
+	/**
+	 * Retrieves the balance of the given account
+	 *
+	 * @param accountId account ID
+	 * @param request   web request, for the If-None-Match check
+	 * @return 200 Ok, or 304 Not Modified when the balance is unchanged
+	 */
+	@Operation(summary = "Retrieve Account Balance", description = "Retrieves the balance of the given account")
+	@ApiResponse(responseCode = "200", description = "Balance retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BalanceResponse.class)))
+	@ApiResponse(responseCode = "304", description = "Balance unchanged since the ETag in If-None-Match")
+	@ApiResponse(responseCode = "400", description = "Invalid account ID", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@ApiResponse(responseCode = "404", description = "Balance not found for the account", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+	@GetMapping("/balance/{accountId}")
+	public ResponseEntity<byte[]> getAccountBalance(@PathVariable String accountId, WebRequest request) {
+		log.info("Retrive Balance : entry for accountId: {}", accountId);
+		if (!ACCOUNT_ID_PATTERN.matcher(accountId).matches()) {
+			throw new BalanceTrackerException("Invalid account ID", HttpStatus.BAD_REQUEST);
+		}
+		return balanceResponse(bankAccountService.retrieveBalanceSnapshot(accountId), request);
+	}
+
+	/**
+	 * Answers with the pre-serialised balance, or 304 when the client already
+	 * has it. Clients may keep the response but must revalidate it every time.
+	 *
+	 * @param snapshot balance snapshot
+	 * @param request  web request
+	 * @return 200 Ok with the balance, or null once 304 is set on the request
+	 */
+	private ResponseEntity<byte[]> balanceResponse(BalanceSnapshot snapshot, WebRequest request) {
+		if (request.checkNotModified(snapshot.getEtag())) {
+			return null;
+		}
+		return ResponseEntity.ok().eTag(snapshot.getEtag()).cacheControl(CacheControl.noCache())
+				.contentType(MediaType.APPLICATION_JSON).body(snapshot.getBody());
+	}
+
+	private static int countOf(TransactionResult[] results, String status) {
+		return (int) Arrays.stream(results).filter(result -> status.equals(result.getStatus())).count();
+	}
+
+	/**
+	 * Validates a transaction of a batch request, including bean validation of the
+	 * transaction fields and duplicate transaction Ids within the batch.
+	 * 
+	 * @param transaction    transaction received.
+	 * @param transactionIds transaction Ids accepted so far in the batch.
+	 * @return reason for rejection, or null when the transaction is valid.
+	 */
+	private String rejectionReason(Transaction transaction, Set<String> transactionIds) {
+		if (transaction == null) {
+			return "Transaction must not be null";
+		}
+		Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+		if (!violations.isEmpty()) {
+			return violations.stream().map(ConstraintViolation::getMessage).sorted()
+					.collect(Collectors.joining(", "));
 		}
-		if (transaction.getTransactionId().startsWith("CRE") && amount.signum() <= 0) {
-			throw new BalanceTrackerException("Credit must have positive amount", HttpStatus.BAD_REQUEST);
+		try {
+			transactionValidator.validate(transaction);
+		} catch (BalanceTrackerException ex) {
+			return ex.getMessage();
 		}
-		if (transaction.getTransactionId().startsWith("DEB") && amount.signum() >= 0) {
-			throw new BalanceTrackerException("Debit must have negative amount", HttpStatus.BAD_REQUEST);
+		if (!transactionIds.add(transaction.getTransactionId())) {
+			return "Duplicate transaction ID in batch";
 		}
+		return null;
 	}
 
 }
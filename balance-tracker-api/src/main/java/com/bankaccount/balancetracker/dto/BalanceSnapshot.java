@@ -0,0 +1,54 @@
+package com.bankaccount.balancetracker.dto;
+
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Balance with its response body serialised once and an ETag derived from the
+ * body, so every request for an unchanged balance gets the same bytes and the
+ * same ETag, on any node.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BalanceSnapshot {
+
+	private static final ObjectWriter writer = new ObjectMapper().writerFor(BalanceResponse.class);
+
+	/**
+	 * Account balance
+	 */
+	private final double balance;
+
+	/**
+	 * Balance response serialised as JSON
+	 */
+	private final byte[] body;
+
+	/**
+	 * Quoted strong ETag of the body
+	 */
+	private final String etag;
+
+	/**
+	 * Serialise the balance response
+	 *
+	 * @param balance account balance
+	 * @return snapshot of the balance
+	 */
+	public static BalanceSnapshot of(double balance) {
+		try {
+			byte[] body = writer.writeValueAsBytes(new BalanceResponse(balance));
+			return new BalanceSnapshot(balance, body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialise balance response", e);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.bankaccount.balancetracker.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO class to represent the batch transaction response
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Represents the per-item outcome of a batch of transactions")
+public class BatchTransactionResponse {
+
+	/**
+	 * Count of the transactions applied to the balance
+	 */
+	@Schema(description = "Number of transactions applied", example = "98")
+	private int acceptedCount;
+
+	/**
+	 * Count of the transactions rejected by validation or by the store
+	 */
+	@Schema(description = "Number of transactions rejected", example = "2")
+	private int rejectedCount;
+
+	/**
+	 * Count of the replayed transactions, applied by an earlier request
+	 */
+	@Schema(description = "Number of transactions already applied", example = "0")
+	private int alreadyAppliedCount;
+
+	/**
+	 * Outcome of each transaction, in request order
+	 */
+	@Schema(description = "Outcome of each transaction in request order")
+	private List<TransactionResult> results;
+
+}
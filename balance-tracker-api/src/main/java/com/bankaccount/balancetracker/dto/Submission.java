@@ -19,6 +19,11 @@ import lombok.NoArgsConstructor;
 @JsonRootName("submission")
 public class Submission {
 
+	/**
+	 * Id to read the submission back from the audit journal
+	 */
+	String submissionId;
+
 	/**
 	 * List of batches to be submitted to the Audit System
 	 */
@@ -0,0 +1,36 @@
+package com.bankaccount.balancetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO class to represent the outcome of an Audit System submission
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SubmissionResult {
+
+	/**
+	 * Count of the transactions submitted
+	 */
+	private int transactionCount;
+
+	/**
+	 * Count of the batches submitted
+	 */
+	private int batchCount;
+
+	/**
+	 * Id of the submission in the audit journal, null when nothing was submitted
+	 */
+	private String submissionId;
+
+	public SubmissionResult(int transactionCount, int batchCount) {
+		this(transactionCount, batchCount, null);
+	}
+
+}
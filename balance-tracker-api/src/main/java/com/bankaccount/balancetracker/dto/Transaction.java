@@ -3,8 +3,10 @@ package com.bankaccount.balancetracker.dto;
 import java.math.BigDecimal;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,7 +33,19 @@ public class Transaction {
 	 * Credit or Debit Amount
 	 */
 	@NotNull(message = "Amount must not be null")
+	@Digits(integer = 16, fraction = 2, message = "Amount must be a whole number of pence")
 	@Schema(description = "Transaction amount (positive for credit, negative for debit)", example = "150.00")
 	private BigDecimal amount;
 
+	/**
+	 * Account ID, optional. The default account is used when not provided.
+	 */
+	@Pattern(regexp = "[A-Za-z0-9-]{1,34}", message = "Account ID must be 1 to 34 letters, digits or hyphens")
+	@Schema(description = "Account ID, the default account is used when not provided", example = "ACC123456")
+	private String accountId;
+
+	public Transaction(String transactionId, BigDecimal amount) {
+		this(transactionId, amount, null);
+	}
+
 }
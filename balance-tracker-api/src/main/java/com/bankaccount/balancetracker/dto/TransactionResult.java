@@ -0,0 +1,42 @@
+package com.bankaccount.balancetracker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO class to represent the outcome of a single transaction, in a batch or
+ * replayed
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Represents the outcome of a single transaction in a batch request or a replayed request")
+public class TransactionResult {
+
+	public static final String ACCEPTED = "ACCEPTED";
+	public static final String REJECTED = "REJECTED";
+	public static final String ALREADY_APPLIED = "ALREADY_APPLIED";
+
+	/**
+	 * Transaction ID
+	 */
+	@Schema(description = "Transaction ID as received", example = "CRE-3fa85f64-5717-4562-b3fc-2c963f66afa6")
+	private String transactionId;
+
+	/**
+	 * Outcome of the transaction
+	 */
+	@Schema(description = "Outcome of the transaction (ACCEPTED, REJECTED or ALREADY_APPLIED)", example = "ACCEPTED")
+	private String status;
+
+	/**
+	 * Reason for rejection
+	 */
+	@Schema(description = "Reason the transaction was rejected", example = "Credit must have positive amount")
+	private String message;
+
+}
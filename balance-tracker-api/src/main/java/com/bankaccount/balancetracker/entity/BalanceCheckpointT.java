@@ -0,0 +1,50 @@
+package com.bankaccount.balancetracker.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Balance of an account as of an ingest sequence. The balance is the amount of
+ * the latest checkpoint plus the transactions of the account ingested after
+ * it, so deriving it scans a bounded tail instead of the whole history.
+ */
+@Entity
+@Table(name = "balance_checkpoint", indexes = @Index(name = "idx_balance_checkpoint_account_seq", columnList = "accountId, throughSeq"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceCheckpointT {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long checkpointId;
+
+	@Column(nullable = false)
+	private String accountId;
+
+	/**
+	 * Ingest sequence of the last transaction included in the amount
+	 */
+	@Column(nullable = false)
+	private long throughSeq;
+
+	@Column(nullable = false)
+	private BigDecimal amount;
+
+	@Column(nullable = false)
+	private LocalDateTime createdDateTime;
+
+}
@@ -0,0 +1,51 @@
+package com.bankaccount.balancetracker.entity;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One stripe of an account balance. In striped mode, writers spread the balance
+ * of an account over several slot rows and the balance is the sum of the
+ * account row and its slots.
+ */
+@Entity
+@Table(name = "balance_slot", indexes = @Index(name = "idx_balance_slot_account", columnList = "accountId"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSlotT {
+
+	@Id
+	private String slotId;
+
+	@Column(nullable = false)
+	private String accountId;
+
+	@Column(nullable = false)
+	private int slot;
+
+	@Column(nullable = false)
+	private BigDecimal amount;
+
+	/**
+	 * Builds the slot row Id for the account and slot number
+	 * 
+	 * @param accountId account Id
+	 * @param slot      slot number
+	 * @return slot row Id
+	 */
+	public static String slotId(String accountId, int slot) {
+		return accountId + "#" + slot;
+	}
+
+}
@@ -3,22 +3,50 @@ package com.bankaccount.balancetracker.entity;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import org.springframework.data.domain.Persistable;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
+/**
+ * Transaction for audit, PENDING until a worker claims it, CLAIMED under a
+ * lease while it is submitted and PROCESSED once the submission is confirmed.
+ * Claimable transactions are fetched in ingest sequence order through the
+ * (audit status, ingest sequence) index, and a claim is confirmed or released
+ * through the submission Id index. The balance of an account is derived
+ * from its latest checkpoint and the transactions after it, read through the
+ * (account Id, ingest sequence) index.
+ * <p>
+ * The Id is assigned by the application, so the entity tells Spring Data
+ * whether it is new: a built transaction is persisted with a plain INSERT
+ * instead of the SELECT a merge would issue first, and one loaded or already
+ * persisted is merged as usual.
+ */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+		@Index(name = "idx_transactions_audit_status_seq", columnList = "auditStatus, ingestSeq"),
+		@Index(name = "idx_transactions_submission_id", columnList = "submissionId"),
+		@Index(name = "idx_transactions_account_seq", columnList = "accountId, ingestSeq") })
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class TransactionT {
+public class TransactionT implements Persistable<String> {
 
 	@Id
 	private String transactionId;
@@ -35,4 +63,46 @@ public class TransactionT {
 	@Column(nullable = false)
 	private String auditStatus;
 
+	/**
+	 * Monotonic ingest sequence assigned by the DB on insert, a stable order for
+	 * transactions with equal timestamps
+	 */
+	@Column(insertable = false, updatable = false, columnDefinition = "BIGINT GENERATED BY DEFAULT AS IDENTITY")
+	private Long ingestSeq;
+
+	/**
+	 * Id of the claim, and of the audit submission, the transaction is claimed or
+	 * was processed in
+	 */
+	private String submissionId;
+
+	/**
+	 * Time a claim can be taken over by another worker, null unless claimed
+	 */
+	private LocalDateTime leaseExpiresAt;
+
+	@Transient
+	@Builder.Default
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private boolean newEntity = true;
+
+	@Override
+	public String getId() {
+		return transactionId;
+	}
+
+	@Override
+	public boolean isNew() {
+		return newEntity;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markNotNew() {
+		newEntity = false;
+	}
+
 }
@@ -0,0 +1,39 @@
+package com.bankaccount.balancetracker.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
+
+/**
+ * Repository interface for accessing the balance checkpoints.
+ */
+@Repository
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpointT, Long> {
+
+	/**
+	 * Fetches the latest checkpoint of the account through the (account Id,
+	 * sequence) index
+	 * 
+	 * @param accountId account Id
+	 * @return latest checkpoint, empty when the account has none yet
+	 */
+	Optional<BalanceCheckpointT> findFirstByAccountIdOrderByThroughSeqDesc(String accountId);
+
+	/**
+	 * Deletes the checkpoints of the account taken before the given sequence
+	 * 
+	 * @param accountId  account Id
+	 * @param throughSeq sequence of the oldest checkpoint to keep
+	 * @return number of checkpoints deleted
+	 */
+	@Modifying
+	@Query("DELETE FROM BalanceCheckpointT c WHERE c.accountId = :accountId AND c.throughSeq < :throughSeq")
+	int deleteOlderThan(@Param("accountId") String accountId, @Param("throughSeq") long throughSeq);
+
+}
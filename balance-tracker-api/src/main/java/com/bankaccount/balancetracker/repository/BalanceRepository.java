@@ -1,9 +1,11 @@
 package com.bankaccount.balancetracker.repository;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,4 +26,33 @@ public interface BalanceRepository extends JpaRepository<BalanceT, String> {
 	@Query("Select b From BalanceT b where b.accountId = :accountId")
 	Optional<BalanceT> findForUpdate(@Param("accountId") String accountId);
 
+	/**
+	 * Adds the delta to the balance in a single statement, so the row lock is held
+	 * only for the duration of the UPDATE instead of a read-modify-write.
+	 * 
+	 * @param accountId account Id
+	 * @param delta     amount to add, negative for debits
+	 * @return number of rows updated, 0 when the balance row does not exist yet
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("UPDATE BalanceT b SET b.amount = b.amount + :delta WHERE b.accountId = :accountId")
+	int incrementAmount(@Param("accountId") String accountId, @Param("delta") BigDecimal delta);
+
+	/**
+	 * Creates the balance row with the delta, or adds the delta when the row
+	 * exists. Standard SQL MERGE, supported by H2 and PostgreSQL 15+. It is not
+	 * atomic against a concurrent insert: when another transaction creates the
+	 * row first, it fails on the primary key and the caller retries.
+	 * 
+	 * @param accountId account Id
+	 * @param delta     amount to add, negative for debits
+	 * @return number of rows inserted or updated
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query(value = "MERGE INTO balance b USING (SELECT CAST(:accountId AS VARCHAR(255)) AS account_id, "
+			+ "CAST(:delta AS NUMERIC(38, 2)) AS amount) s ON (b.account_id = s.account_id) "
+			+ "WHEN MATCHED THEN UPDATE SET amount = b.amount + s.amount "
+			+ "WHEN NOT MATCHED THEN INSERT (account_id, amount) VALUES (s.account_id, s.amount)", nativeQuery = true)
+	int upsertAmount(@Param("accountId") String accountId, @Param("delta") BigDecimal delta);
+
 }
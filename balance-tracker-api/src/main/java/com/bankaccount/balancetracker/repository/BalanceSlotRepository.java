@@ -0,0 +1,94 @@
+package com.bankaccount.balancetracker.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.bankaccount.balancetracker.entity.BalanceSlotT;
+
+import jakarta.persistence.LockModeType;
+
+/**
+ * Repository interface for accessing the striped balance slot rows.
+ */
+@Repository
+public interface BalanceSlotRepository extends JpaRepository<BalanceSlotT, String> {
+
+	/**
+	 * Locks the slot rows of the account, in slot order, until the DB
+	 * transaction ends
+	 *
+	 * @param accountId account Id
+	 * @return slots of the account
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT s FROM BalanceSlotT s WHERE s.accountId = :accountId ORDER BY s.slot")
+	List<BalanceSlotT> findForUpdate(@Param("accountId") String accountId);
+
+	/**
+	 * Adds the delta to the slot in a single statement
+	 * 
+	 * @param slotId slot row Id
+	 * @param delta  amount to add, negative for debits
+	 * @return number of rows updated, 0 when the slot row does not exist yet
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("UPDATE BalanceSlotT s SET s.amount = s.amount + :delta WHERE s.slotId = :slotId")
+	int incrementAmount(@Param("slotId") String slotId, @Param("delta") BigDecimal delta);
+
+	/**
+	 * Creates the slot row with the delta, or adds the delta when the row exists.
+	 * When another transaction creates the row first, it fails on the primary
+	 * key and the caller retries.
+	 * 
+	 * @param slotId    slot row Id
+	 * @param accountId account Id
+	 * @param slot      slot number
+	 * @param delta     amount to add, negative for debits
+	 * @return number of rows inserted or updated
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query(value = "MERGE INTO balance_slot b USING (SELECT CAST(:slotId AS VARCHAR(255)) AS slot_id, "
+			+ "CAST(:accountId AS VARCHAR(255)) AS account_id, CAST(:slot AS INTEGER) AS slot, "
+			+ "CAST(:delta AS NUMERIC(38, 2)) AS amount) s ON (b.slot_id = s.slot_id) "
+			+ "WHEN MATCHED THEN UPDATE SET amount = b.amount + s.amount "
+			+ "WHEN NOT MATCHED THEN INSERT (slot_id, account_id, slot, amount) "
+			+ "VALUES (s.slot_id, s.account_id, s.slot, s.amount)", nativeQuery = true)
+	int upsertAmount(@Param("slotId") String slotId, @Param("accountId") String accountId, @Param("slot") int slot,
+			@Param("delta") BigDecimal delta);
+
+	/**
+	 * Sums the account balance row and all its slots in one statement, so the
+	 * result is consistent with a concurrent compaction.
+	 * 
+	 * @param accountId account Id
+	 * @return total balance, empty when neither the account row nor any slot exist
+	 */
+	@Query(value = "SELECT SUM(t.amount) FROM (SELECT amount FROM balance WHERE account_id = :accountId "
+			+ "UNION ALL SELECT amount FROM balance_slot WHERE account_id = :accountId) t", nativeQuery = true)
+	Optional<BigDecimal> sumTotalAmount(@Param("accountId") String accountId);
+
+	/**
+	 * Fetches the Ids of the accounts with a balance row or a slot
+	 * 
+	 * @return account Ids
+	 */
+	@Query(value = "SELECT account_id FROM balance UNION SELECT account_id FROM balance_slot", nativeQuery = true)
+	List<String> findAccountIds();
+
+	/**
+	 * Fetches the slots holding an amount not yet folded into the account row
+	 * 
+	 * @return slots with a non zero amount
+	 */
+	@Query("SELECT s FROM BalanceSlotT s WHERE s.amount <> 0 ORDER BY s.accountId, s.slot")
+	List<BalanceSlotT> findNonZeroSlots();
+
+}
@@ -1,15 +1,25 @@
 package com.bankaccount.balancetracker.repository;
 
-import org.springframework.data.domain.Page;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.bankaccount.balancetracker.entity.TransactionT;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
 /**
  * Repository interface for accessing transaction records.
@@ -18,18 +28,155 @@ import jakarta.persistence.LockModeType;
 public interface TransactionRepository extends JpaRepository<TransactionT, String> {
 
 	/**
-	 * Fetches pending transactions ordered by oldest first. Applied pessimistic
-	 * locking to prevent lost updates under concurrent transaction load. In
-	 * production (e.g., PostgreSQL), this translates to: SELECT ... FOR UPDATE —
-	 * locking the row until commit. H2 supports this syntax for testing but does
-	 * not enforce true row level locks.
+	 * Lock timeout Hibernate renders as SKIP LOCKED
+	 */
+	String SKIP_LOCKED = "-2";
+
+	/**
+	 * Fetches claimable transactions after the given ingest sequence, oldest
+	 * first. A transaction is claimable while pending, or while claimed under a
+	 * lease that has expired, so the claim of a worker that died is taken over.
+	 * This is a keyset fetch on the (audit status, ingest sequence) index, so its
+	 * cost does not grow with the table. It returns a Slice, which needs no count
+	 * query. The rows are locked with SKIP LOCKED, so concurrent claimers, on this
+	 * node or another, skip rows already locked by a claim and take disjoint
+	 * pages instead of waiting. In production (e.g., PostgreSQL), this translates
+	 * to: SELECT ... FOR UPDATE SKIP LOCKED. Hibernate's H2Dialect does not render
+	 * the hint, the SQL logged under H2 is a plain SELECT ... FOR UPDATE, so in
+	 * tests claimers wait on each other's rows instead. A claimer can then find
+	 * part of its page already claimed, which the claim UPDATE reports as fewer
+	 * rows claimed.
 	 * 
-	 * @param pageable pagination and limit config
-	 * @return a page of pending transactions
+	 * @param afterSeq ingest sequence to continue after, 0 for the start
+	 * @param now      current time, claims with a lease expiring before it are
+	 *                 claimable
+	 * @param pageable limit config, always the first page
+	 * @return a slice of claimable transactions, only the fields to submit
 	 */
-	
 	@Lock(LockModeType.PESSIMISTIC_WRITE)
-	@Query("SELECT t from TransactionT t WHERE t.auditStatus = 'PENDING' ORDER BY t.updatedDateTime ASC")
-	Page<TransactionT> findPendingTransactions(Pageable pageable);
+	@QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = SKIP_LOCKED))
+	@Query("SELECT t.transactionId AS transactionId, t.amount AS amount, t.accountId AS accountId, t.ingestSeq AS ingestSeq "
+			+ "FROM TransactionT t WHERE (t.auditStatus = 'PENDING' OR (t.auditStatus = 'CLAIMED' AND t.leaseExpiresAt < :now)) "
+			+ "AND t.ingestSeq > :afterSeq ORDER BY t.ingestSeq ASC")
+	Slice<PendingTransaction> findClaimableTransactions(@Param("afterSeq") long afterSeq,
+			@Param("now") LocalDateTime now, Pageable pageable);
+
+	/**
+	 * Claims the given claimable transactions under a claim Id until the lease
+	 * expires, in one UPDATE
+	 * 
+	 * @param transactionIds transaction IDs
+	 * @param claimId        claim ID, also the audit submission ID
+	 * @param leaseExpiresAt time the claim can be taken over by another worker
+	 * @param now            current time
+	 * @return number of rows claimed
+	 */
+	@Modifying
+	@Query("UPDATE TransactionT t SET t.auditStatus = 'CLAIMED', t.submissionId = :claimId, t.leaseExpiresAt = :leaseExpiresAt "
+			+ "WHERE t.transactionId IN :transactionIds "
+			+ "AND (t.auditStatus = 'PENDING' OR (t.auditStatus = 'CLAIMED' AND t.leaseExpiresAt < :now))")
+	int claim(@Param("transactionIds") List<String> transactionIds, @Param("claimId") String claimId,
+			@Param("leaseExpiresAt") LocalDateTime leaseExpiresAt, @Param("now") LocalDateTime now);
+
+	/**
+	 * Marks the transactions still held by the claim as processed once submitted,
+	 * in one UPDATE
+	 * 
+	 * @param claimId claim ID
+	 * @return number of rows updated, fewer than claimed when the lease expired
+	 *         and part of the claim was taken over
+	 */
+	@Modifying
+	@Query("UPDATE TransactionT t SET t.auditStatus = 'PROCESSED', t.leaseExpiresAt = NULL "
+			+ "WHERE t.submissionId = :claimId AND t.auditStatus = 'CLAIMED'")
+	int confirmClaim(@Param("claimId") String claimId);
+
+	/**
+	 * Puts the transactions still held by a failed claim back to pending, in one
+	 * UPDATE
+	 * 
+	 * @param claimId claim ID
+	 * @return number of rows updated
+	 */
+	@Modifying
+	@Query("UPDATE TransactionT t SET t.auditStatus = 'PENDING', t.submissionId = NULL, t.leaseExpiresAt = NULL "
+			+ "WHERE t.submissionId = :claimId AND t.auditStatus = 'CLAIMED'")
+	int releaseClaim(@Param("claimId") String claimId);
+
+	/**
+	 * Size and oldest update time of the pending transactions, in one aggregate
+	 * query
+	 * 
+	 * @return pending backlog, with a null oldest time when there is none
+	 */
+	@Query("SELECT COUNT(t) AS size, MIN(t.updatedDateTime) AS oldest FROM TransactionT t WHERE t.auditStatus = 'PENDING'")
+	PendingBacklog findPendingBacklog();
+
+	/**
+	 * Count and sum of the transactions of the account ingested after one
+	 * sequence and up to another, a range scan on the (account Id, ingest
+	 * sequence) index
+	 * 
+	 * @param accountId  account Id
+	 * @param afterSeq   sequence to sum after, exclusive
+	 * @param throughSeq sequence to sum through, inclusive
+	 * @return tail of the account, with a zero count and amount when empty
+	 */
+	@Query("SELECT COUNT(t) AS count, COALESCE(SUM(t.amount), 0) AS amount FROM TransactionT t "
+			+ "WHERE t.accountId = :accountId AND t.ingestSeq > :afterSeq AND t.ingestSeq <= :throughSeq")
+	BalanceTail sumTail(@Param("accountId") String accountId, @Param("afterSeq") long afterSeq,
+			@Param("throughSeq") long throughSeq);
+
+	/**
+	 * Latest sequence of the transactions of the account ingested after the
+	 * given sequence and before the given time. Sequences are assigned on insert,
+	 * before commit, so every transaction up to this sequence is committed only
+	 * when read while holding the balance rows of the account, which each writer
+	 * locks before its insert and holds until its commit.
+	 * 
+	 * @param accountId      account Id
+	 * @param afterSeq       sequence to search after, exclusive
+	 * @param ingestedBefore time the transactions were ingested before
+	 * @return latest settled sequence, empty when there is none after afterSeq
+	 */
+	@Query("SELECT MAX(t.ingestSeq) FROM TransactionT t "
+			+ "WHERE t.accountId = :accountId AND t.ingestSeq > :afterSeq AND t.updatedDateTime < :ingestedBefore")
+	Optional<Long> findSettledSeq(@Param("accountId") String accountId, @Param("afterSeq") long afterSeq,
+			@Param("ingestedBefore") LocalDateTime ingestedBefore);
+
+	/**
+	 * Projection of a pending transaction, the fields to submit and the ingest
+	 * sequence to continue after
+	 */
+	interface PendingTransaction {
+
+		String getTransactionId();
+
+		BigDecimal getAmount();
+
+		String getAccountId();
+
+		long getIngestSeq();
+	}
+
+	/**
+	 * Projection of the pending backlog
+	 */
+	interface PendingBacklog {
+
+		long getSize();
+
+		LocalDateTime getOldest();
+	}
+
+	/**
+	 * Projection of the transactions of an account after a checkpoint
+	 */
+	interface BalanceTail {
+
+		long getCount();
+
+		BigDecimal getAmount();
+	}
 
 }
@@ -1,63 +1,311 @@
 /**
- * 
+ *
  */
 package com.bankaccount.balancetracker.scheduler;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.bankaccount.balancetracker.dto.SubmissionResult;
 import com.bankaccount.balancetracker.dto.Transaction;
-import com.bankaccount.balancetracker.entity.TransactionT;
 import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.PendingBacklog;
+import com.bankaccount.balancetracker.repository.TransactionRepository.PendingTransaction;
 import com.bankaccount.balancetracker.service.AuditSubmissionService;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Scheduler to fetch the transactions based on the scheduler config limit and
- * splitting to batches and submit to the Audit System. It runs at a fixed delay
- * configured via application properties
+ * splitting to batches and submit to the Audit System. Each run keeps draining
+ * full pages of pending transactions, within a page and time budget, until
+ * fewer than the limit are left. Pages are fetched by keyset on the ingest
+ * sequence, continuing after the last page of the worker. Each run starts
+ * again from the beginning, so a transaction committed late with a lower
+ * sequence, or put back to pending, is picked up by the next run.
+ * <p>
+ * Pages are claimed with a lease: each page is fetched with SKIP LOCKED as a
+ * projection and marked as claimed under a new claim Id with one UPDATE, in its
+ * own short DB transaction. It is submitted asynchronously under that Id after
+ * the claim commits, so no row lock is held during the audit I/O, and the claim
+ * is confirmed as processed once the submission completes, or released back to
+ * pending when it fails. Claimers skip each other's locked and claimed rows, so
+ * the claim workers of a run, and the schedulers of every API node, drain
+ * disjoint pages in parallel. A claim whose lease expires before it is
+ * confirmed, because its node died, is claimed again by the next worker.
+ * <p>
+ * The delay to the next run adapts to the backlog and the observed ingest
+ * rate, between the min and max delay.
  */
 @Component
 @Slf4j
-public class AuditSubmissionScheduler {
+public class AuditSubmissionScheduler implements SchedulingConfigurer {
+
+	/**
+	 * Weight of the latest sample in the smoothed ingest rate
+	 */
+	private static final double INGEST_RATE_WEIGHT = 0.5;
 
-	private static final String PROCESSED = "PROCESSED";
 	private final TransactionRepository transactionRepository;
 	private final AuditSubmissionService auditSubmissionService;
+	private final TransactionTemplate transactionTemplate;
+	private final AtomicLong backlogSize = new AtomicLong();
+	private final AtomicLong oldestPendingMillis = new AtomicLong();
+	private final AtomicLong delayMs = new AtomicLong();
+
+	private long lastRunMillis;
+	private long lastBacklogSize = -1;
+	private volatile double ingestPerMs;
 
 	@Value("${msa.auditsystem.transaction.limit}")
 	private int transactionLimit;
 
+	@Value("${msa.auditsystem.scheduler.delay-ms}")
+	private long maxDelayMs;
+
+	@Value("${msa.auditsystem.scheduler.min-delay-ms:1000}")
+	private long minDelayMs;
+
+	@Value("${msa.auditsystem.scheduler.max-pages-per-run:20}")
+	private int maxPagesPerRun;
+
+	@Value("${msa.auditsystem.scheduler.max-run-ms:10000}")
+	private long maxRunMs;
+
+	@Value("${msa.auditsystem.scheduler.claim-workers:1}")
+	private int claimWorkers;
+
+	@Value("${msa.auditsystem.scheduler.lease-ms:120000}")
+	private long leaseMs;
+
+	private ExecutorService claimExecutor;
+
 	public AuditSubmissionScheduler(TransactionRepository transactionRepository,
-			AuditSubmissionService auditSubmissionService) {
+			AuditSubmissionService auditSubmissionService, PlatformTransactionManager transactionManager,
+			MeterRegistry meterRegistry) {
 		this.transactionRepository = transactionRepository;
 		this.auditSubmissionService = auditSubmissionService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 
+		Gauge.builder("audit.backlog.size", backlogSize, AtomicLong::get)
+				.description("Pending transactions waiting for audit submission").register(meterRegistry);
+		TimeGauge.builder("audit.backlog.age", oldestPendingMillis, TimeUnit.MILLISECONDS,
+				oldest -> oldest.get() == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest.get()))
+				.description("Age of the oldest pending transaction").register(meterRegistry);
+		TimeGauge.builder("audit.scheduler.delay", delayMs, TimeUnit.MILLISECONDS, AtomicLong::get)
+				.description("Delay before the next audit submission run").register(meterRegistry);
+		Gauge.builder("audit.ingest.rate", this, scheduler -> scheduler.ingestPerMs * 1000)
+				.description("Smoothed pending transactions ingested per second").register(meterRegistry);
 	}
 
 	/**
-	 * Scheduled method that triggers audit submission.It only proceeds if exactly
-	 * `transactionLimit` pending transactions are available. Transactions are
-	 * submitted in batches and marked as processed.
+	 * Start the claim workers when a run drains with more than one
+	 */
+	@PostConstruct
+	public void startClaimWorkers() {
+		if (claimWorkers > 1) {
+			AtomicInteger threadCount = new AtomicInteger();
+			claimExecutor = Executors.newFixedThreadPool(claimWorkers, runnable -> {
+				Thread thread = new Thread(runnable, "audit-claim-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	@PreDestroy
+	public void stopClaimWorkers() {
+		if (claimExecutor != null) {
+			claimExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Register the submission run with a trigger reading the adaptive delay, the
+	 * first run starting straight away
+	 */
+	@Override
+	public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+		taskRegistrar.addTriggerTask(this::submitPendingTransactions, triggerContext -> {
+			Instant lastCompletion = triggerContext.lastCompletion();
+			return lastCompletion == null ? Instant.now() : lastCompletion.plusMillis(delayMs.get());
+		});
+	}
+
+	/**
+	 * Scheduled method that triggers audit submission. Each claim worker drains
+	 * pages of exactly `transactionLimit` pending transactions until fewer are
+	 * left, a submission fails straight away, or the page or time budget of the
+	 * run, shared by the workers, is used up.
 	 */
-	@Scheduled(fixedDelayString = "${msa.auditsystem.scheduler.delay-ms}")
-	@Transactional
 	public void submitPendingTransactions() {
 		log.info("submitPendingTransactions: entry");
 		log.info("AuditSubmissionScheduler: Triggered at {}", LocalDateTime.now());
 
-		// Fetch oldest pending transactions up to configured limit
-		// order
-		Page<TransactionT> page = transactionRepository.findPendingTransactions(PageRequest.of(0, transactionLimit));
-		List<TransactionT> pendingTransactions = page.getContent();
+		long start = System.currentTimeMillis();
+		AtomicInteger pageBudget = new AtomicInteger(maxPagesPerRun);
+		AtomicInteger pages = new AtomicInteger();
+		int submitted;
+		if (claimExecutor == null) {
+			submitted = drain(start, pageBudget, pages);
+		} else {
+			List<CompletableFuture<Integer>> workers = IntStream.range(0, claimWorkers)
+					.mapToObj(i -> CompletableFuture.supplyAsync(() -> drain(start, pageBudget, pages), claimExecutor))
+					.toList();
+			submitted = workers.stream().mapToInt(CompletableFuture::join).sum();
+		}
+		if (pages.get() > 1) {
+			log.info("AuditSubmissionScheduler: Drained {} pages of {} transactions in {} ms", pages.get(),
+					transactionLimit, System.currentTimeMillis() - start);
+		}
+		adaptDelay(submitted);
+	}
+
+	/**
+	 * Claim and submit pages, continuing after the last page claimed by this
+	 * worker, while the run budget lasts
+	 *
+	 * @param start      start time of the run
+	 * @param pageBudget pages left to the run
+	 * @param pages      pages claimed by the run
+	 * @return transactions submitted by this worker
+	 */
+	private int drain(long start, AtomicInteger pageBudget, AtomicInteger pages) {
+		int submitted = 0;
+		long afterSeq = 0;
+		while (System.currentTimeMillis() - start < maxRunMs && pageBudget.getAndDecrement() > 0) {
+			long cursor = afterSeq;
+			Claim claim = transactionTemplate.execute(status -> claimPendingTransactions(cursor));
+			if (claim == null || claim.transactions().isEmpty()) {
+				break;
+			}
+			afterSeq = claim.lastSeq();
+			pages.incrementAndGet();
+			submitted += claim.transactions().size();
+			if (submit(claim).isCompletedExceptionally()) {
+				break;
+			}
+		}
+		return submitted;
+	}
+
+	/**
+	 * Submit to audit system after the claim commits, without waiting for it,
+	 * then confirm the claim or release it when the submission fails
+	 *
+	 * @param claim transactions claimed under the claim Id
+	 * @return future of the submission
+	 */
+	private CompletableFuture<SubmissionResult> submit(Claim claim) {
+		String claimId = claim.claimId();
+		int claimed = claim.transactions().size();
+		CompletableFuture<SubmissionResult> future = auditSubmissionService.submitAsync(claimId,
+				claim.transactions());
+		future.whenComplete((result, ex) -> {
+			if (ex != null) {
+				log.error("AuditSubmissionScheduler: Submission {} of {} transactions failed, marking them as Pending",
+						claimId, claimed, ex);
+				transactionTemplate.executeWithoutResult(status -> transactionRepository.releaseClaim(claimId));
+			} else {
+				Integer confirmed = transactionTemplate.execute(status -> transactionRepository.confirmClaim(claimId));
+				if (confirmed != null && confirmed < claimed) {
+					log.warn("AuditSubmissionScheduler: Lease of submission {} expired, {} of {} transactions were "
+							+ "claimed again", claimId, claimed - confirmed, claimed);
+				}
+				log.info("AuditSubmissionScheduler: Submitted {} transactions in {} batches at {}",
+						result.getTransactionCount(), result.getBatchCount(), LocalDateTime.now());
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Refresh the backlog metrics, update the smoothed ingest rate from the
+	 * backlog growth plus what this run submitted, and set the next delay
+	 *
+	 * @param submitted transactions submitted by this run
+	 */
+	private void adaptDelay(int submitted) {
+		PendingBacklog backlog = transactionRepository.findPendingBacklog();
+		long now = System.currentTimeMillis();
+		backlogSize.set(backlog.getSize());
+		oldestPendingMillis.set(backlog.getOldest() == null ? 0
+				: backlog.getOldest().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+
+		if (lastBacklogSize >= 0 && now > lastRunMillis) {
+			long ingested = Math.max(0, backlog.getSize() - lastBacklogSize + submitted);
+			double sample = (double) ingested / (now - lastRunMillis);
+			ingestPerMs = INGEST_RATE_WEIGHT * sample + (1 - INGEST_RATE_WEIGHT) * ingestPerMs;
+		}
+		lastBacklogSize = backlog.getSize();
+		lastRunMillis = now;
+
+		delayMs.set(nextDelayMs(backlog.getSize(), ingestPerMs));
+		log.debug("AuditSubmissionScheduler: Backlog {} transactions, ingest {} per second, next run in {}",
+				backlog.getSize(), String.format("%.1f", ingestPerMs * 1000), Duration.ofMillis(delayMs.get()));
+	}
+
+	/**
+	 * Delay until the backlog is expected to fill the next page, the min delay
+	 * when a full page is already waiting and the max delay when nothing is
+	 * coming in
+	 *
+	 * @param backlog     pending transactions left
+	 * @param ingestPerMs smoothed transactions ingested per millisecond
+	 * @return delay in milliseconds
+	 */
+	long nextDelayMs(long backlog, double ingestPerMs) {
+		if (backlog >= transactionLimit) {
+			return minDelayMs;
+		}
+		if (ingestPerMs <= 0) {
+			return maxDelayMs;
+		}
+		long fillMs = (long) ((transactionLimit - backlog) / ingestPerMs);
+		return Math.max(minDelayMs, Math.min(maxDelayMs, fillMs));
+	}
+
+	/**
+	 * Fetch the claimable transactions and claim them under a new claim Id, must
+	 * run inside a DB transaction
+	 *
+	 * @param afterSeq ingest sequence to continue after
+	 * @return transactions to submit with the claim Id and the last ingest
+	 *         sequence, empty when the limit is not met or only part of the page
+	 *         could be claimed
+	 */
+	private Claim claimPendingTransactions(long afterSeq) {
+		// Fetch oldest claimable transactions up to configured limit
+		// in ingest order, skipping rows locked by other claimers
+		LocalDateTime now = LocalDateTime.now();
+		Slice<PendingTransaction> slice = transactionRepository.findClaimableTransactions(afterSeq, now,
+				PageRequest.of(0, transactionLimit));
+		List<PendingTransaction> pendingTransactions = slice.getContent();
 
 		// Skip if count doesn't match configured limit
 		if (pendingTransactions.size() != transactionLimit) {
@@ -67,22 +315,39 @@ public class AuditSubmissionScheduler {
 				log.info("Skipping Audit Submission: expected limit {}, found {}", transactionLimit,
 						pendingTransactions.size());
 			}
-			return;
+			return Claim.EMPTY;
 		}
 
-		// Map entities to DTO for submission
+		// Map projections to DTO for submission
 		List<Transaction> dtoList = pendingTransactions.stream()
-				.map(t -> new Transaction(t.getTransactionId(), t.getAmount())).toList();
-
-		// Submit to audit system
-		auditSubmissionService.submit(dtoList);
+				.map(t -> new Transaction(t.getTransactionId(), t.getAmount(), t.getAccountId())).toList();
+		List<String> transactionIds = dtoList.stream().map(Transaction::getTransactionId).toList();
 
-		// Mark transactions as processed
-		pendingTransactions.forEach(t -> t.setAuditStatus(PROCESSED));
-		transactionRepository.saveAll(pendingTransactions);
-		log.info("AuditSubmissionScheduler: Submitted {} transactions and marked as Processed at {}", dtoList.size(),
+		// Claim the transactions under a lease. The rows are locked, so every one
+		// of them should still be claimable. Where the database does not skip or
+		// hold the locks, another claimer can take part of the page first; then
+		// the part claimed here is released, so no row is submitted twice, and
+		// the page is claimed again on the next run
+		String claimId = UUID.randomUUID().toString();
+		int claimed = transactionRepository.claim(transactionIds, claimId, now.plus(Duration.ofMillis(leaseMs)), now);
+		if (claimed != transactionIds.size()) {
+			log.warn("AuditSubmissionScheduler: Claimed {} of {} transactions in submission {}, releasing the claim",
+					claimed, transactionIds.size(), claimId);
+			transactionRepository.releaseClaim(claimId);
+			return Claim.EMPTY;
+		}
+		log.info("AuditSubmissionScheduler: Claimed {} transactions in submission {} at {}", claimed, claimId,
 				LocalDateTime.now());
+		return new Claim(claimId, dtoList, pendingTransactions.get(pendingTransactions.size() - 1).getIngestSeq());
+	}
+
+	/**
+	 * Page of transactions claimed under a claim Id, which is also the submission
+	 * Id, and the ingest sequence to continue after
+	 */
+	private record Claim(String claimId, List<Transaction> transactions, long lastSeq) {
 
+		static final Claim EMPTY = new Claim(null, List.of(), 0);
 	}
 
 }
@@ -0,0 +1,118 @@
+package com.bankaccount.balancetracker.scheduler;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
+import com.bankaccount.balancetracker.repository.BalanceCheckpointRepository;
+import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.BalanceTail;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scheduler to checkpoint the account balances. Once at least the configured
+ * number of transactions have been ingested after the latest checkpoint of an
+ * account, it records the balance through the latest of them, so the tail
+ * scanned to derive the balance stays bounded however long the history grows.
+ * Sequences are assigned on insert, not on commit, so a transaction with a
+ * lower sequence may still be uncommitted. Each writer locks the balance row
+ * or slot of the account before its insert and holds it until its commit, so
+ * the checkpoint locks them all first and waits for the writers in flight.
+ * Writers that follow get higher sequences. A writer creating a slot row holds
+ * no lock the checkpoint can wait on, so only transactions ingested longer
+ * than the grace period ago are folded in as well. Each account is
+ * checkpointed in its own DB transaction, so the locks are held briefly. The
+ * previous checkpoint is kept and older ones are deleted.
+ */
+@Component
+@Slf4j
+public class BalanceCheckpointer {
+
+	private final BalanceCheckpointRepository balanceCheckpointRepository;
+	private final BalanceRepository balanceRepository;
+	private final BalanceSlotRepository balanceSlotRepository;
+	private final TransactionRepository transactionRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	/**
+	 * Min number of transactions after the latest checkpoint to take the next one
+	 */
+	@Value("${msa.bank.balance.checkpoint.interval:10000}")
+	private int checkpointInterval;
+
+	/**
+	 * Age a transaction must reach before it is folded into a checkpoint, longer
+	 * than any DB transaction creating a balance row or slot
+	 */
+	@Value("${msa.bank.balance.checkpoint.grace-ms:10000}")
+	private long graceMs;
+
+	public BalanceCheckpointer(BalanceCheckpointRepository balanceCheckpointRepository,
+			BalanceRepository balanceRepository, BalanceSlotRepository balanceSlotRepository,
+			TransactionRepository transactionRepository, PlatformTransactionManager transactionManager) {
+		this.balanceCheckpointRepository = balanceCheckpointRepository;
+		this.balanceRepository = balanceRepository;
+		this.balanceSlotRepository = balanceSlotRepository;
+		this.transactionRepository = transactionRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Scheduled method that checkpoints every account with enough settled
+	 * transactions after its latest checkpoint, one DB transaction per account.
+	 */
+	@Scheduled(fixedDelayString = "${msa.bank.balance.checkpoint.delay-ms:60000}")
+	public void checkpointBalances() {
+		LocalDateTime ingestedBefore = LocalDateTime.now().minusNanos(graceMs * 1_000_000);
+		for (String accountId : balanceSlotRepository.findAccountIds()) {
+			transactionTemplate.executeWithoutResult(status -> checkpointBalance(accountId, ingestedBefore));
+		}
+	}
+
+	/**
+	 * Checkpoints the account when enough transactions have settled after its
+	 * latest checkpoint, once the writers in flight on the account have committed
+	 *
+	 * @param accountId      account Id
+	 * @param ingestedBefore time the transactions to fold in were ingested before
+	 */
+	private void checkpointBalance(String accountId, LocalDateTime ingestedBefore) {
+		// Slots first, in the order the compactor locks them
+		balanceSlotRepository.findForUpdate(accountId);
+		balanceRepository.findForUpdate(accountId);
+
+		Optional<BalanceCheckpointT> latest = balanceCheckpointRepository
+				.findFirstByAccountIdOrderByThroughSeqDesc(accountId);
+		long afterSeq = latest.map(BalanceCheckpointT::getThroughSeq).orElse(0L);
+		Optional<Long> settledSeq = transactionRepository.findSettledSeq(accountId, afterSeq, ingestedBefore);
+		if (settledSeq.isEmpty()) {
+			log.debug("Skipping Balance Checkpoint: No settled transactions for accountId: {}", accountId);
+			return;
+		}
+
+		BalanceTail tail = transactionRepository.sumTail(accountId, afterSeq, settledSeq.get());
+		if (tail.getCount() < checkpointInterval) {
+			log.debug("Skipping Balance Checkpoint: {} settled transactions for accountId: {}", tail.getCount(),
+					accountId);
+			return;
+		}
+
+		BigDecimal amount = latest.map(BalanceCheckpointT::getAmount).orElse(BigDecimal.ZERO).add(tail.getAmount());
+		balanceCheckpointRepository.save(BalanceCheckpointT.builder().accountId(accountId)
+				.throughSeq(settledSeq.get()).amount(amount).createdDateTime(LocalDateTime.now()).build());
+		balanceCheckpointRepository.deleteOlderThan(accountId, afterSeq);
+		log.info("BalanceCheckpointer: Checkpointed accountId: {} with amount {} through sequence {} after {} transactions",
+				accountId, amount, settledSeq.get(), tail.getCount());
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.bankaccount.balancetracker.scheduler;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bankaccount.balancetracker.entity.BalanceSlotT;
+import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scheduler to fold the striped balance slots back into the account balance
+ * row. Each slot is decremented by the amount read rather than reset to zero,
+ * so increments committed concurrently by writers are never lost. It also runs
+ * at startup, folding leftover slots when striping has been switched off.
+ */
+@Component
+@Slf4j
+public class BalanceSlotCompactor {
+
+	private final BalanceRepository balanceRepository;
+	private final BalanceSlotRepository balanceSlotRepository;
+
+	public BalanceSlotCompactor(BalanceRepository balanceRepository, BalanceSlotRepository balanceSlotRepository) {
+		this.balanceRepository = balanceRepository;
+		this.balanceSlotRepository = balanceSlotRepository;
+	}
+
+	/**
+	 * Scheduled method that folds every non zero slot into its account balance
+	 * row in one DB transaction.
+	 */
+	@Scheduled(fixedDelayString = "${msa.bank.balance.compaction-delay-ms:60000}")
+	@Transactional
+	public void compactBalanceSlots() {
+		List<BalanceSlotT> slots = balanceSlotRepository.findNonZeroSlots();
+		if (slots.isEmpty()) {
+			log.debug("Skipping Balance Compaction: No balance slots to fold");
+			return;
+		}
+
+		Map<String, List<BalanceSlotT>> slotsByAccount = slots.stream()
+				.collect(Collectors.groupingBy(BalanceSlotT::getAccountId, LinkedHashMap::new, Collectors.toList()));
+		slotsByAccount.forEach((accountId, accountSlots) -> {
+			BigDecimal folded = BigDecimal.ZERO;
+			for (BalanceSlotT slot : accountSlots) {
+				balanceSlotRepository.incrementAmount(slot.getSlotId(), slot.getAmount().negate());
+				folded = folded.add(slot.getAmount());
+			}
+			if (balanceRepository.incrementAmount(accountId, folded) == 0) {
+				balanceRepository.upsertAmount(accountId, folded);
+			}
+			log.info("BalanceSlotCompactor: Folded {} slots with amount {} into accountId: {}", accountSlots.size(),
+					folded, accountId);
+		});
+	}
+
+}
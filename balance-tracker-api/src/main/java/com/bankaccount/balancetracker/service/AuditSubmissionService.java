@@ -4,7 +4,10 @@
 package com.bankaccount.balancetracker.service;
 
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import com.bankaccount.balancetracker.dto.SubmissionResult;
 import com.bankaccount.balancetracker.dto.Transaction;
 
 /**
@@ -19,4 +22,27 @@ public interface AuditSubmissionService {
 	 */
 	void submit(List<Transaction> transactions);
 
+	/**
+	 * Submit transactions to the Audit System on the submission executor under a
+	 * new submission Id
+	 * 
+	 * @param transactions transactions to submit to the Audit System
+	 * @return future completed with the submission result, or exceptionally with
+	 *         a 503 when the executor is saturated and rejects it
+	 */
+	default CompletableFuture<SubmissionResult> submitAsync(List<Transaction> transactions) {
+		return submitAsync(UUID.randomUUID().toString(), transactions);
+	}
+
+	/**
+	 * Submit transactions to the Audit System on the submission executor under
+	 * the given submission Id, so the caller can record it beforehand
+	 * 
+	 * @param submissionId Id of the submission
+	 * @param transactions transactions to submit to the Audit System
+	 * @return future completed with the submission result, or exceptionally with
+	 *         a 503 when the executor is saturated and rejects it
+	 */
+	CompletableFuture<SubmissionResult> submitAsync(String submissionId, List<Transaction> transactions);
+
 }
@@ -3,23 +3,80 @@
  */
 package com.bankaccount.balancetracker.service;
 
+import java.util.List;
+
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
 
 /**
  * Service to aggregate transactions tracking the overall balance for an
  * account.
  */
 public interface BankAccountService {
+
+	/**
+	 * Account used when the transaction does not carry an account ID, the producer
+	 * does not send it.
+	 */
+	String DEFAULT_ACCOUNT_ID = "ACC123456";
+
 	/**
 	 * Process a given transaction - this is to be called by the credit and debit
 	 * generation threads.
 	 *
 	 * @param transaction transaction to process
+	 * @return true when applied, false when a transaction with the same Id was
+	 *         already applied
+	 */
+	boolean processTransaction(Transaction transaction);
+
+	/**
+	 * Process a batch of already validated transactions as a single unit, applying
+	 * the net amount to the balance once.
+	 *
+	 * @param transactions transactions to process
+	 * @return outcome of each transaction, in batch order
+	 */
+	List<TransactionResult> processTransactions(List<Transaction> transactions);
+
+	/**
+	 * Retrieve the balance in the default account
 	 */
-	void processTransaction(Transaction transaction);
+	default double retrieveBalance() {
+		return retrieveBalance(DEFAULT_ACCOUNT_ID);
+	}
 
 	/**
 	 * Retrieve the balance in the account
+	 *
+	 * @param accountId account ID
+	 */
+	double retrieveBalance(String accountId);
+
+	/**
+	 * Retrieve the balance snapshot of the default account
+	 */
+	default BalanceSnapshot retrieveBalanceSnapshot() {
+		return retrieveBalanceSnapshot(DEFAULT_ACCOUNT_ID);
+	}
+
+	/**
+	 * Retrieve the balance of the account with its serialised response and ETag
+	 *
+	 * @param accountId account ID
+	 */
+	default BalanceSnapshot retrieveBalanceSnapshot(String accountId) {
+		return BalanceSnapshot.of(retrieveBalance(accountId));
+	}
+
+	/**
+	 * Resolve the account of the transaction
+	 *
+	 * @param transaction transaction received
+	 * @return account ID of the transaction, or the default account
 	 */
-	double retrieveBalance();
+	static String accountIdOf(Transaction transaction) {
+		return transaction.getAccountId() != null ? transaction.getAccountId() : DEFAULT_ACCOUNT_ID;
+	}
 }
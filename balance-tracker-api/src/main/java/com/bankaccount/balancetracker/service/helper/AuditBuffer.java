@@ -0,0 +1,171 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+
+/**
+ * Bounded buffer of transactions waiting for audit submission. Many request
+ * threads add to it and a single drainer thread takes from it. The count is
+ * kept in a field so checking the limit is O(1), and a group of transactions
+ * is added all or nothing. Space can also be reserved ahead, so a group split
+ * over several buffers is only added once every buffer has room for its part.
+ */
+public class AuditBuffer {
+
+	/**
+	 * What a producer does when the buffer is full
+	 */
+	public enum Backpressure {
+		/**
+		 * Wait up to the configured timeout for space
+		 */
+		BLOCK,
+		/**
+		 * Fail straight away
+		 */
+		REJECT
+	}
+
+	private final ArrayDeque<Transaction> transactions;
+	private final int capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+	private volatile int count;
+	private int reserved;
+
+	/**
+	 * @param capacity max transactions held
+	 */
+	public AuditBuffer(int capacity) {
+		this.capacity = capacity;
+		this.transactions = new ArrayDeque<>(capacity);
+	}
+
+	/**
+	 * Add the transactions, waiting up to the timeout for space
+	 *
+	 * @param newTransactions transactions to add
+	 * @param timeoutMs       max time to wait, 0 to fail straight away
+	 * @return false when there was no space for all transactions in time
+	 */
+	public boolean offer(List<Transaction> newTransactions, long timeoutMs) throws InterruptedException {
+		if (!reserve(newTransactions.size(), timeoutMs)) {
+			return false;
+		}
+		fill(newTransactions);
+		return true;
+	}
+
+	/**
+	 * Reserve space for transactions to add later with {@link #fill(List)},
+	 * waiting up to the timeout for it
+	 *
+	 * @param size      number of transactions to reserve space for
+	 * @param timeoutMs max time to wait, 0 to fail straight away
+	 * @return false when there was no space in time
+	 */
+	public boolean reserve(int size, long timeoutMs) throws InterruptedException {
+		if (size > capacity) {
+			return false;
+		}
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		lock.lockInterruptibly();
+		try {
+			while (capacity - transactions.size() - reserved < size) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			reserved += size;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add transactions into space reserved for them
+	 *
+	 * @param newTransactions transactions to add
+	 */
+	public void fill(List<Transaction> newTransactions) {
+		lock.lock();
+		try {
+			reserved -= newTransactions.size();
+			transactions.addAll(newTransactions);
+			count = transactions.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Give back space reserved for transactions that will not be added
+	 *
+	 * @param size number of transactions the space was reserved for
+	 */
+	public void release(int size) {
+		lock.lock();
+		try {
+			reserved -= size;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Take up to the given number of transactions, oldest first
+	 *
+	 * @param max max transactions to take
+	 * @return transactions taken
+	 */
+	public List<Transaction> drain(int max) {
+		lock.lock();
+		try {
+			int drained = Math.min(max, transactions.size());
+			List<Transaction> batch = new ArrayList<>(drained);
+			for (int i = 0; i < drained; i++) {
+				batch.add(transactions.poll());
+			}
+			count = transactions.size();
+			notFull.signalAll();
+			return batch;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of transactions held
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Mark the buffer as waiting for the drainer
+	 *
+	 * @return true if it was not already waiting
+	 */
+	public boolean scheduleDrain() {
+		return drainScheduled.compareAndSet(false, true);
+	}
+
+	/**
+	 * Clear the waiting mark, called by the drainer before it drains
+	 */
+	public void clearDrainSchedule() {
+		drainScheduled.set(false);
+	}
+
+}
@@ -0,0 +1,578 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.bankaccount.balancetracker.service.util.JsonUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of audit submissions. Records are appended to segment
+ * files through a {@link FileChannel}, each as
+ * {@code [payload length][CRC32][id length][id][JSON]}, and a new segment is
+ * started once the current one reaches the size or age limit. An in-memory
+ * offset index maps each submission Id to its record.
+ * <p>
+ * A record is serialised and checksummed by the appending thread, so the
+ * append lock is only held to place it at the end of the segment. When a
+ * segment is sealed, rolled or closed, its part of the index is written next
+ * to it, so reopening the journal loads the index of sealed segments instead
+ * of scanning them. A segment without a valid index file, the one being
+ * written at a crash, is scanned: a record failing its checksum is skipped.
+ * Only the last segment can end in a torn record left by a crash mid-write, as
+ * a segment is forced before the next one is started, so an unreadable record
+ * is truncated away there and fails the open anywhere else, leaving the
+ * records after it in place to be restored.
+ * Sealed segments older than the retention are deleted with their index.
+ */
+@Slf4j
+public class AuditJournal implements AutoCloseable {
+
+	/**
+	 * When appended records are forced to disk
+	 */
+	public enum FsyncPolicy {
+		/**
+		 * Every append forces its own record
+		 */
+		ALWAYS,
+		/**
+		 * Concurrent appends share one force, the first to arrive forcing for
+		 * everyone written before it
+		 */
+		GROUP,
+		/**
+		 * Left to the OS, forced only when a segment is rolled or closed
+		 */
+		NONE
+	}
+
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final int HEADER_BYTES = Integer.BYTES * 2;
+	private static final int MAX_ID_BYTES = 0xFFFF;
+
+	private final Path dir;
+	private final long segmentMaxBytes;
+	private final long segmentMaxAgeMs;
+	private final long retentionMs;
+	private final FsyncPolicy fsyncPolicy;
+	private final Map<String, Location> index = new ConcurrentHashMap<>();
+	private final Deque<SealedSegment> sealed = new ArrayDeque<>();
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final ReentrantLock sealLock = new ReentrantLock();
+	private final AtomicLong synced = new AtomicLong();
+
+	private long nextSequence;
+	private Segment current;
+	private boolean closed;
+	private volatile long written;
+
+	/**
+	 * Open the journal, loading the index of each retained segment
+	 *
+	 * @param dir             directory of the segment files
+	 * @param segmentMaxBytes size at which a new segment is started
+	 * @param segmentMaxAgeMs age at which a new segment is started
+	 * @param retentionMs     age at which a sealed segment is deleted, 0 to keep
+	 *                        every segment
+	 * @param fsyncPolicy     when records are forced to disk
+	 */
+	public AuditJournal(Path dir, long segmentMaxBytes, long segmentMaxAgeMs, long retentionMs,
+			FsyncPolicy fsyncPolicy) throws IOException {
+		this.dir = dir;
+		this.segmentMaxBytes = segmentMaxBytes;
+		this.segmentMaxAgeMs = segmentMaxAgeMs;
+		this.retentionMs = retentionMs;
+		this.fsyncPolicy = fsyncPolicy;
+		Files.createDirectories(dir);
+		List<Path> segments = segments();
+		for (int i = 0; i < segments.size(); i++) {
+			open(segments.get(i), i == segments.size() - 1);
+		}
+		retain();
+		log.info("Audit journal opened in {} with {} submissions", dir.toAbsolutePath(), index.size());
+	}
+
+	/**
+	 * Append a submission, serialised once straight into the record
+	 *
+	 * @param submissionId Id to read the submission back by, at most 65535 bytes
+	 *                     in UTF-8
+	 * @param submission   submission to append
+	 * @return bytes appended
+	 */
+	public int append(String submissionId, Object submission) throws IOException {
+		byte[] id = submissionId.getBytes(StandardCharsets.UTF_8);
+		if (id.length > MAX_ID_BYTES) {
+			throw new IllegalArgumentException(
+					"Submission Id of " + id.length + " bytes is longer than " + MAX_ID_BYTES + " bytes");
+		}
+		RecordBuffer buffer = new RecordBuffer();
+		buffer.write(id.length >>> 8);
+		buffer.write(id.length);
+		buffer.write(id);
+		JsonUtils.writeJson(submission, buffer);
+		ByteBuffer record = buffer.toRecord();
+		int recordBytes = record.remaining();
+
+		long end;
+		Segment rolled;
+		appendLock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Audit journal is closed");
+			}
+			rolled = rollIfFull(recordBytes);
+			Segment segment = currentSegment();
+			long position = segment.size;
+			while (record.hasRemaining()) {
+				segment.channel.write(record);
+			}
+			segment.size += recordBytes;
+			segment.entries.add(new IndexEntry(submissionId, position, recordBytes));
+			index.put(submissionId, new Location(segment.path, position, recordBytes));
+			end = written += recordBytes;
+			if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+				segment.channel.force(false);
+				synced.accumulateAndGet(end, Math::max);
+			}
+		} finally {
+			appendLock.unlock();
+		}
+		if (rolled != null) {
+			seal(rolled.path, rolled.size, rolled.entries);
+		}
+		if (fsyncPolicy == FsyncPolicy.GROUP) {
+			sync(end);
+		}
+		return recordBytes;
+	}
+
+	/**
+	 * Read a submission back by Id
+	 *
+	 * @param submissionId Id given on append
+	 * @return the submission JSON, empty when no such submission is journaled or
+	 *         its segment has been deleted
+	 */
+	public Optional<byte[]> read(String submissionId) throws IOException {
+		Location location = index.get(submissionId);
+		if (location == null) {
+			return Optional.empty();
+		}
+		ByteBuffer record = ByteBuffer.allocate(location.length());
+		try (FileChannel channel = FileChannel.open(location.segment(), StandardOpenOption.READ)) {
+			if (!readFully(channel, record, location.position())) {
+				throw new IOException("Audit journal record of " + submissionId + " is truncated");
+			}
+		} catch (NoSuchFileException e) {
+			return Optional.empty(); // deleted by the retention meanwhile
+		}
+		record.flip().position(HEADER_BYTES);
+		int idLength = record.getShort() & 0xFFFF;
+		if (idLength > record.remaining()) {
+			throw new IOException("Audit journal record of " + submissionId + " is corrupt");
+		}
+		record.position(record.position() + idLength);
+		byte[] json = new byte[record.remaining()];
+		record.get(json);
+		return Optional.of(json);
+	}
+
+	/**
+	 * @return number of submissions journaled
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Force, close and seal the current segment, appending fails from then on
+	 */
+	@Override
+	public void close() throws IOException {
+		Segment last;
+		appendLock.lock();
+		try {
+			closed = true;
+			last = current;
+			if (last != null) {
+				last.close();
+				current = null;
+			}
+		} finally {
+			appendLock.unlock();
+		}
+		if (last != null) {
+			seal(last.path, last.size, last.entries);
+		}
+	}
+
+	/**
+	 * Force everything written up to the given end of the journal unless another
+	 * append has already forced past it, so one force covers all appends that
+	 * arrived while the previous one ran
+	 */
+	private void sync(long end) throws IOException {
+		syncLock.lock();
+		try {
+			if (synced.get() >= end) {
+				return;
+			}
+			long target;
+			FileChannel channel;
+			appendLock.lock();
+			try {
+				target = written;
+				channel = current != null ? current.channel : null;
+			} finally {
+				appendLock.unlock();
+			}
+			try {
+				if (channel != null) {
+					channel.force(false);
+				}
+			} catch (ClosedChannelException e) {
+				// rolled or closed meanwhile, which forces the segment first
+			}
+			synced.accumulateAndGet(target, Math::max);
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Close the current segment when the record would take it past the size
+	 * limit or it has reached the age limit
+	 *
+	 * @return the closed segment, to be sealed once the append lock is released,
+	 *         null when it is kept
+	 */
+	private Segment rollIfFull(int recordBytes) throws IOException {
+		if (current == null || current.size == 0 || (current.size + recordBytes <= segmentMaxBytes
+				&& System.currentTimeMillis() - current.createdAt < segmentMaxAgeMs)) {
+			return null;
+		}
+		log.info("Rolling audit journal segment {} at {} bytes", current.path.getFileName(), current.size);
+		Segment rolled = current;
+		rolled.close();
+		synced.accumulateAndGet(written, Math::max);
+		current = null;
+		return rolled;
+	}
+
+	/**
+	 * Current segment, started when there is none
+	 */
+	private Segment currentSegment() throws IOException {
+		if (current == null) {
+			Path path = dir.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+			current = new Segment(path,
+					FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+		}
+		return current;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+		}
+	}
+
+	/**
+	 * Index a segment found on open from its index file, or by scanning it when
+	 * the index file is missing or does not match, writing the index file then
+	 *
+	 * @param last whether it is the last segment, the only one a crash can leave
+	 *             torn
+	 */
+	private void open(Path path, boolean last) throws IOException {
+		String name = path.getFileName().toString();
+		long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		nextSequence = Math.max(nextSequence, sequence + 1);
+		long size = Files.size(path);
+		List<IndexEntry> entries = readIndex(indexOf(path), size);
+		if (entries == null) {
+			entries = new ArrayList<>();
+			size = recover(path, last, entries);
+			writeIndex(path, size, entries);
+		}
+		for (IndexEntry entry : entries) {
+			index.put(entry.submissionId(), new Location(path, entry.position(), entry.length()));
+		}
+		sealed.addLast(new SealedSegment(path, Files.getLastModifiedTime(path).toMillis(),
+				entries.stream().map(IndexEntry::submissionId).toList()));
+	}
+
+	/**
+	 * Scan the records of a segment, skipping a record failing its checksum. An
+	 * unreadable record, whose length runs past the end of the segment or cannot
+	 * hold its Id, is a torn record at the end of the last segment and is
+	 * truncated away. In an earlier segment, the records after it cannot be
+	 * found without its length, so the open fails instead of dropping them.
+	 *
+	 * @param last    whether it is the last segment
+	 * @param entries receives the valid records
+	 * @return size of the segment once recovered
+	 */
+	private long recover(Path path, boolean last, List<IndexEntry> entries) throws IOException {
+		String name = path.getFileName().toString();
+		CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			long position = 0;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (position + HEADER_BYTES <= size) {
+				header.clear();
+				if (!readFully(channel, header, position)) {
+					break;
+				}
+				int length = header.flip().getInt();
+				int checksum = header.getInt();
+				if (length < Short.BYTES || position + HEADER_BYTES + length > size) {
+					break;
+				}
+				ByteBuffer body = ByteBuffer.allocate(length);
+				if (!readFully(channel, body, position + HEADER_BYTES)) {
+					break;
+				}
+				crc.reset();
+				crc.update(body.array());
+				if ((int) crc.getValue() != checksum) {
+					log.warn("Skipping corrupt audit journal record in {} at {}", name, position);
+					position += HEADER_BYTES + length;
+					continue;
+				}
+				body.flip();
+				int idLength = body.getShort() & 0xFFFF;
+				if (idLength > body.remaining()) {
+					log.warn("Skipping audit journal record with an Id past its end in {} at {}", name, position);
+					position += HEADER_BYTES + length;
+					continue;
+				}
+				byte[] id = new byte[idLength];
+				body.get(id);
+				entries.add(new IndexEntry(new String(id, StandardCharsets.UTF_8), position, HEADER_BYTES + length));
+				position += HEADER_BYTES + length;
+			}
+			if (position < size) {
+				if (!last) {
+					throw new IOException("Unreadable audit journal record in sealed segment " + name + " at "
+							+ position + " of " + size + " bytes, restore the segment or move it aside");
+				}
+				log.warn("Truncating torn audit journal record in {} at {} of {} bytes", name, position, size);
+				channel.truncate(position);
+				channel.force(false);
+			}
+			return position;
+		}
+	}
+
+	/**
+	 * Read from the position until the buffer is full, as one read may return
+	 * fewer bytes
+	 *
+	 * @return false when the end of the file came first
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset);
+			if (read < 0) {
+				return false;
+			}
+			offset += read;
+		}
+		return true;
+	}
+
+	/**
+	 * Write the index of a sealed segment and delete the sealed segments past the
+	 * retention. A failure is logged, not thrown, as the records are already
+	 * written and a segment without an index file is scanned on open.
+	 */
+	private void seal(Path path, long size, List<IndexEntry> entries) {
+		sealLock.lock();
+		try {
+			sealed.addLast(new SealedSegment(path, System.currentTimeMillis(),
+					entries.stream().map(IndexEntry::submissionId).toList()));
+			writeIndex(path, size, entries);
+			retain();
+		} catch (IOException e) {
+			log.warn("Failed to seal audit journal segment {}", path.getFileName(), e);
+		} finally {
+			sealLock.unlock();
+		}
+	}
+
+	/**
+	 * Delete the sealed segments older than the retention, oldest first, and drop
+	 * their records from the index
+	 */
+	private void retain() throws IOException {
+		long expiredBefore = System.currentTimeMillis() - retentionMs;
+		while (retentionMs > 0 && !sealed.isEmpty() && sealed.peekFirst().sealedAt() < expiredBefore) {
+			SealedSegment segment = sealed.removeFirst();
+			for (String submissionId : segment.submissionIds()) {
+				index.computeIfPresent(submissionId,
+						(id, location) -> location.segment().equals(segment.path()) ? null : location);
+			}
+			Files.deleteIfExists(indexOf(segment.path()));
+			Files.deleteIfExists(segment.path());
+			log.info("Deleted audit journal segment {} past the retention", segment.path().getFileName());
+		}
+	}
+
+	private static Path indexOf(Path segment) {
+		String name = segment.getFileName().toString();
+		return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Write the index file of a segment as
+	 * {@code [segment size][count]([id length][id][position][length])*[CRC32]},
+	 * through a temporary file moved into place
+	 */
+	private static void writeIndex(Path segment, long size, List<IndexEntry> entries) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer fixed = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+		out.write(fixed.putLong(size).putInt(entries.size()).array());
+		for (IndexEntry entry : entries) {
+			byte[] id = entry.submissionId().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer item = ByteBuffer.allocate(Short.BYTES + id.length + Long.BYTES + Integer.BYTES);
+			out.write(item.putShort((short) id.length).put(id).putLong(entry.position()).putInt(entry.length())
+					.array());
+		}
+		CRC32 crc = new CRC32();
+		crc.update(out.toByteArray());
+		out.write(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+
+		Path index = indexOf(segment);
+		Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer content = ByteBuffer.wrap(out.toByteArray());
+			while (content.hasRemaining()) {
+				channel.write(content);
+			}
+			channel.force(false);
+		}
+		Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read the index file of a segment
+	 *
+	 * @return the records of the segment, null when the index file is missing,
+	 *         corrupt or written for another size of the segment
+	 */
+	private static List<IndexEntry> readIndex(Path index, long segmentSize) throws IOException {
+		if (!Files.exists(index)) {
+			return null;
+		}
+		byte[] content = Files.readAllBytes(index);
+		if (content.length < Long.BYTES + Integer.BYTES * 2) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length - Integer.BYTES);
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		if ((int) crc.getValue() != buffer.getInt(content.length - Integer.BYTES)
+				|| buffer.getLong() != segmentSize) {
+			log.warn("Ignoring stale audit journal index {}", index.getFileName());
+			return null;
+		}
+		int count = buffer.getInt();
+		List<IndexEntry> entries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			byte[] id = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(id);
+			entries.add(new IndexEntry(new String(id, StandardCharsets.UTF_8), buffer.getLong(), buffer.getInt()));
+		}
+		return entries;
+	}
+
+	/**
+	 * Position of a record in a segment
+	 */
+	private record Location(Path segment, long position, int length) {
+	}
+
+	/**
+	 * Record of a segment, as kept in its index file
+	 */
+	private record IndexEntry(String submissionId, long position, int length) {
+	}
+
+	/**
+	 * Segment no longer appended to, with the Ids of its records to drop from the
+	 * index when it is deleted
+	 */
+	private record SealedSegment(Path path, long sealedAt, List<String> submissionIds) {
+	}
+
+	/**
+	 * Record being serialised, starting with room for the header, which is filled
+	 * in once the payload is complete. The record is handed to the channel
+	 * without copying the buffer.
+	 */
+	private static final class RecordBuffer extends ByteArrayOutputStream {
+
+		RecordBuffer() {
+			super(256);
+			count = HEADER_BYTES;
+		}
+
+		ByteBuffer toRecord() {
+			int length = count - HEADER_BYTES;
+			CRC32 crc = new CRC32();
+			crc.update(buf, HEADER_BYTES, length);
+			ByteBuffer record = ByteBuffer.wrap(buf, 0, count);
+			record.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+			return record;
+		}
+	}
+
+	private static class Segment {
+
+		private final Path path;
+		private final FileChannel channel;
+		private final long createdAt = System.currentTimeMillis();
+		private final List<IndexEntry> entries = new ArrayList<>();
+		private long size;
+
+		Segment(Path path, FileChannel channel) {
+			this.path = path;
+			this.channel = channel;
+		}
+
+		void close() throws IOException {
+			channel.force(false);
+			channel.close();
+		}
+	}
+
+}
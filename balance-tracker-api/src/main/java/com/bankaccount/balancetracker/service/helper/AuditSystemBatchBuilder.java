@@ -3,7 +3,9 @@ package com.bankaccount.balancetracker.service.helper;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.bankaccount.balancetracker.dto.Batch;
@@ -12,64 +14,71 @@ import com.bankaccount.balancetracker.dto.Transaction;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Helper class to build the batches to submit to the Audit System
+ * Helper class to build the batches to submit to the Audit System with the
+ * configured packing strategy. Each run logs the batches used against the
+ * {@code ceil(sum / maxAmountPerBatch)} lower bound.
  */
 @Slf4j
 @Component
 public class AuditSystemBatchBuilder {
 
+	@Value("${msa.auditsystem.batch.strategy:FFD}")
+	private PackingStrategyType strategy = PackingStrategyType.FFD;
+
+	@Value("${msa.auditsystem.batch.exact.time-budget-ms:100}")
+	private long exactTimeBudgetMs = 100;
+
+	@Value("${msa.auditsystem.batch.exact.max-transactions:40}")
+	private int exactMaxTransactions = 40;
+
 	/**
-	 * Method to build batches
+	 * Method to build batches with the configured strategy
 	 * 
 	 * @param transList         Transactions
 	 * @param maxAmountPerBatch Configured value per batch
 	 * @return List of Batch
 	 */
 	public List<Batch> buildBatches(List<Transaction> transList, BigDecimal maxAmountPerBatch) {
+		return buildBatches(transList, maxAmountPerBatch, strategy);
+	}
+
+	/**
+	 * Method to build batches with the given strategy
+	 * 
+	 * @param transList         Transactions
+	 * @param maxAmountPerBatch Configured value per batch
+	 * @param strategyType      packing strategy
+	 * @return List of Batch
+	 */
+	public List<Batch> buildBatches(List<Transaction> transList, BigDecimal maxAmountPerBatch,
+			PackingStrategyType strategyType) {
 		log.info("buildBatches:enter with transaction list: {} and Max Amount Per Batch = {}",
 				transList != null ? transList.size() : "null", maxAmountPerBatch);
 
-		List<Batch> batches = new ArrayList<>();
-
 		if (transList == null || transList.isEmpty()) {
 			log.info("No transactions to submit to Audit System");
-			return batches;
+			return new ArrayList<>();
 		}
 
-		// Sort by absolute amount descending
-		List<Transaction> sortedList = transList.stream()
-				.sorted((a, b) -> b.getAmount().abs().compareTo(a.getAmount().abs())).toList();
-		log.info("Sorted transaction amounts - descending order : {}",
-				sortedList.stream().map(t -> t.getAmount().abs()).toList());
-
-		// Apply First Fit Decreasing to minimize batch count
-		for (Transaction trans : sortedList) {
-			BigDecimal absoluteAmount = trans.getAmount().abs();
-			boolean isPlaced = false;
+		long start = System.nanoTime();
+		List<BigDecimal> amounts = transList.stream().map(t -> t.getAmount().abs()).toList();
+		List<Batch> batches = strategyFor(strategyType).pack(amounts, maxAmountPerBatch);
 
-			// Try to fit into an existing batch
-			for (var i = 0; i < batches.size(); i++) {
-				Batch batch = batches.get(i);
-				if (batch.getTotalValueOfAllTransactions().add(absoluteAmount).compareTo(maxAmountPerBatch) <= 0) {
-					// Add transaction details to the batch
-					batch.addTransaction(absoluteAmount);
-					isPlaced = true;
-					log.info("Placing transaction {} with value {} into batch {}", trans.getTransactionId(),
-							absoluteAmount, i + 1);
-					break;
-				}
-			}
-
-			// If no batch can accommodate, create a new one
-			if (!isPlaced) {
-				Batch newBatch = new Batch(absoluteAmount, 1);
-				batches.add(newBatch);
-				log.info("Creating new batch #{} for transaction {} with value {}", batches.size(),
-						trans.getTransactionId(), absoluteAmount);
-			}
-		}
-		log.info("buildBatches:exit with batch count {}", batches.size());
+		PackingReport report = new PackingReport(strategyType, amounts.size(), batches.size(),
+				PackingReport.lowerBound(amounts, maxAmountPerBatch),
+				TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+		log.info("buildBatches:exit with batch count {} against lower bound {} using {} in {} us",
+				report.batchCount(), report.lowerBound(), report.strategy(), report.elapsedMicros());
 		return batches;
 	}
 
+	private BatchPackingStrategy strategyFor(PackingStrategyType strategyType) {
+		return switch (strategyType) {
+		case BFD -> new BestFitDecreasingStrategy();
+		case NEXT_FIT -> new NextFitStrategy();
+		case EXACT -> new BranchAndBoundStrategy(exactTimeBudgetMs, exactMaxTransactions);
+		default -> new FirstFitDecreasingStrategy();
+		};
+	}
+
 }
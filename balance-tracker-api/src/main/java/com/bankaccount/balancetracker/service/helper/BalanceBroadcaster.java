@@ -0,0 +1,344 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes balance changes to Server-Sent Events subscribers. The services only
+ * mark an account as changed, which costs a map lookup. A single broadcaster
+ * thread coalesces the changes: at most once per interval it loads the
+ * snapshot of each changed account that has subscribers, and when the balance
+ * differs from the last one sent it builds the event once and queues the same
+ * bytes to every subscriber. Subscribers also get a heartbeat comment at a
+ * fixed interval, so idle connections stay open through proxies and dead ones
+ * are found and dropped. Balance changes made by other nodes are not
+ * signalled here, so each heartbeat also checks every balance for a change.
+ * <p>
+ * Coalescing is per account, and every subscriber of an account gets the same
+ * events, so no subscriber is sent more than one balance event per interval.
+ * <p>
+ * The number of subscribers is capped. Each subscriber has a bounded send
+ * queue, written to its connection by a fixed pool of writer threads, one
+ * writer at a time per subscriber while events are pending. A subscriber that
+ * stops reading holds at most one writer until its write fails or times out,
+ * and one whose queue fills up is closed, so its browser reconnects and starts
+ * again from the current balance. An account is forgotten once its last
+ * subscriber leaves.
+ */
+@Slf4j
+@Component
+public class BalanceBroadcaster {
+
+	private static final Set<DataWithMediaType> HEARTBEAT = Set
+			.of(new DataWithMediaType(":heartbeat\n\n", MediaType.TEXT_PLAIN));
+
+	@Value("${msa.bank.balance.stream.max-subscribers:1000}")
+	private int maxSubscribers = 1000;
+
+	@Value("${msa.bank.balance.stream.min-interval-ms:250}")
+	private long minIntervalMs = 250;
+
+	@Value("${msa.bank.balance.stream.heartbeat-ms:15000}")
+	private long heartbeatMs = 15000;
+
+	@Value("${msa.bank.balance.stream.timeout-ms:1800000}")
+	private long timeoutMs = 1800000;
+
+	/**
+	 * Events a subscriber may have pending before it is closed as too slow
+	 */
+	@Value("${msa.bank.balance.stream.send-queue:16}")
+	private int sendQueueSize = 16;
+
+	@Value("${msa.bank.balance.stream.writer-threads:8}")
+	private int writerThreads = 8;
+
+	private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Writer threads, a fixed pool resized to the configured count on start, so
+	 * slow subscribers queue for a writer instead of each holding a thread
+	 */
+	private final ThreadPoolExecutor writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0,
+			TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+				Thread thread = new Thread(runnable, "balance-stream-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Start the broadcaster thread
+	 */
+	@PostConstruct
+	public void start() {
+		if (writerThreads > writers.getMaximumPoolSize()) {
+			writers.setMaximumPoolSize(writerThreads);
+			writers.setCorePoolSize(writerThreads);
+		} else {
+			writers.setCorePoolSize(writerThreads);
+			writers.setMaximumPoolSize(writerThreads);
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "balance-broadcaster");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::broadcast, minIntervalMs, minIntervalMs, TimeUnit.MILLISECONDS);
+		executor.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the broadcaster and writer threads and end every subscription
+	 */
+	@PreDestroy
+	public void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		writers.shutdownNow();
+		topics.values().forEach(topic -> topic.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+	}
+
+	/**
+	 * Subscribe to the balance of the account, starting with its current balance
+	 *
+	 * @param accountId account ID
+	 * @param loader    loads the current balance snapshot of the account
+	 * @return emitter of the balance events
+	 */
+	public SseEmitter subscribe(String accountId, Supplier<BalanceSnapshot> loader) {
+		if (subscriberCount.incrementAndGet() > maxSubscribers) {
+			subscriberCount.decrementAndGet();
+			throw new BalanceTrackerException("Too many balance subscribers", HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		Subscriber subscriber = new Subscriber(accountId, createEmitter(), sendQueueSize);
+		Runnable unsubscribe = () -> unsubscribe(subscriber);
+		subscriber.emitter.onCompletion(unsubscribe);
+		subscriber.emitter.onTimeout(unsubscribe);
+		subscriber.emitter.onError(ex -> unsubscribe.run());
+		Topic topic = topics.compute(accountId, (id, existing) -> {
+			Topic joined = existing != null ? existing : new Topic(loader);
+			joined.subscribers.add(subscriber);
+			return joined;
+		});
+
+		// Load after subscribing, so a change made meanwhile is broadcast as well,
+		// and under the topic lock, so no broadcast is queued ahead of it
+		try {
+			synchronized (topic) {
+				subscriber.queue.offer(event(loader.get()));
+			}
+		} catch (RuntimeException e) {
+			unsubscribe.run();
+			throw e;
+		}
+		drain(subscriber);
+		log.debug("Balance subscriber added for accountId {}, {} subscribers", accountId, subscriberCount.get());
+		return subscriber.emitter;
+	}
+
+	/**
+	 * Mark the balance of the account as changed, to be pushed with the next
+	 * broadcast
+	 *
+	 * @param accountId account ID
+	 */
+	public void balanceChanged(String accountId) {
+		Topic topic = topics.get(accountId);
+		if (topic != null) {
+			topic.changed = true;
+		}
+	}
+
+	/**
+	 * @return number of open subscriptions
+	 */
+	public int subscriberCount() {
+		return subscriberCount.get();
+	}
+
+	/**
+	 * @return emitter of a new subscription
+	 */
+	SseEmitter createEmitter() {
+		return new SseEmitter(timeoutMs);
+	}
+
+	/**
+	 * @return number of accounts with subscribers
+	 */
+	int topicCount() {
+		return topics.size();
+	}
+
+	/**
+	 * Queue the balance of every changed account to its subscribers
+	 */
+	void broadcast() {
+		topics.forEach((accountId, topic) -> {
+			if (!topic.changed || topic.subscribers.isEmpty()) {
+				return;
+			}
+			topic.changed = false;
+			try {
+				synchronized (topic) {
+					BalanceSnapshot snapshot = topic.loader.get();
+					if (snapshot.getEtag().equals(topic.lastEtag)) {
+						return;
+					}
+					topic.lastEtag = snapshot.getEtag();
+					send(topic, event(snapshot));
+				}
+			} catch (RuntimeException e) {
+				log.warn("Failed to broadcast the balance of accountId {}", accountId, e);
+			}
+		});
+	}
+
+	/**
+	 * Queue a heartbeat comment to every subscriber and mark every balance to be
+	 * checked by the next broadcast, which picks up changes made by other nodes
+	 */
+	void heartbeat() {
+		topics.values().forEach(topic -> {
+			send(topic, HEARTBEAT);
+			topic.changed = true;
+		});
+	}
+
+	private void send(Topic topic, Set<DataWithMediaType> event) {
+		for (Subscriber subscriber : topic.subscribers) {
+			if (subscriber.queue.offer(event)) {
+				drain(subscriber);
+			} else {
+				log.debug("Dropping balance subscriber of accountId {}: send queue full", subscriber.accountId);
+				unsubscribe(subscriber);
+				// Completed by a writer, as completing waits for a write in progress
+				execute(subscriber.emitter::complete);
+			}
+		}
+	}
+
+	/**
+	 * Write the pending events of the subscriber on a writer thread, unless one
+	 * is writing them already
+	 */
+	private void drain(Subscriber subscriber) {
+		if (!subscriber.draining.compareAndSet(false, true)) {
+			return;
+		}
+		execute(() -> {
+			try {
+				Set<DataWithMediaType> event;
+				while ((event = subscriber.queue.poll()) != null) {
+					subscriber.emitter.send(event);
+				}
+			} catch (IOException | IllegalStateException e) {
+				log.debug("Dropping balance subscriber: {}", e.getMessage());
+				unsubscribe(subscriber);
+				subscriber.queue.clear();
+				subscriber.emitter.completeWithError(e);
+			} finally {
+				subscriber.draining.set(false);
+			}
+			// An event queued after the last poll is drained by a new writer
+			if (!subscriber.queue.isEmpty()) {
+				drain(subscriber);
+			}
+		});
+	}
+
+	private void execute(Runnable task) {
+		try {
+			writers.execute(task);
+		} catch (RejectedExecutionException e) {
+			log.debug("Balance stream writers stopped");
+		}
+	}
+
+	/**
+	 * Remove the subscriber, and the account once it has no subscribers left
+	 */
+	private void unsubscribe(Subscriber subscriber) {
+		Topic topic = topics.get(subscriber.accountId);
+		if (topic == null || !topic.subscribers.remove(subscriber)) {
+			return;
+		}
+		subscriberCount.decrementAndGet();
+		topics.computeIfPresent(subscriber.accountId,
+				(id, existing) -> existing.subscribers.isEmpty() ? null : existing);
+	}
+
+	/**
+	 * Build the balance event once, as the raw event stream text
+	 */
+	private static Set<DataWithMediaType> event(BalanceSnapshot snapshot) {
+		String frame = "id:" + snapshot.getEtag() + "\nevent:balance\ndata:"
+				+ new String(snapshot.getBody(), StandardCharsets.UTF_8) + "\n\n";
+		return Set.of(new DataWithMediaType(frame, MediaType.TEXT_PLAIN));
+	}
+
+	/**
+	 * Subscribers of an account with the loader of its balance
+	 */
+	private static class Topic {
+
+		private final Supplier<BalanceSnapshot> loader;
+		private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+		private volatile boolean changed;
+		private volatile String lastEtag;
+
+		Topic(Supplier<BalanceSnapshot> loader) {
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * Subscription with its bounded queue of events not yet written
+	 */
+	private static class Subscriber {
+
+		private final String accountId;
+		private final SseEmitter emitter;
+		private final BlockingQueue<Set<DataWithMediaType>> queue;
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		Subscriber(String accountId, SseEmitter emitter, int queueSize) {
+			this.accountId = accountId;
+			this.emitter = emitter;
+			this.queue = new ArrayBlockingQueue<>(queueSize);
+		}
+	}
+
+}
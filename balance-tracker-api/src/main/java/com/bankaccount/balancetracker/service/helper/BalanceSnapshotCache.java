@@ -0,0 +1,176 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
+
+/**
+ * In-process cache of balance snapshots per account. A snapshot is removed
+ * whenever a commit changes its balance and is served while younger than the
+ * time to live, which bounds how stale it can get when another node changes
+ * the balance. A load first puts a loading marker in place of the snapshot, and
+ * only replaces its own marker, so a load racing a commit, which removes the
+ * marker, is returned to its caller but never caches the old balance.
+ * <p>
+ * Snapshots in use are loaded again after the commits that change them, so
+ * reads keep hitting the cache, and nothing is read from the store for an
+ * account that did not change. A snapshot is in use once served since it was
+ * last loaded, and a warmed snapshot until it is first served. Warmed
+ * snapshots have neither reads nor commits to follow, so they are refreshed
+ * ahead of their expiry instead. Expired snapshots are dropped, so the cache
+ * holds no more than the accounts read within the time to live and the warmed
+ * ones.
+ */
+public class BalanceSnapshotCache {
+
+	private final Map<String, Entry> snapshots = new ConcurrentHashMap<>();
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Current snapshot of the account balance, loaded when missing or expired
+	 *
+	 * @param accountId account ID
+	 * @param ttlMs     time to live of a snapshot, in milliseconds
+	 * @param loader    loads the balance from the store
+	 * @return snapshot of the balance
+	 */
+	public BalanceSnapshot get(String accountId, long ttlMs, DoubleSupplier loader) {
+		Entry entry = snapshots.get(accountId);
+		long now = System.currentTimeMillis();
+		if (entry != null && !entry.loading() && now - entry.loadedAt() < ttlMs) {
+			entry.served().set(true);
+			return entry.snapshot();
+		}
+		return load(accountId, entry, () -> BalanceSnapshot.of(loader.getAsDouble()), true);
+	}
+
+	/**
+	 * Caches a snapshot of the balance, kept refreshed until it is first served
+	 *
+	 * @param accountId account ID
+	 * @param balance   balance read from the store
+	 */
+	public void warm(String accountId, double balance) {
+		snapshots.put(accountId,
+				new Entry(BalanceSnapshot.of(balance), System.currentTimeMillis(), new AtomicBoolean(), true));
+	}
+
+	/**
+	 * Loads again the snapshots that were in use when a commit changed them and
+	 * the warmed ones past half their time to live, and drops the other expired
+	 * snapshots. To be called more often than half the time to live.
+	 *
+	 * @param ttlMs  time to live of a snapshot, in milliseconds
+	 * @param loader loads the balance of an account from the store, null when the
+	 *               account has none
+	 */
+	public void refresh(long ttlMs, Function<String, Double> loader) {
+		for (Iterator<String> accounts = changed.iterator(); accounts.hasNext();) {
+			String accountId = accounts.next();
+			accounts.remove();
+			Entry entry = snapshots.get(accountId);
+			if (entry == null) {
+				load(accountId, null, () -> snapshotOf(loader.apply(accountId), null), false);
+			}
+		}
+		snapshots.forEach((accountId, entry) -> {
+			long age = System.currentTimeMillis() - entry.loadedAt();
+			if (entry.loading()) {
+				return;
+			}
+			if (!entry.warm() || entry.served().get()) {
+				if (age >= ttlMs) {
+					snapshots.remove(accountId, entry);
+				}
+			} else if (age >= ttlMs / 2) {
+				load(accountId, entry, () -> snapshotOf(loader.apply(accountId), entry.snapshot()), false);
+			}
+		});
+	}
+
+	/**
+	 * Drop the cached snapshot of the account, to be called once the change to
+	 * its balance is committed. One in use is loaded again by the next refresh.
+	 *
+	 * @param accountId account ID
+	 */
+	public void invalidate(String accountId) {
+		Entry removed = snapshots.remove(accountId);
+		if (removed != null && !removed.loading() && (removed.served().get() || removed.warm())) {
+			changed.add(accountId);
+		}
+	}
+
+	/**
+	 * @return number of accounts cached, loading included
+	 */
+	int size() {
+		return snapshots.size();
+	}
+
+	/**
+	 * Load a snapshot in place of the given entry, caching it unless a commit
+	 * removed the loading marker meanwhile or another load is under way
+	 *
+	 * @param previous entry to replace, null when there is none
+	 * @param loader   loads the snapshot, null when the account has none
+	 * @param served   whether the snapshot is loaded for a read
+	 * @return the snapshot loaded
+	 */
+	private BalanceSnapshot load(String accountId, Entry previous, Supplier<BalanceSnapshot> loader,
+			boolean served) {
+		long now = System.currentTimeMillis();
+		Entry marker = new Entry(null, now, new AtomicBoolean(), false);
+		boolean marked = previous == null ? snapshots.putIfAbsent(accountId, marker) == null
+				: !previous.loading() && snapshots.replace(accountId, previous, marker);
+		BalanceSnapshot snapshot;
+		try {
+			snapshot = loader.get();
+		} catch (RuntimeException e) {
+			if (marked) {
+				snapshots.remove(accountId, marker);
+			}
+			throw e;
+		}
+		if (!marked) {
+			return snapshot;
+		}
+		if (snapshot == null) {
+			snapshots.remove(accountId, marker);
+		} else {
+			boolean warm = previous != null && previous.warm() && !previous.served().get();
+			snapshots.replace(accountId, marker, new Entry(snapshot, now, new AtomicBoolean(served), warm));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Snapshot of the balance, the current one when unchanged so its ETag stays
+	 * the same
+	 */
+	private static BalanceSnapshot snapshotOf(Double balance, BalanceSnapshot current) {
+		if (balance == null) {
+			return null;
+		}
+		return current != null && balance == current.getBalance() ? current : BalanceSnapshot.of(balance);
+	}
+
+	/**
+	 * Snapshot with its load time, whether it was served since and whether it was
+	 * warmed and not served yet. A loading marker has no snapshot.
+	 */
+	private record Entry(BalanceSnapshot snapshot, long loadedAt, AtomicBoolean served, boolean warm) {
+
+		boolean loading() {
+			return snapshot == null;
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+/**
+ * Strategy to pack transaction amounts into Audit System batches, each batch
+ * holding at most the max amount per batch. An amount above the max gets a
+ * batch of its own.
+ */
+public interface BatchPackingStrategy {
+
+	/**
+	 * Pack the amounts into batches
+	 *
+	 * @param amounts           absolute transaction amounts, in arrival order
+	 * @param maxAmountPerBatch max total amount per batch
+	 * @return batches
+	 */
+	List<Batch> pack(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch);
+
+}
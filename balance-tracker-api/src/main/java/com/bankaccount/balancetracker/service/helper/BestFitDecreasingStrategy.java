@@ -0,0 +1,47 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+/**
+ * Best Fit Decreasing: each amount, largest first, goes into the batch it
+ * leaves with the least room, the lowest batch on a tie. Batches are indexed by
+ * remaining capacity in a TreeMap, so each placement is O(log b).
+ */
+public class BestFitDecreasingStrategy implements BatchPackingStrategy {
+
+	@Override
+	public List<Batch> pack(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch) {
+		List<BigDecimal> sortedAmounts = amounts.stream().sorted(Comparator.reverseOrder()).toList();
+
+		List<Batch> batches = new ArrayList<>();
+		TreeMap<BigDecimal, TreeSet<Integer>> batchesByRemaining = new TreeMap<>();
+		for (BigDecimal absoluteAmount : sortedAmounts) {
+			Map.Entry<BigDecimal, TreeSet<Integer>> tightest = batchesByRemaining.ceilingEntry(absoluteAmount);
+			int index;
+			if (tightest != null) {
+				index = tightest.getValue().pollFirst();
+				if (tightest.getValue().isEmpty()) {
+					batchesByRemaining.remove(tightest.getKey());
+				}
+				batches.get(index).addTransaction(absoluteAmount);
+			} else {
+				index = batches.size();
+				batches.add(new Batch(absoluteAmount, 1));
+			}
+			BigDecimal remaining = maxAmountPerBatch.subtract(batches.get(index).getTotalValueOfAllTransactions());
+			if (remaining.signum() >= 0) {
+				batchesByRemaining.computeIfAbsent(remaining, key -> new TreeSet<>()).add(index);
+			}
+		}
+		return batches;
+	}
+
+}
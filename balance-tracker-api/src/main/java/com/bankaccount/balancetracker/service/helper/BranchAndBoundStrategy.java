@@ -0,0 +1,180 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exact packing for small inputs: a depth first branch and bound over the
+ * amounts, largest first, starting from the FFD packing as the best known. A
+ * branch is cut when even perfectly filled batches could not beat the best.
+ * The search stops at the lower bound or when the time budget runs out and
+ * returns the best packing found, so it is never worse than FFD. Inputs above
+ * the max transaction count go straight to FFD.
+ */
+@Slf4j
+public class BranchAndBoundStrategy implements BatchPackingStrategy {
+
+	private final BatchPackingStrategy firstFitDecreasing = new FirstFitDecreasingStrategy();
+	private final long timeBudgetNanos;
+	private final int maxTransactions;
+
+	/**
+	 * @param timeBudgetMs    max search time per run
+	 * @param maxTransactions max transactions to search exactly
+	 */
+	public BranchAndBoundStrategy(long timeBudgetMs, int maxTransactions) {
+		this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+		this.maxTransactions = maxTransactions;
+	}
+
+	@Override
+	public List<Batch> pack(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch) {
+		List<Batch> initial = firstFitDecreasing.pack(amounts, maxAmountPerBatch);
+		if (amounts.size() > maxTransactions) {
+			log.debug("Skipping exact packing for {} transactions, above the max of {}", amounts.size(),
+					maxTransactions);
+			return initial;
+		}
+
+		// Amounts above the max take a batch each and nothing else fits with them
+		List<BigDecimal> oversized = amounts.stream().filter(a -> a.compareTo(maxAmountPerBatch) > 0)
+				.sorted(Comparator.reverseOrder()).toList();
+		BigDecimal[] fitting = amounts.stream().filter(a -> a.compareTo(maxAmountPerBatch) <= 0)
+				.sorted(Comparator.reverseOrder()).toArray(BigDecimal[]::new);
+		int lowerBound = PackingReport.lowerBound(List.of(fitting), maxAmountPerBatch);
+		if (initial.size() - oversized.size() <= lowerBound) {
+			return initial;
+		}
+
+		Search search = new Search(fitting, maxAmountPerBatch, initial.size() - oversized.size(), lowerBound,
+				System.nanoTime() + timeBudgetNanos);
+		search.run(0, 0);
+		if (search.timedOut) {
+			log.info("Exact packing stopped at the time budget with {} batches against a lower bound of {}",
+					search.bestCount + oversized.size(), lowerBound + oversized.size());
+		}
+		if (search.best == null) {
+			return initial;
+		}
+
+		List<Batch> batches = new ArrayList<>();
+		oversized.forEach(amount -> batches.add(new Batch(amount, 1)));
+		List<Batch> packed = new ArrayList<>();
+		for (int i = 0; i < fitting.length; i++) {
+			int index = search.best[i];
+			if (index == packed.size()) {
+				packed.add(new Batch(fitting[i], 1));
+			} else {
+				packed.get(index).addTransaction(fitting[i]);
+			}
+		}
+		batches.addAll(packed);
+		return batches;
+	}
+
+	/**
+	 * State of one branch and bound search
+	 */
+	private static final class Search {
+
+		private final BigDecimal[] amounts;
+		private final BigDecimal maxAmountPerBatch;
+		private final BigDecimal[] suffixSums;
+		private final BigDecimal[] remaining;
+		private final int[] assignment;
+		private final int lowerBound;
+		private final long deadline;
+		private int[] best;
+		private int bestCount;
+		private boolean timedOut;
+
+		private Search(BigDecimal[] amounts, BigDecimal maxAmountPerBatch, int bestCount, int lowerBound,
+				long deadline) {
+			this.amounts = amounts;
+			this.maxAmountPerBatch = maxAmountPerBatch;
+			this.bestCount = bestCount;
+			this.lowerBound = lowerBound;
+			this.deadline = deadline;
+			this.remaining = new BigDecimal[amounts.length];
+			this.assignment = new int[amounts.length];
+			this.suffixSums = new BigDecimal[amounts.length + 1];
+			suffixSums[amounts.length] = BigDecimal.ZERO;
+			for (int i = amounts.length - 1; i >= 0; i--) {
+				suffixSums[i] = suffixSums[i + 1].add(amounts[i]);
+			}
+		}
+
+		/**
+		 * Place amount i with the given number of batches already open
+		 */
+		private void run(int i, int open) {
+			if (timedOut || System.nanoTime() > deadline) {
+				timedOut = true;
+				return;
+			}
+			if (i == amounts.length) {
+				bestCount = open;
+				best = assignment.clone();
+				return;
+			}
+			if (open + batchesStillNeeded(i, open) >= bestCount) {
+				return;
+			}
+
+			BigDecimal amount = amounts[i];
+			for (int j = 0; j < open; j++) {
+				if (remaining[j].compareTo(amount) < 0 || triedSameRemaining(j)) {
+					continue;
+				}
+				BigDecimal before = remaining[j];
+				remaining[j] = before.subtract(amount);
+				assignment[i] = j;
+				run(i + 1, open);
+				remaining[j] = before;
+				if (timedOut || bestCount <= lowerBound) {
+					return;
+				}
+			}
+			if (open + 1 < bestCount) {
+				remaining[open] = maxAmountPerBatch.subtract(amount);
+				assignment[i] = open;
+				run(i + 1, open + 1);
+			}
+		}
+
+		/**
+		 * New batches needed for the amounts from i on, beyond the room left in the
+		 * open batches
+		 */
+		private int batchesStillNeeded(int i, int open) {
+			BigDecimal room = BigDecimal.ZERO;
+			for (int j = 0; j < open; j++) {
+				room = room.add(remaining[j]);
+			}
+			BigDecimal overflow = suffixSums[i].subtract(room);
+			return overflow.signum() <= 0 ? 0
+					: overflow.divide(maxAmountPerBatch, 0, RoundingMode.CEILING).intValueExact();
+		}
+
+		/**
+		 * Batches with equal room lead to the same packings, only the first is tried
+		 */
+		private boolean triedSameRemaining(int j) {
+			for (int k = 0; k < j; k++) {
+				if (remaining[k].compareTo(remaining[j]) == 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
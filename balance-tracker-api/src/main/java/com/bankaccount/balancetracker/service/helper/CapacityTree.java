@@ -0,0 +1,71 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+
+/**
+ * Max segment tree over the remaining capacity of the open batches. Finds the
+ * first batch, in creation order, with enough room for an amount in O(log b),
+ * instead of scanning every open batch.
+ */
+final class CapacityTree {
+
+	/**
+	 * Max remaining capacity per node, null where no batch is open yet
+	 */
+	private final BigDecimal[] tree;
+	private final int leaves;
+
+	/**
+	 * @param maxBatches upper bound on the number of batches
+	 */
+	CapacityTree(int maxBatches) {
+		this.leaves = maxBatches <= 1 ? 1 : Integer.highestOneBit(maxBatches - 1) << 1;
+		this.tree = new BigDecimal[2 * leaves];
+	}
+
+	/**
+	 * Index of the first batch whose remaining capacity is at least the amount
+	 *
+	 * @param amount amount to place
+	 * @return batch index, or -1 when no open batch fits
+	 */
+	int firstFit(BigDecimal amount) {
+		if (!fits(tree[1], amount)) {
+			return -1;
+		}
+		int node = 1;
+		while (node < leaves) {
+			node = fits(tree[2 * node], amount) ? 2 * node : 2 * node + 1;
+		}
+		return node - leaves;
+	}
+
+	/**
+	 * Set the remaining capacity of a batch
+	 *
+	 * @param batch     batch index
+	 * @param remaining remaining capacity, negative for an oversized batch
+	 */
+	void update(int batch, BigDecimal remaining) {
+		int node = batch + leaves;
+		tree[node] = remaining;
+		for (node >>= 1; node >= 1; node >>= 1) {
+			tree[node] = max(tree[2 * node], tree[2 * node + 1]);
+		}
+	}
+
+	private static boolean fits(BigDecimal remaining, BigDecimal amount) {
+		return remaining != null && remaining.compareTo(amount) >= 0;
+	}
+
+	private static BigDecimal max(BigDecimal left, BigDecimal right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		return left.compareTo(right) >= 0 ? left : right;
+	}
+
+}
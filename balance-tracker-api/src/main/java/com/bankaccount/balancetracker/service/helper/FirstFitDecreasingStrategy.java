@@ -0,0 +1,46 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * First Fit Decreasing: each amount, largest first, goes into the first batch
+ * with room for it, found through the remaining capacity tree.
+ */
+@Slf4j
+public class FirstFitDecreasingStrategy implements BatchPackingStrategy {
+
+	@Override
+	public List<Batch> pack(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch) {
+		// Sort by absolute amount descending
+		List<BigDecimal> sortedAmounts = amounts.stream().sorted(Comparator.reverseOrder()).toList();
+		log.debug("Sorted transaction amounts - descending order : {}", sortedAmounts);
+
+		List<Batch> batches = new ArrayList<>();
+		CapacityTree remainingCapacity = new CapacityTree(sortedAmounts.size());
+		for (BigDecimal absoluteAmount : sortedAmounts) {
+			int index = remainingCapacity.firstFit(absoluteAmount);
+
+			if (index >= 0) {
+				// Add transaction details to the batch
+				Batch batch = batches.get(index);
+				batch.addTransaction(absoluteAmount);
+				remainingCapacity.update(index, maxAmountPerBatch.subtract(batch.getTotalValueOfAllTransactions()));
+				log.debug("Placing transaction with value {} into batch {}", absoluteAmount, index + 1);
+			} else {
+				// If no batch can accommodate, create a new one
+				batches.add(new Batch(absoluteAmount, 1));
+				remainingCapacity.update(batches.size() - 1, maxAmountPerBatch.subtract(absoluteAmount));
+				log.debug("Creating new batch #{} for transaction with value {}", batches.size(), absoluteAmount);
+			}
+		}
+		return batches;
+	}
+
+}
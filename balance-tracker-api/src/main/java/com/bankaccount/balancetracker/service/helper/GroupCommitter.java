@@ -0,0 +1,182 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group commit engine. Concurrent callers enqueue their transaction and wait on
+ * a future, while a single committer thread collects the queued transactions
+ * for up to the configured window or size cap and applies them as one group. If
+ * the group fails, its transactions are retried one by one so that a single bad
+ * transaction only fails its own caller.
+ */
+@Slf4j
+public class GroupCommitter implements AutoCloseable {
+
+	private final BlockingQueue<PendingCommit> queue = new LinkedBlockingQueue<>();
+	private final Consumer<List<Transaction>> groupApplier;
+	private final Consumer<Transaction> singleApplier;
+	private final long windowNanos;
+	private final int maxGroupSize;
+	private final Thread committerThread;
+	private volatile boolean running = true;
+
+	private final DistributionSummary groupSizeSummary;
+	private final Timer waitTimer;
+	private final Timer commitTimer;
+
+	/**
+	 * @param groupApplier  applies a group of transactions in one DB transaction
+	 * @param singleApplier applies a single transaction in its own DB transaction
+	 * @param windowMs      max time to wait for more transactions after the first
+	 *                      of a group arrives
+	 * @param maxGroupSize  max transactions per group
+	 * @param meterRegistry registry for the group size and wait time metrics
+	 */
+	public GroupCommitter(Consumer<List<Transaction>> groupApplier, Consumer<Transaction> singleApplier,
+			long windowMs, int maxGroupSize, MeterRegistry meterRegistry) {
+		this.groupApplier = groupApplier;
+		this.singleApplier = singleApplier;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+		this.maxGroupSize = Math.max(1, maxGroupSize);
+		this.groupSizeSummary = DistributionSummary.builder("balance.groupcommit.size")
+				.description("Transactions applied per group commit").register(meterRegistry);
+		this.waitTimer = Timer.builder("balance.groupcommit.wait")
+				.description("Time a transaction waited in the queue before its group was committed")
+				.register(meterRegistry);
+		this.commitTimer = Timer.builder("balance.groupcommit.commit")
+				.description("Time taken to commit a group").register(meterRegistry);
+		this.committerThread = new Thread(this::run, "group-committer");
+		this.committerThread.setDaemon(true);
+		this.committerThread.start();
+	}
+
+	/**
+	 * Queue a transaction for the next group commit
+	 *
+	 * @param transaction transaction to apply
+	 * @return future completed when the group containing the transaction commits
+	 */
+	public CompletableFuture<Void> submit(Transaction transaction) {
+		PendingCommit pending = new PendingCommit(transaction, System.nanoTime(), new CompletableFuture<>());
+		if (!running) {
+			pending.future().completeExceptionally(unavailable());
+			return pending.future();
+		}
+		queue.add(pending);
+		return pending.future();
+	}
+
+	/**
+	 * Stop the committer thread and fail any transactions still queued
+	 */
+	@Override
+	public void close() {
+		running = false;
+		committerThread.interrupt();
+		try {
+			committerThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		PendingCommit pending;
+		while ((pending = queue.poll()) != null) {
+			pending.future().completeExceptionally(unavailable());
+		}
+	}
+
+	/**
+	 * Committer loop: block for the first transaction of a group, then keep
+	 * collecting until the window elapses or the group is full.
+	 */
+	private void run() {
+		List<PendingCommit> group = new ArrayList<>(maxGroupSize);
+		while (running) {
+			try {
+				PendingCommit first = queue.take();
+				group.add(first);
+				long deadline = System.nanoTime() + windowNanos;
+				while (group.size() < maxGroupSize) {
+					queue.drainTo(group, maxGroupSize - group.size());
+					long remaining = deadline - System.nanoTime();
+					if (group.size() >= maxGroupSize || remaining <= 0) {
+						break;
+					}
+					PendingCommit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					group.add(next);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				group.forEach(p -> p.future().completeExceptionally(unavailable()));
+				return;
+			}
+			commit(group);
+			group.clear();
+		}
+	}
+
+	/**
+	 * Commit a group, falling back to one transaction at a time when the group
+	 * fails.
+	 *
+	 * @param group transactions collected for this group
+	 */
+	private void commit(List<PendingCommit> group) {
+		long start = System.nanoTime();
+		group.forEach(p -> waitTimer.record(start - p.enqueuedAt(), TimeUnit.NANOSECONDS));
+		groupSizeSummary.record(group.size());
+		try {
+			groupApplier.accept(group.stream().map(PendingCommit::transaction).toList());
+			group.forEach(p -> p.future().complete(null));
+			log.debug("Group commit of {} transactions completed", group.size());
+		} catch (RuntimeException e) {
+			if (group.size() == 1) {
+				group.get(0).future().completeExceptionally(e);
+			} else {
+				log.warn("Group commit of {} transactions failed, retrying individually: {}", group.size(),
+						e.getMessage());
+				group.forEach(this::commitSingle);
+			}
+		} finally {
+			commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private void commitSingle(PendingCommit pending) {
+		try {
+			singleApplier.accept(pending.transaction());
+			pending.future().complete(null);
+		} catch (RuntimeException e) {
+			pending.future().completeExceptionally(e);
+		}
+	}
+
+	private static BalanceTrackerException unavailable() {
+		return new BalanceTrackerException("Group commit is shutting down", HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	/**
+	 * Transaction waiting for its group to commit
+	 */
+	private record PendingCommit(Transaction transaction, long enqueuedAt, CompletableFuture<Void> future) {
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Tells a replayed transaction Id from a new one before any DB work. Applied
+ * Ids are recorded in a scalable Bloom filter and an LRU of the most recent
+ * ones. An Id in the LRU is a duplicate straight away, which covers the quick
+ * retries of a producer that timed out. An Id the filter has never seen is new,
+ * which covers almost every transaction. Only an Id the filter may have seen
+ * is checked against the store, the authoritative answer.
+ * <p>
+ * The filter starts empty, so after a restart an Id applied before it reaches
+ * the store as new and is caught there by the primary key.
+ */
+@Component
+public class IdempotencyGuard {
+
+	@Value("${msa.bank.idempotency.expected-ids:100000}")
+	private long expectedIds = 100000;
+
+	@Value("${msa.bank.idempotency.false-positive-rate:0.01}")
+	private double falsePositiveRate = 0.01;
+
+	@Value("${msa.bank.idempotency.recent-ids:10000}")
+	private int recentIdCount = 10000;
+
+	private ScalableBloomFilter appliedIds;
+	private Map<String, Boolean> recentIds;
+
+	/**
+	 * Size the filter and the LRU
+	 */
+	@PostConstruct
+	public void init() {
+		appliedIds = new ScalableBloomFilter(expectedIds, falsePositiveRate);
+		recentIds = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > recentIdCount;
+			}
+		};
+	}
+
+	/**
+	 * Whether the transaction Id was already applied
+	 *
+	 * @param transactionId transaction Id
+	 * @param applied       authoritative check of the store, called only when
+	 *                      the filter may contain the Id
+	 * @return true when the Id was already applied
+	 */
+	public boolean isDuplicate(String transactionId, Predicate<String> applied) {
+		if (isRecent(transactionId)) {
+			return true;
+		}
+		if (!appliedIds.mightContain(transactionId)) {
+			return false;
+		}
+		if (applied.test(transactionId)) {
+			remember(transactionId);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record the transaction Id once the transaction is committed
+	 *
+	 * @param transactionId transaction Id
+	 */
+	public void record(String transactionId) {
+		appliedIds.put(transactionId);
+		remember(transactionId);
+	}
+
+	private boolean isRecent(String transactionId) {
+		synchronized (recentIds) {
+			return recentIds.get(transactionId) != null;
+		}
+	}
+
+	private void remember(String transactionId) {
+		synchronized (recentIds) {
+			recentIds.put(transactionId, Boolean.TRUE);
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+/**
+ * Next Fit: amounts in arrival order go into the current batch until one does
+ * not fit, which closes it and opens the next. O(n) without sorting, at most
+ * twice the optimum number of batches.
+ */
+public class NextFitStrategy implements BatchPackingStrategy {
+
+	@Override
+	public List<Batch> pack(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch) {
+		List<Batch> batches = new ArrayList<>();
+		Batch current = null;
+		for (BigDecimal absoluteAmount : amounts) {
+			if (current != null
+					&& current.getTotalValueOfAllTransactions().add(absoluteAmount).compareTo(maxAmountPerBatch) <= 0) {
+				current.addTransaction(absoluteAmount);
+			} else {
+				current = new Batch(absoluteAmount, 1);
+				batches.add(current);
+			}
+		}
+		return batches;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Quality report of a packing run: batches used against the
+ * {@code ceil(sum / maxAmountPerBatch)} lower bound
+ *
+ * @param strategy         strategy used
+ * @param transactionCount transactions packed
+ * @param batchCount       batches used
+ * @param lowerBound       lower bound on the batches needed
+ * @param elapsedMicros    packing time
+ */
+public record PackingReport(PackingStrategyType strategy, int transactionCount, int batchCount, int lowerBound,
+		long elapsedMicros) {
+
+	/**
+	 * Lower bound on the batches needed. An amount above the max takes a batch of
+	 * its own, so it counts as one batch rather than adding to the sum.
+	 *
+	 * @param amounts           absolute transaction amounts
+	 * @param maxAmountPerBatch max total amount per batch
+	 * @return oversized amounts plus {@code ceil(sum / maxAmountPerBatch)} of the
+	 *         others
+	 */
+	public static int lowerBound(List<BigDecimal> amounts, BigDecimal maxAmountPerBatch) {
+		int oversized = 0;
+		BigDecimal sum = BigDecimal.ZERO;
+		for (BigDecimal amount : amounts) {
+			if (amount.compareTo(maxAmountPerBatch) > 0) {
+				oversized++;
+			} else {
+				sum = sum.add(amount);
+			}
+		}
+		return oversized + sum.divide(maxAmountPerBatch, 0, RoundingMode.CEILING).intValueExact();
+	}
+
+}
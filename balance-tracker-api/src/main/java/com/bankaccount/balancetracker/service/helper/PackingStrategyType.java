@@ -0,0 +1,28 @@
+package com.bankaccount.balancetracker.service.helper;
+
+/**
+ * Batch packing strategies selectable by configuration
+ */
+public enum PackingStrategyType {
+
+	/**
+	 * First fit decreasing, O(n log n), within 11/9 of the optimum
+	 */
+	FFD,
+	/**
+	 * Best fit decreasing, O(n log n), same bound as FFD and often tighter
+	 * batches
+	 */
+	BFD,
+	/**
+	 * Next fit in arrival order, O(n) with a single open batch, for very large
+	 * inputs where speed matters more than batch count
+	 */
+	NEXT_FIT,
+	/**
+	 * Branch and bound for the fewest batches on small inputs, within a time
+	 * budget, falling back to FFD
+	 */
+	EXACT
+
+}
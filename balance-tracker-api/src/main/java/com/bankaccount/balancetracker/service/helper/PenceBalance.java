@@ -0,0 +1,116 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+/**
+ * Fixed point balance held in pence. The amount is spread over striped long
+ * cells, each on its own cache line, so concurrent writers rarely hit the same
+ * cell and an update allocates nothing. Unlike {@code LongAdder}, every cell
+ * update is overflow checked, and the sum stays exact beyond the long range. The
+ * sum is exact but, as with {@code LongAdder}, it is not an atomic snapshot
+ * while writers are active.
+ */
+public class PenceBalance {
+
+	/**
+	 * Longs per cell, 64 bytes so neighbouring cells never share a cache line
+	 */
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells;
+	private final int stripeMask;
+
+	public PenceBalance() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes number of cells, rounded up to a power of two
+	 */
+	public PenceBalance(int stripes) {
+		int cellCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+		this.cells = new AtomicLongArray(cellCount * PADDING);
+		this.stripeMask = cellCount - 1;
+	}
+
+	/**
+	 * Add an amount in pence, moving to the next cell when the CAS loses a race
+	 * or the cell would overflow. Fails only when every cell would overflow.
+	 *
+	 * @param pence amount to add, negative for debits
+	 */
+	public void add(long pence) {
+		int stripe = probe();
+		int overflowedCells = 0;
+		while (true) {
+			int index = stripe * PADDING;
+			long current = cells.get(index);
+			long updated = current + pence;
+			if (((current ^ updated) & (pence ^ updated)) < 0) {
+				if (++overflowedCells > stripeMask) {
+					throw new BalanceTrackerException("Balance overflow", HttpStatus.UNPROCESSABLE_ENTITY);
+				}
+			} else if (cells.compareAndSet(index, current, updated)) {
+				return;
+			}
+			stripe = (stripe + 1) & stripeMask;
+		}
+	}
+
+	/**
+	 * Exact balance in pounds, falling back to BigInteger when the cells add up
+	 * beyond the long range
+	 *
+	 * @return balance with scale 2
+	 */
+	public BigDecimal sum() {
+		long total = 0;
+		for (int stripe = 0; stripe <= stripeMask; stripe++) {
+			long cell = cells.get(stripe * PADDING);
+			long updated = total + cell;
+			if (((total ^ updated) & (cell ^ updated)) < 0) {
+				return exactSum();
+			}
+			total = updated;
+		}
+		return BigDecimal.valueOf(total, 2);
+	}
+
+	private BigDecimal exactSum() {
+		BigInteger total = BigInteger.ZERO;
+		for (int stripe = 0; stripe <= stripeMask; stripe++) {
+			total = total.add(BigInteger.valueOf(cells.get(stripe * PADDING)));
+		}
+		return new BigDecimal(total, 2);
+	}
+
+	/**
+	 * Convert an amount in pounds to pence
+	 *
+	 * @param amount amount in pounds
+	 * @return amount in pence
+	 */
+	public static long toPence(BigDecimal amount) {
+		try {
+			return amount.movePointRight(2).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new BalanceTrackerException("Amount must be a whole number of pence", HttpStatus.BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * Starting cell of the calling thread, a mixed thread Id so that threads
+	 * created together spread over the cells
+	 */
+	private int probe() {
+		long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) (id ^ (id >>> 32)) & stripeMask;
+	}
+
+}
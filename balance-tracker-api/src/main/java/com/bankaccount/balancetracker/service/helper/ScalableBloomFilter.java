@@ -0,0 +1,147 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings that grows with the number of entries. Entries go to
+ * the newest of a chain of fixed size filters. Once it holds its capacity a new
+ * filter is added with twice the capacity and half the false positive rate, so
+ * the false positive rate of the whole chain stays under twice the initial
+ * rate however many entries are added. Lookups and additions are lock free,
+ * and a lookup never misses an entry that was added before it.
+ */
+public class ScalableBloomFilter {
+
+	private static final double LN2 = Math.log(2);
+
+	private final List<Filter> filters = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param initialCapacity   entries held by the first filter
+	 * @param falsePositiveRate false positive rate of the first filter
+	 */
+	public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+		filters.add(new Filter(Math.max(1, initialCapacity), falsePositiveRate));
+	}
+
+	/**
+	 * @param value value to look up
+	 * @return false when the value was never added, true when it probably was
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		for (Filter filter : filters) {
+			if (filter.mightContain(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param value value to add
+	 */
+	public void put(String value) {
+		current().put(hash(value));
+	}
+
+	/**
+	 * @return number of filters in the chain
+	 */
+	public int filterCount() {
+		return filters.size();
+	}
+
+	/**
+	 * Newest filter, adding the next one when it is full
+	 */
+	private Filter current() {
+		Filter last = filters.get(filters.size() - 1);
+		if (last.count.get() < last.capacity) {
+			return last;
+		}
+		synchronized (filters) {
+			last = filters.get(filters.size() - 1);
+			if (last.count.get() >= last.capacity) {
+				last = new Filter(last.capacity * 2, last.falsePositiveRate / 2);
+				filters.add(last);
+			}
+			return last;
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * Fixed size filter, sized for its capacity and false positive rate, probing
+	 * by double hashing of the two halves of the hash
+	 */
+	private static class Filter {
+
+		private final long capacity;
+		private final double falsePositiveRate;
+		private final AtomicLongArray words;
+		private final long bitCount;
+		private final int hashCount;
+		private final AtomicLong count = new AtomicLong();
+
+		Filter(long capacity, double falsePositiveRate) {
+			this.capacity = capacity;
+			this.falsePositiveRate = falsePositiveRate;
+			long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+			this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+			this.bitCount = words.length() * 64L;
+			this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * LN2));
+		}
+
+		boolean mightContain(long hash) {
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 1; i <= hashCount; i++) {
+				long bit = index(h1 + (long) i * h2);
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void put(long hash) {
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 1; i <= hashCount; i++) {
+				long bit = index(h1 + (long) i * h2);
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				long current = words.get(word);
+				while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+					current = words.get(word);
+				}
+			}
+			count.incrementAndGet();
+		}
+
+		private long index(long combined) {
+			return Math.floorMod(combined, bitCount);
+		}
+	}
+
+}
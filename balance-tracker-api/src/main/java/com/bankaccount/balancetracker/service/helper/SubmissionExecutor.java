@@ -0,0 +1,171 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded executor for audit submissions. A fixed pool of threads works off a
+ * bounded queue and the saturation policy decides what happens to a task when
+ * that queue is full.
+ */
+@Slf4j
+public class SubmissionExecutor implements AutoCloseable {
+
+	/**
+	 * What happens to a task when the queue is full
+	 */
+	public enum SaturationPolicy {
+		/**
+		 * The caller waits for space in the queue
+		 */
+		BLOCK,
+		/**
+		 * The task fails straight away with 503
+		 */
+		REJECT,
+		/**
+		 * The task is parked in an unbounded overflow list and moved to the queue
+		 * as workers free up
+		 */
+		SPILL
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final SaturationPolicy policy;
+	private final ConcurrentLinkedDeque<Runnable> spill = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger spillDepth = new AtomicInteger();
+	private final Counter rejectedCounter;
+	private final Counter spilledCounter;
+
+	/**
+	 * @param threads       worker threads
+	 * @param queueCapacity max tasks waiting for a worker
+	 * @param policy        saturation policy
+	 * @param meterRegistry registry for the queue depth and rejection metrics
+	 */
+	public SubmissionExecutor(int threads, int queueCapacity, SaturationPolicy policy, MeterRegistry meterRegistry) {
+		this.policy = policy;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "audit-submission-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, (runnable, pool) -> saturated(runnable)) {
+			@Override
+			protected void afterExecute(Runnable runnable, Throwable throwable) {
+				moveSpilledToQueue();
+			}
+		};
+		Gauge.builder("audit.submission.queue.depth", executor, pool -> pool.getQueue().size())
+				.description("Audit submissions waiting for a worker").register(meterRegistry);
+		Gauge.builder("audit.submission.spill.depth", spillDepth, AtomicInteger::get)
+				.description("Audit submissions parked in the overflow list").register(meterRegistry);
+		this.rejectedCounter = Counter.builder("audit.submission.rejected")
+				.description("Audit submissions rejected because the queue was full").register(meterRegistry);
+		this.spilledCounter = Counter.builder("audit.submission.spilled")
+				.description("Audit submissions parked because the queue was full").register(meterRegistry);
+	}
+
+	/**
+	 * Run the task on a worker
+	 *
+	 * @param task task to run
+	 * @return future completed with the task result, or exceptionally with a 503
+	 *         when the task is rejected
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(task.get());
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCounter.increment();
+			future.completeExceptionally(
+					new BalanceTrackerException("Audit submission queue is full", HttpStatus.SERVICE_UNAVAILABLE));
+		}
+		return future;
+	}
+
+	/**
+	 * Stop the workers once the queued tasks are done, then run any spilled
+	 * tasks in the calling thread so no submission is lost
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+				log.warn("Audit submission executor did not finish within 5 seconds");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Runnable runnable;
+		while ((runnable = spill.poll()) != null) {
+			spillDepth.decrementAndGet();
+			runnable.run();
+		}
+	}
+
+	/**
+	 * Apply the saturation policy to a task the queue had no space for
+	 */
+	private void saturated(Runnable runnable) {
+		if (executor.isShutdown()) {
+			throw new RejectedExecutionException("Audit submission executor is shut down");
+		}
+		switch (policy) {
+		case BLOCK -> {
+			try {
+				executor.getQueue().put(runnable);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for the audit submission queue", e);
+			}
+		}
+		case SPILL -> {
+			spill.add(runnable);
+			spillDepth.incrementAndGet();
+			spilledCounter.increment();
+			moveSpilledToQueue();
+		}
+		default -> throw new RejectedExecutionException("Audit submission queue is full");
+		}
+	}
+
+	/**
+	 * Move spilled tasks to the queue while it has space, oldest first
+	 */
+	private void moveSpilledToQueue() {
+		Runnable runnable;
+		while ((runnable = spill.poll()) != null) {
+			if (!executor.getQueue().offer(runnable)) {
+				spill.addFirst(runnable);
+				return;
+			}
+			spillDepth.decrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+/**
+ * Business validation of a transaction beyond bean validation: the amount range
+ * and the sign a credit or a debit must have.
+ */
+@Component
+public class TransactionValidator {
+
+	private final BigDecimal minAmount;
+	private final BigDecimal maxAmount;
+
+	/**
+	 * @param minAmount min absolute amount of a transaction
+	 * @param maxAmount max absolute amount of a transaction
+	 */
+	public TransactionValidator(@Value("${msa.bank.transaction.amount.min}") BigDecimal minAmount,
+			@Value("${msa.bank.transaction.amount.max}") BigDecimal maxAmount) {
+		this.minAmount = minAmount;
+		this.maxAmount = maxAmount;
+	}
+
+	/**
+	 * Validation for amount
+	 *
+	 * @param transaction transaction received.
+	 * @throws BalanceTrackerException with 400 Bad Request when invalid
+	 */
+	public void validate(Transaction transaction) {
+		BigDecimal amount = transaction.getAmount();
+		if (amount == null || amount.abs().compareTo((minAmount)) < 0 || amount.abs().compareTo(maxAmount) > 0) {
+			throw new BalanceTrackerException("Amount must be between £" + minAmount + " and £" + maxAmount,
+					HttpStatus.BAD_REQUEST);
+		}
+		if (transaction.getTransactionId().startsWith("CRE") && amount.signum() <= 0) {
+			throw new BalanceTrackerException("Credit must have positive amount", HttpStatus.BAD_REQUEST);
+		}
+		if (transaction.getTransactionId().startsWith("DEB") && amount.signum() >= 0) {
+			throw new BalanceTrackerException("Debit must have negative amount", HttpStatus.BAD_REQUEST);
+		}
+	}
+
+}
@@ -3,36 +3,114 @@
  */
 package com.bankaccount.balancetracker.service.impl;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import com.bankaccount.balancetracker.dto.Batch;
 import com.bankaccount.balancetracker.dto.Submission;
+import com.bankaccount.balancetracker.dto.SubmissionResult;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
 import com.bankaccount.balancetracker.service.AuditSubmissionService;
+import com.bankaccount.balancetracker.service.helper.AuditJournal;
+import com.bankaccount.balancetracker.service.helper.AuditJournal.FsyncPolicy;
 import com.bankaccount.balancetracker.service.helper.AuditSystemBatchBuilder;
-import com.bankaccount.balancetracker.service.util.AuditLogWriter;
+import com.bankaccount.balancetracker.service.helper.SubmissionExecutor;
+import com.bankaccount.balancetracker.service.helper.SubmissionExecutor.SaturationPolicy;
 import com.bankaccount.balancetracker.service.util.JsonUtils;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service implementation to submit transactions to the Audit System
+ * Service implementation to submit transactions to the Audit System. Each
+ * submission is appended to the audit journal under a new submission Id.
  */
 @Service
 @Slf4j
 public class AuditSubmissionServiceImpl implements AuditSubmissionService {
 
 	private final AuditSystemBatchBuilder batchBuilder;
+	private final MeterRegistry meterRegistry;
+	private SubmissionExecutor submissionExecutor;
+	private AuditJournal auditJournal;
 
 	@Value("${msa.auditsystem.transaction.maxAmountPerBatch:500}")
 	private BigDecimal maxAmountPerBatch;
 
-	public AuditSubmissionServiceImpl(AuditSystemBatchBuilder batchBuilder) {
+	@Value("${msa.auditsystem.submission.threads:2}")
+	private int submissionThreads;
+
+	@Value("${msa.auditsystem.submission.queue-capacity:100}")
+	private int submissionQueueCapacity;
+
+	@Value("${msa.auditsystem.submission.saturation-policy:BLOCK}")
+	private SaturationPolicy saturationPolicy;
+
+	@Value("${msa.auditsystem.journal.dir:audit-journal}")
+	private String journalDir;
+
+	@Value("${msa.auditsystem.journal.segment-max-bytes:67108864}")
+	private long journalSegmentMaxBytes;
+
+	@Value("${msa.auditsystem.journal.segment-max-age-ms:3600000}")
+	private long journalSegmentMaxAgeMs;
+
+	@Value("${msa.auditsystem.journal.retention-ms:604800000}")
+	private long journalRetentionMs;
+
+	@Value("${msa.auditsystem.journal.fsync-policy:GROUP}")
+	private FsyncPolicy journalFsyncPolicy;
+
+	public AuditSubmissionServiceImpl(AuditSystemBatchBuilder batchBuilder, MeterRegistry meterRegistry) {
 		this.batchBuilder = batchBuilder;
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Open the audit journal and start the bounded executor for asynchronous
+	 * submissions
+	 */
+	@PostConstruct
+	public void startSubmissionExecutor() {
+		try {
+			auditJournal = new AuditJournal(Paths.get(journalDir), journalSegmentMaxBytes, journalSegmentMaxAgeMs,
+					journalRetentionMs, journalFsyncPolicy);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to open the audit journal in " + journalDir, e);
+		}
+		submissionExecutor = new SubmissionExecutor(submissionThreads, submissionQueueCapacity, saturationPolicy,
+				meterRegistry);
+		log.info("Audit submission executor started with {} threads, queue capacity {} and {} policy",
+				submissionThreads, submissionQueueCapacity, saturationPolicy);
+	}
+
+	/**
+	 * Finish the queued submissions, stop the executor and close the audit
+	 * journal
+	 */
+	@PreDestroy
+	public void stopSubmissionExecutor() {
+		if (submissionExecutor != null) {
+			submissionExecutor.close();
+		}
+		if (auditJournal != null) {
+			try {
+				auditJournal.close();
+			} catch (IOException e) {
+				log.error("Failed to close the audit journal", e);
+			}
+		}
 	}
 
 	/**
@@ -43,26 +121,51 @@ public class AuditSubmissionServiceImpl implements AuditSubmissionService {
 
 	@Override
 	public void submit(List<Transaction> transactions) {
+		submitTransactions(UUID.randomUUID().toString(), transactions);
+	}
+
+	/**
+	 * Submit transactions to the Audit System on the submission executor
+	 * 
+	 * @param submissionId Id of the submission
+	 * @param transactions transactions to submit to the Audit System
+	 * @return future completed with the submission result
+	 */
+	@Override
+	public CompletableFuture<SubmissionResult> submitAsync(String submissionId, List<Transaction> transactions) {
+		return submissionExecutor.submit(() -> submitTransactions(submissionId, transactions));
+	}
+
+	private SubmissionResult submitTransactions(String submissionId, List<Transaction> transactions) {
 		log.debug("submit:enter with {} transactions", transactions != null ? transactions.size() : "null");
 
 		if (transactions == null || transactions.isEmpty()) {
 			log.info("No transactions to submit to Audit System");
-			return;
+			return new SubmissionResult(0, 0);
 		}
 
 		List<Batch> batches = batchBuilder.buildBatches(transactions, maxAmountPerBatch);
 
 		// Audit submission object construction
-		Submission submission = new Submission();
-		submission.setBatches(batches);
-		log.info("Audit System Submission batch count = {}", submission.getBatches().size());
+		Submission submission = new Submission(submissionId, batches);
 
-		// Print Audit System Submission
-		log.info(JsonUtils.toJson(submission));
+		// Print the full Audit System Submission only when debugging, it can be MBs
+		if (log.isDebugEnabled()) {
+			log.debug(JsonUtils.toJson(submission));
+		}
 
-		// Write Audit Submission to file - for demo purpose
-		AuditLogWriter.writeSubmissionLog(submission);
+		// Append Audit Submission to the journal
+		int bytes;
+		try {
+			bytes = auditJournal.append(submission.getSubmissionId(), submission);
+		} catch (IOException | IllegalStateException e) {
+			log.error("Failed to append audit submission {} to the journal", submission.getSubmissionId(), e);
+			throw new BalanceTrackerException("Failed to write the audit journal", HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+		log.info("Audit System Submission {} of {} transactions in {} batches, {} bytes journaled",
+				submission.getSubmissionId(), transactions.size(), batches.size(), bytes);
 		log.debug("submit:exit");
+		return new SubmissionResult(transactions.size(), batches.size(), submission.getSubmissionId());
 	}
 
 }
@@ -5,21 +5,52 @@ package com.bankaccount.balancetracker.service.impl;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
+import com.bankaccount.balancetracker.entity.BalanceSlotT;
 import com.bankaccount.balancetracker.entity.BalanceT;
 import com.bankaccount.balancetracker.entity.TransactionT;
 import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+import com.bankaccount.balancetracker.repository.BalanceCheckpointRepository;
 import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
 import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.BalanceTail;
 import com.bankaccount.balancetracker.service.BankAccountService;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
+import com.bankaccount.balancetracker.service.helper.BalanceSnapshotCache;
+import com.bankaccount.balancetracker.service.helper.GroupCommitter;
+import com.bankaccount.balancetracker.service.helper.IdempotencyGuard;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -31,54 +62,445 @@ import lombok.extern.slf4j.Slf4j;
 @Qualifier("dbService")
 @Slf4j
 public class BankAccountServiceImpl implements BankAccountService {
+	private static final String PENDING = "PENDING";
+
 	/**
-	 * Account ID is not required as per the requirement, internally assigned for
-	 * persistence and tractability, producer does not send it.
+	 * Attempts of a DB transaction rolled back on a constraint that is not a
+	 * replay
 	 */
-	private static final String ACCOUNT_ID = "ACC123456";
-	private static final String PENDING = "PENDING";
+	private static final int COMMIT_ATTEMPTS = 2;
 
 	private final BalanceRepository balanceRepository;
+	private final BalanceCheckpointRepository balanceCheckpointRepository;
+	private final BalanceSlotRepository balanceSlotRepository;
 	private final TransactionRepository transactionRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final MeterRegistry meterRegistry;
+	private final BalanceSnapshotCache balanceSnapshotCache = new BalanceSnapshotCache();
+	private final BalanceBroadcaster balanceBroadcaster;
+	private final IdempotencyGuard idempotencyGuard;
+
+	@Value("${msa.bank.group-commit.enabled:false}")
+	private boolean groupCommitEnabled;
+
+	@Value("${msa.bank.group-commit.window-ms:2}")
+	private long groupCommitWindowMs;
+
+	@Value("${msa.bank.group-commit.max-size:100}")
+	private int groupCommitMaxSize;
+
+	/**
+	 * Number of slot rows the balance is striped over, 1 keeps the whole balance
+	 * in the single balance row.
+	 */
+	@Value("${msa.bank.balance.stripe-count:1}")
+	private int stripeCount;
+
+	/**
+	 * Time a cached balance snapshot is served for before it is loaded again,
+	 * which bounds how long a change committed by another node goes unseen.
+	 */
+	@Value("${msa.bank.balance.snapshot-ttl-ms:1000}")
+	private long snapshotTtlMs;
 
-	public BankAccountServiceImpl(BalanceRepository balanceRepository, TransactionRepository transactionRepository) {
+	private GroupCommitter groupCommitter;
+
+	public BankAccountServiceImpl(BalanceRepository balanceRepository, BalanceSlotRepository balanceSlotRepository,
+			BalanceCheckpointRepository balanceCheckpointRepository, TransactionRepository transactionRepository,
+			PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+			BalanceBroadcaster balanceBroadcaster, IdempotencyGuard idempotencyGuard) {
 		this.balanceRepository = balanceRepository;
+		this.balanceCheckpointRepository = balanceCheckpointRepository;
+		this.balanceSlotRepository = balanceSlotRepository;
 		this.transactionRepository = transactionRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.meterRegistry = meterRegistry;
+		this.balanceBroadcaster = balanceBroadcaster;
+		this.idempotencyGuard = idempotencyGuard;
+	}
+
+	/**
+	 * Starts the group commit engine when enabled. Each group is applied in its
+	 * own DB transaction, so callers waiting for a group do not hold a connection.
+	 */
+	@PostConstruct
+	public void startGroupCommit() {
+		if (groupCommitEnabled) {
+			groupCommitter = new GroupCommitter(
+					group -> transactionTemplate.executeWithoutResult(status -> applyTransactions(group)),
+					trans -> transactionTemplate.executeWithoutResult(status -> applyTransaction(trans)),
+					groupCommitWindowMs, groupCommitMaxSize, meterRegistry);
+			log.info("Group commit enabled with window {} ms and max size {}", groupCommitWindowMs,
+					groupCommitMaxSize);
+		}
+	}
+
+	@PreDestroy
+	public void stopGroupCommit() {
+		if (groupCommitter != null) {
+			groupCommitter.close();
+		}
 	}
 
+	/**
+	 * Process Transaction. A replayed transaction Id is told apart by the
+	 * idempotency guard before any DB work. A replay that gets past the guard,
+	 * racing its original or applied before a restart, fails on the primary key
+	 * and is rolled back, then confirmed as a replay by reading the transaction.
+	 * Any other constraint failure is retried once, for a first transaction of
+	 * the account that lost the race to create its balance row.
+	 * Not annotated as transactional, as in group commit mode the caller only
+	 * waits for its group to be committed by the committer thread.
+	 */
 	@Override
-	@Transactional
-	public void processTransaction(Transaction transaction) {
-		log.info("processTransaction:enter with transaction Id: {}", transaction.getTransactionId());
+	public boolean processTransaction(Transaction transaction) {
+		String transactionId = transaction.getTransactionId();
+		if (idempotencyGuard.isDuplicate(transactionId, transactionRepository::existsById)) {
+			log.info("processTransaction: transaction Id {} already applied", transactionId);
+			return false;
+		}
+		for (int attempt = 1;; attempt++) {
+			try {
+				commitTransaction(transaction);
+				break;
+			} catch (DataIntegrityViolationException e) {
+				if (transactionRepository.existsById(transactionId)) {
+					log.info("processTransaction: transaction Id {} already applied, rolled back", transactionId);
+					idempotencyGuard.record(transactionId);
+					return false;
+				}
+				if (attempt == COMMIT_ATTEMPTS) {
+					throw e;
+				}
+				log.info("processTransaction: transaction Id {} rolled back, retrying: {}", transactionId,
+						e.getMostSpecificCause().getMessage());
+			}
+		}
+		idempotencyGuard.record(transactionId);
+		return true;
+	}
 
-		// Read and update balance
-		BalanceT balance = balanceRepository.findForUpdate(ACCOUNT_ID).orElseGet(() -> {
-			// Initialize for the first time
-			BalanceT newBalance = BalanceT.builder().accountId(ACCOUNT_ID).amount(BigDecimal.ZERO).build();
-			balanceRepository.save(newBalance);
-			log.info("Initialized balance row for accountId: {}", ACCOUNT_ID);
-			return newBalance;
-		});
+	/**
+	 * Commits a single transaction in its own DB transaction, or in the group of
+	 * the group commit
+	 *
+	 * @param transaction transaction to commit
+	 */
+	private void commitTransaction(Transaction transaction) {
+		if (groupCommitter == null) {
+			transactionTemplate.executeWithoutResult(status -> applyTransaction(transaction));
+			return;
+		}
+		try {
+			groupCommitter.submit(transaction).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies a single transaction, must run inside a DB transaction
+	 *
+	 * @param transaction transaction to apply
+	 */
+	private void applyTransaction(Transaction transaction) {
+		log.info("processTransaction:enter with transaction Id: {}", transaction.getTransactionId());
 
-		balance.setAmount(balance.getAmount().add(transaction.getAmount()));
-		log.debug("Updated balance after transaction Id {}: {}", transaction.getTransactionId(), balance.getAmount());
-		balanceRepository.save(balance);
+		// Update balance
+		String accountId = BankAccountService.accountIdOf(transaction);
+		applyDelta(accountId, transaction.getAmount(), transaction.getTransactionId());
+		balanceChangedAfterCommit(Set.of(accountId));
+		log.debug("Updated balance after transaction Id {} by {}", transaction.getTransactionId(),
+				transaction.getAmount());
 
 		// Persist Transaction in the Transactions table
-		TransactionT transactionEntity = TransactionT.builder().transactionId(transaction.getTransactionId())
-				.accountId(ACCOUNT_ID).amount(transaction.getAmount()).updatedDateTime(LocalDateTime.now())
-				.auditStatus(PENDING).build();
-		transactionRepository.save(transactionEntity);
+		transactionRepository.save(toEntity(transaction, LocalDateTime.now()));
 		log.info("processTransaction:exit with transaction Id: {}", transaction.getTransactionId());
 	}
 
+	/**
+	 * Applies the net amount of the batch with a single balance update and
+	 * inserts all transaction rows in the same DB transaction, so the inserts are
+	 * sent as JDBC batches. Replayed transaction Ids are told apart by the
+	 * idempotency guard first and left out of the batch. When the batch breaks a
+	 * constraint, a replay that got past the guard, a conflicting Id or an amount
+	 * out of range, it is rolled back and its transactions are applied one at a
+	 * time, each in its own DB transaction, so only the offending ones are
+	 * reported.
+	 */
 	@Override
-	public double retrieveBalance() {
-		log.info("retrieveBalance:entry ");
-		return balanceRepository.findById(ACCOUNT_ID).map(BalanceT::getAmount).map(Number::doubleValue)
-				.orElseThrow(() -> new BalanceTrackerException("Balance not found for account Id " + ACCOUNT_ID,
+	public List<TransactionResult> processTransactions(List<Transaction> transactions) {
+		TransactionResult[] results = new TransactionResult[transactions.size()];
+		List<Transaction> fresh = new ArrayList<>(transactions.size());
+		List<Integer> freshIndexes = new ArrayList<>(transactions.size());
+		for (int i = 0; i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			if (idempotencyGuard.isDuplicate(transaction.getTransactionId(), transactionRepository::existsById)) {
+				log.info("processTransactions: transaction Id {} already applied", transaction.getTransactionId());
+				results[i] = alreadyApplied(transaction);
+			} else {
+				fresh.add(transaction);
+				freshIndexes.add(i);
+			}
+		}
+		if (!fresh.isEmpty()) {
+			List<TransactionResult> applied = applyBatch(fresh);
+			for (int i = 0; i < applied.size(); i++) {
+				results[freshIndexes.get(i)] = applied.get(i);
+			}
+		}
+		return List.of(results);
+	}
+
+	/**
+	 * Applies transactions not applied before as one DB transaction, or one at a
+	 * time when it is rolled back
+	 *
+	 * @param transactions transactions to apply
+	 * @return outcome of each transaction, in batch order
+	 */
+	private List<TransactionResult> applyBatch(List<Transaction> transactions) {
+		try {
+			transactionTemplate.executeWithoutResult(status -> applyTransactions(transactions));
+		} catch (DataIntegrityViolationException e) {
+			log.warn("processTransactions: batch of {} transactions rolled back, applying them one at a time: {}",
+					transactions.size(), e.getMostSpecificCause().getMessage());
+			return transactions.stream().map(this::processBatchItem).toList();
+		}
+		transactions.forEach(t -> idempotencyGuard.record(t.getTransactionId()));
+		return transactions.stream().map(t -> result(t, TransactionResult.ACCEPTED, null)).toList();
+	}
+
+	/**
+	 * Applies a transaction of a batch that was rolled back, in its own DB
+	 * transaction, retried once on a constraint failure that is not a replay, as
+	 * the batch may have lost the race to create a balance row
+	 *
+	 * @param transaction transaction to apply
+	 * @return outcome of the transaction
+	 */
+	private TransactionResult processBatchItem(Transaction transaction) {
+		String transactionId = transaction.getTransactionId();
+		for (int attempt = 1;; attempt++) {
+			try {
+				transactionTemplate.executeWithoutResult(status -> applyTransaction(transaction));
+				break;
+			} catch (DataIntegrityViolationException e) {
+				if (transactionRepository.existsById(transactionId)) {
+					log.info("processTransactions: transaction Id {} already applied, rolled back", transactionId);
+					idempotencyGuard.record(transactionId);
+					return alreadyApplied(transaction);
+				}
+				if (attempt == COMMIT_ATTEMPTS) {
+					log.warn("processTransactions: transaction Id {} rejected: {}", transactionId,
+							e.getMostSpecificCause().getMessage());
+					return result(transaction, TransactionResult.REJECTED, "Transaction conflicts with stored data");
+				}
+			}
+		}
+		idempotencyGuard.record(transactionId);
+		return result(transaction, TransactionResult.ACCEPTED, null);
+	}
+
+	private static TransactionResult alreadyApplied(Transaction transaction) {
+		return result(transaction, TransactionResult.ALREADY_APPLIED, "Transaction already applied");
+	}
+
+	private static TransactionResult result(Transaction transaction, String status, String message) {
+		return new TransactionResult(transaction.getTransactionId(), status, message);
+	}
+
+	/**
+	 * Applies a batch of transactions, must run inside a DB transaction
+	 *
+	 * @param transactions transactions to apply
+	 */
+	private void applyTransactions(List<Transaction> transactions) {
+		log.info("processTransactions:enter with {} transactions", transactions.size());
+
+		// Net amount per account, in account order so concurrent batches lock the
+		// balance rows in the same order
+		Map<String, BigDecimal> deltas = transactions.stream().collect(Collectors.groupingBy(
+				BankAccountService::accountIdOf, TreeMap::new,
+				Collectors.reducing(BigDecimal.ZERO, Transaction::getAmount, BigDecimal::add)));
+
+		// Update balance once per account for the whole batch
+		String stripeKey = transactions.get(0).getTransactionId();
+		deltas.forEach((accountId, delta) -> applyDelta(accountId, delta, stripeKey));
+		balanceChangedAfterCommit(deltas.keySet());
+		log.debug("Updated balance of {} accounts after batch of {} transactions", deltas.size(),
+				transactions.size());
+
+		// Persist Transactions in the Transactions table
+		LocalDateTime now = LocalDateTime.now();
+		transactionRepository.saveAll(transactions.stream().map(t -> toEntity(t, now)).toList());
+		log.info("processTransactions:exit with {} transactions", transactions.size());
+	}
+
+	@Override
+	public double retrieveBalance(String accountId) {
+		return retrieveBalanceSnapshot(accountId).getBalance();
+	}
+
+	/**
+	 * Serves the balance from the snapshot cache, going to the DB only when the
+	 * balance changed since the snapshot or the snapshot expired
+	 */
+	@Override
+	public BalanceSnapshot retrieveBalanceSnapshot(String accountId) {
+		return balanceSnapshotCache.get(accountId, snapshotTtlMs, () -> loadBalance(accountId));
+	}
+
+	/**
+	 * Loads the balance from the DB
+	 *
+	 * @param accountId account ID
+	 * @return balance of the account
+	 */
+	private double loadBalance(String accountId) {
+		log.info("retrieveBalance:entry for accountId: {}", accountId);
+		return storedAmount(accountId).map(Number::doubleValue)
+				.orElseThrow(() -> new BalanceTrackerException("Balance not found for account Id " + accountId,
 						HttpStatus.NOT_FOUND));
 
 	}
 
+	/**
+	 * Reads the balance kept up to date by the writers, the balance row and its
+	 * slots in striped mode
+	 *
+	 * @param accountId account ID
+	 * @return stored balance, empty when the account has none
+	 */
+	private Optional<BigDecimal> storedAmount(String accountId) {
+		return stripeCount > 1 ? balanceSlotRepository.sumTotalAmount(accountId)
+				: balanceRepository.findById(accountId).map(BalanceT::getAmount);
+	}
+
+	/**
+	 * Derives the balance from the transactions, as the amount of the latest
+	 * checkpoint of the account plus the transactions ingested after it. The
+	 * checkpoints bound the scan to the transactions since the latest one, so the
+	 * cost does not grow with the history.
+	 *
+	 * @param accountId account ID
+	 * @return balance derived from the transactions
+	 */
+	public BigDecimal deriveBalance(String accountId) {
+		Optional<BalanceCheckpointT> checkpoint = balanceCheckpointRepository
+				.findFirstByAccountIdOrderByThroughSeqDesc(accountId);
+		long afterSeq = checkpoint.map(BalanceCheckpointT::getThroughSeq).orElse(0L);
+		BalanceTail tail = transactionRepository.sumTail(accountId, afterSeq, Long.MAX_VALUE);
+		return checkpoint.map(BalanceCheckpointT::getAmount).orElse(BigDecimal.ZERO).add(tail.getAmount());
+	}
+
+	/**
+	 * Reconciles the stored balance of every account with the balance derived
+	 * from its transactions at startup, and warms the balance snapshot of each
+	 * account that matches, kept refreshed until it is first read. A mismatch is
+	 * logged and counted, not corrected, as writers on other nodes may commit
+	 * between the two reads.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void reconcileBalances() {
+		for (String accountId : balanceSlotRepository.findAccountIds()) {
+			BigDecimal derived = deriveBalance(accountId);
+			Optional<BigDecimal> stored = storedAmount(accountId);
+			if (stored.isPresent() && stored.get().compareTo(derived) == 0) {
+				balanceSnapshotCache.warm(accountId, derived.doubleValue());
+				log.info("Reconciled balance {} of accountId: {}", derived, accountId);
+			} else {
+				meterRegistry.counter("balance.reconciliation.mismatch").increment();
+				log.warn("Balance of accountId: {} is {} but its transactions add up to {}", accountId,
+						stored.orElse(null), derived);
+			}
+		}
+	}
+
+	/**
+	 * Loads again the balance snapshots in use that commits changed since the
+	 * last run, and the warmed ones before they expire, so reads of a warm or
+	 * busy account do not wait for the DB. Reads nothing for accounts that did
+	 * not change.
+	 */
+	@Scheduled(fixedDelayString = "${msa.bank.balance.snapshot-refresh-ms:250}")
+	public void refreshBalanceSnapshots() {
+		balanceSnapshotCache.refresh(snapshotTtlMs,
+				accountId -> storedAmount(accountId).map(BigDecimal::doubleValue).orElse(null));
+	}
+
+	/**
+	 * Invalidates the cached balance snapshots of the accounts and signals the
+	 * change to the balance subscribers once the DB transaction commits, so a
+	 * snapshot is never reloaded before the change is visible. Does so straight
+	 * away when there is no transaction to wait for.
+	 *
+	 * @param accountIds accounts whose balance changed
+	 */
+	private void balanceChangedAfterCommit(Collection<String> accountIds) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			balanceChanged(accountIds);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				balanceChanged(accountIds);
+			}
+		});
+	}
+
+	private void balanceChanged(Collection<String> accountIds) {
+		for (String accountId : accountIds) {
+			balanceSnapshotCache.invalidate(accountId);
+			balanceBroadcaster.balanceChanged(accountId);
+		}
+	}
+
+	/**
+	 * Adds the delta to the balance with a single atomic UPDATE, falling back to a
+	 * MERGE that initialises the row the first time. The MERGE does not absorb
+	 * the race where concurrent first transactions both find the row missing, on
+	 * H2 or PostgreSQL: the loser fails on the primary key and marks the DB
+	 * transaction for rollback, so it is not retried here but by the callers,
+	 * which run the rolled back DB transaction again once and find the row. In
+	 * striped mode the delta goes to the slot picked by the stripe key, so
+	 * concurrent writers spread their row locks over the slots.
+	 *
+	 * @param accountId account to update
+	 * @param delta     amount to add, negative for debits
+	 * @param stripeKey key to pick the slot, the transaction Id
+	 */
+	private void applyDelta(String accountId, BigDecimal delta, String stripeKey) {
+		if (stripeCount > 1) {
+			int slot = Math.floorMod(stripeKey.hashCode(), stripeCount);
+			String slotId = BalanceSlotT.slotId(accountId, slot);
+			if (balanceSlotRepository.incrementAmount(slotId, delta) == 0) {
+				balanceSlotRepository.upsertAmount(slotId, accountId, slot, delta);
+				log.info("Initialized balance slot {} for accountId: {}", slot, accountId);
+			}
+			return;
+		}
+		if (balanceRepository.incrementAmount(accountId, delta) == 0) {
+			balanceRepository.upsertAmount(accountId, delta);
+			log.info("Initialized balance row for accountId: {}", accountId);
+		}
+	}
+
+	/**
+	 * Maps the transaction to a pending transaction entity
+	 *
+	 * @param transaction     transaction received
+	 * @param updatedDateTime timestamp of the update
+	 * @return transaction entity
+	 */
+	private TransactionT toEntity(Transaction transaction, LocalDateTime updatedDateTime) {
+		return TransactionT.builder().transactionId(transaction.getTransactionId())
+				.accountId(BankAccountService.accountIdOf(transaction)).amount(transaction.getAmount())
+				.updatedDateTime(updatedDateTime).auditStatus(PENDING).build();
+	}
+
 }
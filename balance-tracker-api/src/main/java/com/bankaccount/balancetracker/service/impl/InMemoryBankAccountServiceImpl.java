@@ -1,91 +1,308 @@
 package com.bankaccount.balancetracker.service.impl;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
 import com.bankaccount.balancetracker.service.AuditSubmissionService;
 import com.bankaccount.balancetracker.service.BankAccountService;
+import com.bankaccount.balancetracker.service.helper.AuditBuffer;
+import com.bankaccount.balancetracker.service.helper.AuditBuffer.Backpressure;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
+import com.bankaccount.balancetracker.service.helper.PenceBalance;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service Implementation class for the bank account operations
+ * Service Implementation class for the bank account operations. Each account
+ * has its own balance, held in pence in striped cells, so transactions on
+ * independent accounts never contend with each other and concurrent writers on
+ * one account rarely do. Transactions wait for audit in bounded buffers that a
+ * single drainer thread hands to the asynchronous audit submission, so request
+ * threads never build or write a submission.
  */
 @Service
 @Qualifier("inMemoryService")
 @Slf4j
 public class InMemoryBankAccountServiceImpl implements BankAccountService {
 
-	private final Queue<Transaction> transactionsQueue = new ConcurrentLinkedQueue<>();
-	private final AtomicReference<BigDecimal> balance = new AtomicReference<>(BigDecimal.ZERO);
-	private final Object lock = new Object();
+	/**
+	 * Key of the audit buffer shared by all accounts
+	 */
+	private static final String SHARED_BUFFER = "*";
+
+	private final Map<String, PenceBalance> balances = new ConcurrentHashMap<>();
+	private final Map<String, AuditBuffer> auditBuffers = new ConcurrentHashMap<>();
+	private final BlockingQueue<AuditBuffer> readyBuffers = new LinkedBlockingQueue<>();
+	private Thread drainerThread;
 
 	@Value("${msa.auditsystem.transaction.limit}")
 	private int transactionLimit;
 
+	@Value("${msa.auditsystem.queue-per-account:false}")
+	private boolean queuePerAccount;
+
+	@Value("${msa.auditsystem.buffer.capacity:10000}")
+	private int bufferCapacity;
+
+	@Value("${msa.auditsystem.buffer.backpressure:BLOCK}")
+	private Backpressure backpressure;
+
+	@Value("${msa.auditsystem.buffer.block-timeout-ms:1000}")
+	private long blockTimeoutMs;
+
+	@Value("${msa.auditsystem.buffer.retry-ms:1000}")
+	private long retryMs;
+
 	private final AuditSubmissionService auditSubmissionService;
+	private final BalanceBroadcaster balanceBroadcaster;
 
-	public InMemoryBankAccountServiceImpl(AuditSubmissionService auditSubmissionService) {
+	public InMemoryBankAccountServiceImpl(AuditSubmissionService auditSubmissionService,
+			BalanceBroadcaster balanceBroadcaster) {
 		this.auditSubmissionService = auditSubmissionService;
+		this.balanceBroadcaster = balanceBroadcaster;
+	}
+
+	/**
+	 * Start the drainer thread that submits full audit buffers
+	 */
+	@PostConstruct
+	public void startAuditDrainer() {
+		if (bufferCapacity < transactionLimit) {
+			log.warn("Audit buffer capacity {} is below the transaction limit, using {}", bufferCapacity,
+					transactionLimit);
+			bufferCapacity = transactionLimit;
+		}
+		drainerThread = new Thread(this::drainReadyBuffers, "audit-drainer");
+		drainerThread.setDaemon(true);
+		drainerThread.start();
+	}
+
+	/**
+	 * Stop the drainer thread, transactions below the limit stay unsubmitted as
+	 * before
+	 */
+	@PreDestroy
+	public void stopAuditDrainer() {
+		if (drainerThread != null) {
+			drainerThread.interrupt();
+			try {
+				drainerThread.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	/**
-	 * Process Transaction
+	 * Process Transaction. Transaction Ids are not tracked in memory, so a replay
+	 * is applied again.
 	 */
 	@Override
-	public void processTransaction(Transaction transaction) {
+	public boolean processTransaction(Transaction transaction) {
 		log.debug("processTransaction:enter with transaction Id: {}", transaction.getTransactionId());
+		String accountId = BankAccountService.accountIdOf(transaction);
+		long pence = PenceBalance.toPence(transaction.getAmount());
 
 		// Update Balance
-		var updatedBalance = balance.updateAndGet(bal -> bal.add(transaction.getAmount()));
-		log.debug("Updated balance after transaction Id {}: {}", transaction.getTransactionId(), updatedBalance);
-
-		// Add transactions to the queue
-		transactionsQueue.add(transaction);
-
-		// Check the Transaction limit and submit to Audit System
-		if (transactionsQueue.size() >= transactionLimit) {
-			// To ensure thread safe
-			synchronized (lock) {
-				log.info("Inside Sync Lock for transactioId: {} at {}", transaction.getTransactionId(),
-						LocalDateTime.now());
-				if (transactionsQueue.size() >= transactionLimit) {
-					List<Transaction> submissionTransList = new ArrayList<>();
-					// Poll Transactions from the Queue
-					for (int i = 0; i < transactionLimit; i++) {
-						Optional.ofNullable(transactionsQueue.poll()).ifPresent(submissionTransList::add);
-					}
-					// Submit to Audit System with the transaction limit reached
-					if (!submissionTransList.isEmpty()) {
-						log.info("Transaction limit reached ({}). Triggering audit submission.", transactionLimit);
-						auditSubmissionService.submit(submissionTransList);
-					}
-				}
+		PenceBalance balance = balanceOf(accountId);
+		balance.add(pence);
+		log.debug("Updated balance of accountId {} after transaction Id {} by {}", accountId,
+				transaction.getTransactionId(), transaction.getAmount());
+
+		// Add transactions to the audit buffer, reverting the balance when it is full
+		enqueue(bufferOf(accountId), List.of(transaction), () -> balance.add(-pence));
+		balanceBroadcaster.balanceChanged(accountId);
+		log.debug("processTransaction:exit");
+		return true;
+	}
+
+	/**
+	 * Process Transactions as a batch, applying the net amount to each account
+	 * balance once. Audit buffer space is reserved for the whole batch before any
+	 * balance is touched, so a full buffer rejects the batch as a whole and a
+	 * retry does not apply any account twice.
+	 */
+	@Override
+	public List<TransactionResult> processTransactions(List<Transaction> transactions) {
+		log.debug("processTransactions:enter with {} transactions", transactions.size());
+
+		// Net amount per account, in account order so concurrent batches reserve
+		// per account buffers in the same order
+		Map<String, List<Transaction>> transactionsByAccount = transactions.stream()
+				.collect(Collectors.groupingBy(BankAccountService::accountIdOf, TreeMap::new, Collectors.toList()));
+		Map<String, Long> deltas = new HashMap<>();
+		Map<AuditBuffer, List<Transaction>> transactionsByBuffer = new LinkedHashMap<>();
+		transactionsByAccount.forEach((accountId, accountTransactions) -> {
+			long delta = 0;
+			for (Transaction transaction : accountTransactions) {
+				delta = Math.addExact(delta, PenceBalance.toPence(transaction.getAmount()));
 			}
+			deltas.put(accountId, delta);
+			transactionsByBuffer.computeIfAbsent(bufferOf(accountId), buffer -> new ArrayList<>())
+					.addAll(accountTransactions);
+		});
 
+		// Reserve space in every buffer, giving it all back when one is full
+		List<Map.Entry<AuditBuffer, List<Transaction>>> reserved = new ArrayList<>();
+		for (Map.Entry<AuditBuffer, List<Transaction>> entry : transactionsByBuffer.entrySet()) {
+			if (!reserve(entry.getKey(), entry.getValue().size())) {
+				reserved.forEach(held -> held.getKey().release(held.getValue().size()));
+				throw bufferFull(entry.getKey(), transactions.size());
+			}
+			reserved.add(entry);
 		}
-		log.debug("processTransaction:exit");
 
+		// Update Balance once per account for the whole batch
+		deltas.forEach((accountId, delta) -> {
+			balanceOf(accountId).add(delta);
+			log.debug("Updated balance of accountId {} after batch by {} pence", accountId, delta);
+		});
+		transactionsByBuffer.forEach((buffer, bufferTransactions) -> {
+			buffer.fill(bufferTransactions);
+			scheduleDrainIfFull(buffer);
+		});
+		deltas.keySet().forEach(balanceBroadcaster::balanceChanged);
+		log.debug("processTransactions:exit");
+		return transactions.stream()
+				.map(t -> new TransactionResult(t.getTransactionId(), TransactionResult.ACCEPTED, null)).toList();
 	}
 
 	/**
-	 * Retrieve Balance
+	 * Retrieve Balance, zero for an account with no transactions
 	 */
 	@Override
-	public double retrieveBalance() {
-		log.debug("retrieveBalance:entry");
-		return balance.get().doubleValue();
+	public double retrieveBalance(String accountId) {
+		log.debug("retrieveBalance:entry for accountId: {}", accountId);
+		PenceBalance balance = balances.get(accountId);
+		return balance == null ? 0.0 : balance.sum().doubleValue();
+	}
+
+	private PenceBalance balanceOf(String accountId) {
+		return balances.computeIfAbsent(accountId, id -> new PenceBalance());
+	}
+
+	/**
+	 * Audit buffer of the account, or the shared buffer unless buffers are per
+	 * account
+	 */
+	private AuditBuffer bufferOf(String accountId) {
+		return auditBuffers.computeIfAbsent(queuePerAccount ? accountId : SHARED_BUFFER,
+				key -> new AuditBuffer(bufferCapacity));
+	}
+
+	/**
+	 * Add transactions to the audit buffer with the configured backpressure and
+	 * hand the buffer to the drainer once the transaction limit is reached
+	 *
+	 * @param buffer       audit buffer
+	 * @param transactions transactions to add
+	 * @param revert       undoes the balance update when the buffer is full
+	 */
+	private void enqueue(AuditBuffer buffer, List<Transaction> transactions, Runnable revert) {
+		if (!reserve(buffer, transactions.size())) {
+			revert.run();
+			throw bufferFull(buffer, transactions.size());
+		}
+		buffer.fill(transactions);
+		scheduleDrainIfFull(buffer);
+	}
+
+	/**
+	 * Reserve space in the audit buffer with the configured backpressure
+	 *
+	 * @return false when the buffer stayed full
+	 */
+	private boolean reserve(AuditBuffer buffer, int size) {
+		try {
+			return buffer.reserve(size, backpressure == Backpressure.BLOCK ? blockTimeoutMs : 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private BalanceTrackerException bufferFull(AuditBuffer buffer, int rejected) {
+		log.warn("Audit buffer full ({} transactions), rejecting {} transactions", buffer.size(), rejected);
+		return new BalanceTrackerException("Audit buffer is full, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	private void scheduleDrainIfFull(AuditBuffer buffer) {
+		if (buffer.size() >= transactionLimit && buffer.scheduleDrain()) {
+			readyBuffers.add(buffer);
+		}
+	}
+
+	/**
+	 * Drainer loop: take each buffer that reached the limit and submit it in
+	 * batches of the transaction limit
+	 */
+	private void drainReadyBuffers() {
+		while (!Thread.currentThread().isInterrupted()) {
+			AuditBuffer buffer;
+			try {
+				buffer = readyBuffers.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			// Cleared first, so a producer crossing the limit while draining schedules again
+			buffer.clearDrainSchedule();
+			while (buffer.size() >= transactionLimit && !Thread.currentThread().isInterrupted()) {
+				List<Transaction> submissionTransList = buffer.drain(transactionLimit);
+				log.info("Transaction limit reached ({}). Triggering audit submission.", transactionLimit);
+				submitUntilAccepted(submissionTransList);
+			}
+		}
+	}
+
+	/**
+	 * Submit drained transactions, waiting for the result and retrying a failed
+	 * submission after the retry delay, so a saturated or failing audit
+	 * submission slows the drainer down instead of losing the transactions
+	 *
+	 * @param submissionTransList transactions taken from the buffer
+	 */
+	private void submitUntilAccepted(List<Transaction> submissionTransList) {
+		while (true) {
+			try {
+				auditSubmissionService.submitAsync(submissionTransList).get();
+				return;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.error("Audit drainer stopped with {} transactions not submitted", submissionTransList.size());
+				return;
+			} catch (ExecutionException | RuntimeException e) {
+				log.error("Audit submission of {} transactions failed, retrying in {} ms",
+						submissionTransList.size(), retryMs, e instanceof ExecutionException ? e.getCause() : e);
+			}
+			try {
+				Thread.sleep(retryMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.error("Audit drainer stopped with {} transactions not submitted", submissionTransList.size());
+				return;
+			}
+		}
 	}
 
 }
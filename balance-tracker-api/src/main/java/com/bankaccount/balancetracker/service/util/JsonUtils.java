@@ -1,18 +1,27 @@
 package com.bankaccount.balancetracker.service.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Class to
+ * Class to serialise objects to compact JSON with the root value wrapped. The
+ * writer is configured once and immutable, so it is shared safely between
+ * threads.
  */
 @Slf4j
 public class JsonUtils {
 
-	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final ObjectWriter writer = new ObjectMapper().writer()
+			.with(SerializationFeature.WRAP_ROOT_VALUE).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
 	private JsonUtils(){
 
@@ -20,11 +29,23 @@ public class JsonUtils {
 
 	public static String toJson(Object object) {
 		try {
-			mapper.enable(SerializationFeature.WRAP_ROOT_VALUE);
-			return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(object);
+			return writer.writeValueAsString(object);
 		} catch (JsonProcessingException e) {
 			return ("Failed to serialise submission message : " + e.getMessage());
 		}
 	}
 
+	/**
+	 * Stream the object as UTF-8 JSON straight to the output, without building
+	 * a String. The output is flushed but left open.
+	 *
+	 * @param object object to serialise
+	 * @param out    output to write to
+	 */
+	public static void writeJson(Object object, OutputStream out) throws IOException {
+		try (JsonGenerator generator = writer.createGenerator(out, JsonEncoding.UTF8)) {
+			writer.writeValue(generator, object);
+		}
+	}
+
 }
@@ -1,12 +1,26 @@
 package com.bankaccount.balancetracker.integerationtest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,19 +28,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.bankaccount.balancetracker.dto.BalanceResponse;
+import com.bankaccount.balancetracker.dto.BatchTransactionResponse;
 import com.bankaccount.balancetracker.dto.ErrorResponse;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
 import com.bankaccount.balancetracker.entity.BalanceT;
 import com.bankaccount.balancetracker.entity.TransactionT;
+import com.bankaccount.balancetracker.repository.BalanceCheckpointRepository;
 import com.bankaccount.balancetracker.repository.BalanceRepository;
 import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.scheduler.AuditSubmissionScheduler;
+import com.bankaccount.balancetracker.scheduler.BalanceCheckpointer;
 
 /**
  * Integration test for Balance Tracker API with H2 DB integration
@@ -45,9 +70,25 @@ class BalanceTrackerApi_IT {
 	@Autowired
 	BalanceRepository balanceRepository;
 
+	@Autowired
+	AuditSubmissionScheduler auditSubmissionScheduler;
+
+	@Autowired
+	BalanceCheckpointer balanceCheckpointer;
+
+	@Autowired
+	BalanceCheckpointRepository balanceCheckpointRepository;
+
+	/**
+	 * Runs after each test as well, so the next context reconciles an empty DB at
+	 * startup instead of warming the balance left by this test
+	 */
 	@BeforeEach
+	@AfterEach
 	void resetBalance() {
 		balanceRepository.deleteAll();
+		transactionRepository.deleteAll();
+		balanceCheckpointRepository.deleteAll();
 	}
 
 	/**
@@ -104,6 +145,125 @@ class BalanceTrackerApi_IT {
 
 	}
 
+	/**
+	 * Verifies transactions on different accounts update separate balances
+	 */
+	@DisplayName("Should keep a separate balance per account")
+	@Test
+	void testRetrieveAccountBalance() {
+
+		// given
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE12312", new BigDecimal("250.52"), "ACC1"), Void.class);
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE12313", new BigDecimal("300"), "ACC2"), Void.class);
+
+		// when
+		ResponseEntity<BalanceResponse> response = testRestTemplate.getForEntity("/api/bankaccount/v1/balance/ACC1",
+				BalanceResponse.class);
+		ResponseEntity<ErrorResponse> notFound = testRestTemplate.getForEntity("/api/bankaccount/v1/balance/ACC3",
+				ErrorResponse.class);
+
+		// then
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(250.52, response.getBody().getBalance(), 0.001);
+		assertEquals("ACC2", transactionRepository.findById("CRE12313").get().getAccountId());
+		assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+	}
+
+	/**
+	 * Verifies the balance carries an ETag, an unchanged balance is answered with
+	 * 304 and a changed one with the new balance and ETag
+	 */
+	@DisplayName("Should answer 304 for an unchanged balance and 200 once it changes")
+	@Test
+	void testRetrieveBalanceWithETag() {
+
+		// given
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE12312", new BigDecimal("250.52"), null), Void.class);
+		ResponseEntity<BalanceResponse> first = testRestTemplate.getForEntity("/api/bankaccount/v1/balance",
+				BalanceResponse.class);
+		String etag = first.getHeaders().getETag();
+
+		// when
+		ResponseEntity<BalanceResponse> unchanged = getBalance(etag);
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE12313", new BigDecimal("300"), null), Void.class);
+		ResponseEntity<BalanceResponse> changed = getBalance(etag);
+
+		// then
+		assertNotNull(etag);
+		assertEquals(250.52, first.getBody().getBalance(), 0.001);
+		assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+		assertNull(unchanged.getBody());
+		assertEquals(HttpStatus.OK, changed.getStatusCode());
+		assertEquals(550.52, changed.getBody().getBalance(), 0.001);
+		assertNotEquals(etag, changed.getHeaders().getETag());
+	}
+
+	/**
+	 * Verifies the balance stream starts with the current balance and pushes the
+	 * balance once a transaction changes it
+	 */
+	@DisplayName("Should stream the current balance and push the changed balance")
+	@Test
+	void testStreamBalance() throws IOException, InterruptedException {
+
+		// given
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE12312", new BigDecimal("250.52"), null), Void.class);
+
+		// when
+		HttpRequest request = HttpRequest
+				.newBuilder(URI.create(testRestTemplate.getRootUri() + "/api/bankaccount/v1/balance/stream"))
+				.header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE).build();
+		List<String> events = new ArrayList<>();
+		// Closing the lines cancels the stream, which the server would keep open
+		try (Stream<String> lines = HttpClient.newHttpClient().send(request, BodyHandlers.ofLines()).body()) {
+			Iterator<String> data = lines.filter(line -> line.startsWith("data:")).iterator();
+			events.add(data.next().substring("data:".length()));
+			testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+					new Transaction("CRE12313", new BigDecimal("300"), null), Void.class);
+			events.add(data.next().substring("data:".length()));
+		}
+
+		// then
+		assertEquals(List.of("{\"balance\":250.52}", "{\"balance\":550.52}"), events);
+	}
+
+	/**
+	 * Verifies a replayed transaction is acknowledged as already applied without
+	 * changing the balance, whether the replay is caught by the idempotency guard
+	 * or, for a transaction stored before the guard saw it, by the primary key
+	 */
+	@DisplayName("Should acknowledge a replayed transaction as already applied without changing the balance")
+	@Test
+	void testProcessTransactionReplay() {
+
+		// given
+		Transaction trans = new Transaction("CRE12312", new BigDecimal("250.52"), null);
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions", trans, Void.class);
+		transactionRepository.save(TransactionT.builder().transactionId("CRE12399").accountId("ACC123456")
+				.amount(new BigDecimal("300")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build());
+
+		// when
+		ResponseEntity<TransactionResult> replay = testRestTemplate
+				.postForEntity("/api/bankaccount/v1/transactions", trans, TransactionResult.class);
+		ResponseEntity<TransactionResult> storedReplay = testRestTemplate.postForEntity(
+				"/api/bankaccount/v1/transactions", new Transaction("CRE12399", new BigDecimal("300"), null),
+				TransactionResult.class);
+
+		// then
+		assertEquals(HttpStatus.OK, replay.getStatusCode());
+		assertEquals(TransactionResult.ALREADY_APPLIED, replay.getBody().getStatus());
+		assertEquals("CRE12312", replay.getBody().getTransactionId());
+		assertEquals(HttpStatus.OK, storedReplay.getStatusCode());
+		assertEquals(TransactionResult.ALREADY_APPLIED, storedReplay.getBody().getStatus());
+		assertEquals(0, new BigDecimal("250.52").compareTo(balanceRepository.findById("ACC123456").get().getAmount()));
+		assertEquals(2, transactionRepository.count());
+	}
+
 	/**
 	 * Verifies process transaction operation for a invalid Id Transaction
 	 */
@@ -265,4 +425,212 @@ class BalanceTrackerApi_IT {
 		assertEquals("Debit must have negative amount", response.getBody().getMessage());
 	}
 
+	/**
+	 * Verifies batch transaction operation applies valid transactions and reports
+	 * invalid ones per item
+	 */
+	@DisplayName("Should apply valid transactions of a batch and reject invalid ones per item")
+	@Test
+	void testProcessTransactionBatchWithMixedTransactions() {
+
+		// given
+		List<Transaction> transactions = List.of(
+				Transaction.builder().transactionId("CRE-55501").amount(new BigDecimal("1000.50")).build(),
+				Transaction.builder().transactionId("DEB-55502").amount(new BigDecimal("-250.25")).build(),
+				Transaction.builder().transactionId("DEB-55503").amount(new BigDecimal("250.00")).build(),
+				Transaction.builder().transactionId("CRE-55501").amount(new BigDecimal("300.00")).build());
+
+		// when
+		ResponseEntity<BatchTransactionResponse> response = testRestTemplate
+				.postForEntity("/api/bankaccount/v1/transactions/batch", transactions, BatchTransactionResponse.class);
+
+		// then
+		assertNotNull(response);
+		assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+		assertNotNull(response.getBody());
+		assertEquals(2, response.getBody().getAcceptedCount());
+		assertEquals(2, response.getBody().getRejectedCount());
+		List<TransactionResult> results = response.getBody().getResults();
+		assertEquals(TransactionResult.ACCEPTED, results.get(0).getStatus());
+		assertEquals(TransactionResult.ACCEPTED, results.get(1).getStatus());
+		assertEquals(TransactionResult.REJECTED, results.get(2).getStatus());
+		assertEquals("Debit must have negative amount", results.get(2).getMessage());
+		assertEquals(TransactionResult.REJECTED, results.get(3).getStatus());
+		assertEquals("Duplicate transaction ID in batch", results.get(3).getMessage());
+
+		assertTrue(transactionRepository.findById("CRE-55501").isPresent());
+		assertTrue(transactionRepository.findById("DEB-55502").isPresent());
+		assertTrue(transactionRepository.findById("DEB-55503").isEmpty());
+
+		ResponseEntity<BalanceResponse> balance = testRestTemplate.getForEntity("/api/bankaccount/v1/balance",
+				BalanceResponse.class);
+		assertEquals(750.25, balance.getBody().getBalance());
+	}
+
+	/**
+	 * Verifies replayed transactions of a batch are acknowledged per item as
+	 * already applied, whether caught by the idempotency guard or by the primary
+	 * key, while the new ones are applied
+	 */
+	@DisplayName("Should acknowledge replayed transactions of a batch as already applied per item")
+	@Test
+	void testProcessTransactionBatchReplay() {
+
+		// given
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE-55601", new BigDecimal("250.00"), null), Void.class);
+		transactionRepository.save(TransactionT.builder().transactionId("CRE-55602").accountId("ACC123456")
+				.amount(new BigDecimal("300")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build());
+		List<Transaction> transactions = List.of(
+				Transaction.builder().transactionId("CRE-55601").amount(new BigDecimal("250.00")).build(),
+				Transaction.builder().transactionId("CRE-55602").amount(new BigDecimal("300.00")).build(),
+				Transaction.builder().transactionId("CRE-55603").amount(new BigDecimal("400.00")).build());
+
+		// when
+		ResponseEntity<BatchTransactionResponse> response = testRestTemplate
+				.postForEntity("/api/bankaccount/v1/transactions/batch", transactions, BatchTransactionResponse.class);
+
+		// then
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		assertEquals(1, response.getBody().getAcceptedCount());
+		assertEquals(0, response.getBody().getRejectedCount());
+		assertEquals(2, response.getBody().getAlreadyAppliedCount());
+		List<TransactionResult> results = response.getBody().getResults();
+		assertEquals(TransactionResult.ALREADY_APPLIED, results.get(0).getStatus());
+		assertEquals(TransactionResult.ALREADY_APPLIED, results.get(1).getStatus());
+		assertEquals(TransactionResult.ACCEPTED, results.get(2).getStatus());
+		assertEquals(0, new BigDecimal("650.00").compareTo(balanceRepository.findById("ACC123456").get().getAmount()));
+		assertEquals(3, transactionRepository.count());
+	}
+
+	/**
+	 * Verifies the checkpoint locks the balance row of the account and records
+	 * the balance through the latest committed transaction
+	 */
+	@DisplayName("Should checkpoint the balance through the latest committed transaction")
+	@Test
+	void testCheckpointBalances() {
+
+		// given
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("CRE-55701", new BigDecimal("250.00"), null), Void.class);
+		testRestTemplate.postForEntity("/api/bankaccount/v1/transactions",
+				new Transaction("DEB-55702", new BigDecimal("-200.00"), null), Void.class);
+		ReflectionTestUtils.setField(balanceCheckpointer, "checkpointInterval", 2);
+		ReflectionTestUtils.setField(balanceCheckpointer, "graceMs", 0L);
+
+		// when
+		balanceCheckpointer.checkpointBalances();
+
+		// then
+		BalanceCheckpointT checkpoint = balanceCheckpointRepository
+				.findFirstByAccountIdOrderByThroughSeqDesc("ACC123456").get();
+		assertEquals(0, new BigDecimal("50.00").compareTo(checkpoint.getAmount()));
+		assertEquals(transactionRepository.findById("DEB-55702").get().getIngestSeq(), checkpoint.getThroughSeq());
+	}
+
+	/**
+	 * Verifies batch transaction operation rejects an empty batch
+	 */
+	@DisplayName("Should reject an empty batch")
+	@Test
+	void testProcessTransactionBatchWithEmptyBatch() {
+
+		// when
+		ResponseEntity<ErrorResponse> response = testRestTemplate
+				.postForEntity("/api/bankaccount/v1/transactions/batch", List.of(), ErrorResponse.class);
+
+		// then
+		assertNotNull(response);
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		assertEquals("Batch must contain between 1 and 1000 transactions", response.getBody().getMessage());
+	}
+
+	/**
+	 * Verifies the scheduler submits full pages of pending transactions in
+	 * ingest order, leaving the partial page pending
+	 */
+	@DisplayName("Should submit pending transactions with equal timestamps in ingest order")
+	@Test
+	void testSubmitPendingTransactionsInIngestOrder() throws InterruptedException {
+
+		// given
+		LocalDateTime now = LocalDateTime.now();
+		List<TransactionT> pending = new ArrayList<>();
+		for (int i = 0; i < 1500; i++) {
+			pending.add(TransactionT.builder().transactionId(String.format("CRE-%05d", i)).accountId("ACC123456")
+					.amount(new BigDecimal("250")).auditStatus("PENDING").updatedDateTime(now).build());
+		}
+		transactionRepository.saveAll(pending);
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
+
+		// then
+		List<TransactionT> transactions = awaitAuditStatus("PROCESSED", 1000);
+		assertEquals(1500, transactions.size());
+		assertTrue(transactions.subList(0, 1000).stream().allMatch(t -> "PROCESSED".equals(t.getAuditStatus())));
+		assertTrue(transactions.subList(1000, 1500).stream().allMatch(t -> "PENDING".equals(t.getAuditStatus())));
+		assertEquals(1500, transactions.stream().map(TransactionT::getIngestSeq).distinct().count());
+		String submissionId = transactions.get(0).getSubmissionId();
+		assertNotNull(submissionId);
+		assertTrue(transactions.subList(0, 1000).stream().allMatch(t -> submissionId.equals(t.getSubmissionId())));
+		assertTrue(transactions.subList(1000, 1500).stream().allMatch(t -> t.getSubmissionId() == null));
+	}
+
+	/**
+	 * Verifies a page left claimed by a worker that died is claimed again once
+	 * its lease expires, and confirmed under the new claim
+	 */
+	@DisplayName("Should claim again and process transactions whose lease expired")
+	@Test
+	void testSubmitPendingTransactionsReclaimsExpiredLease() throws InterruptedException {
+
+		// given
+		LocalDateTime now = LocalDateTime.now();
+		List<TransactionT> claimed = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			claimed.add(TransactionT.builder().transactionId(String.format("CRE-%05d", i)).accountId("ACC123456")
+					.amount(new BigDecimal("250")).auditStatus("CLAIMED").submissionId("dead-node-claim")
+					.leaseExpiresAt(now.minusSeconds(1)).updatedDateTime(now).build());
+		}
+		transactionRepository.saveAll(claimed);
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
+
+		// then
+		List<TransactionT> transactions = awaitAuditStatus("PROCESSED", 1000);
+		assertTrue(transactions.stream().allMatch(t -> "PROCESSED".equals(t.getAuditStatus())));
+		assertTrue(transactions.stream().noneMatch(t -> "dead-node-claim".equals(t.getSubmissionId())));
+		assertTrue(transactions.stream().allMatch(t -> t.getLeaseExpiresAt() == null));
+	}
+
+	private ResponseEntity<BalanceResponse> getBalance(String etag) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(etag);
+		return testRestTemplate.exchange("/api/bankaccount/v1/balance", HttpMethod.GET, new HttpEntity<>(headers),
+				BalanceResponse.class);
+	}
+
+	/**
+	 * Wait for the claims submitted asynchronously to be confirmed, up to 10
+	 * seconds
+	 *
+	 * @param auditStatus audit status to wait for
+	 * @param count       transactions expected in that status
+	 * @return all transactions in ingest order
+	 */
+	private List<TransactionT> awaitAuditStatus(String auditStatus, long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		List<TransactionT> transactions;
+		do {
+			Thread.sleep(50);
+			transactions = transactionRepository.findAll().stream()
+					.sorted(Comparator.comparing(TransactionT::getIngestSeq)).toList();
+		} while (transactions.stream().filter(t -> auditStatus.equals(t.getAuditStatus())).count() < count
+				&& System.currentTimeMillis() < deadline);
+		return transactions;
+	}
+
 }
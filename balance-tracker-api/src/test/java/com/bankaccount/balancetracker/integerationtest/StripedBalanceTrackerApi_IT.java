@@ -0,0 +1,95 @@
+package com.bankaccount.balancetracker.integerationtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.bankaccount.balancetracker.dto.BalanceResponse;
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
+import com.bankaccount.balancetracker.scheduler.BalanceSlotCompactor;
+
+/**
+ * Integration test for Balance Tracker API with the balance striped over slot
+ * rows
+ */
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@TestPropertySource(properties = "msa.bank.balance.stripe-count=4")
+class StripedBalanceTrackerApi_IT {
+
+	@Autowired
+	TestRestTemplate testRestTemplate;
+
+	@Autowired
+	BalanceRepository balanceRepository;
+
+	@Autowired
+	BalanceSlotRepository balanceSlotRepository;
+
+	@Autowired
+	BalanceSlotCompactor balanceSlotCompactor;
+
+	/**
+	 * Runs after each test as well, so the next context reconciles an empty DB at
+	 * startup instead of warming the balance left by this test
+	 */
+	@BeforeEach
+	@AfterEach
+	void resetBalance() {
+		balanceSlotRepository.deleteAll();
+		balanceRepository.deleteAll();
+	}
+
+	/**
+	 * Verifies the balance is summed over the slots and unchanged by compaction
+	 */
+	@DisplayName("Should retrieve the striped balance before and after compaction")
+	@Test
+	void testRetrieveBalanceBeforeAndAfterCompaction() {
+
+		// given
+		List<Transaction> transactions = List.of(
+				Transaction.builder().transactionId("CRE-10001").amount(new BigDecimal("2500.52")).build(),
+				Transaction.builder().transactionId("CRE-10002").amount(new BigDecimal("300.00")).build(),
+				Transaction.builder().transactionId("DEB-10003").amount(new BigDecimal("-500.52")).build(),
+				Transaction.builder().transactionId("DEB-10004").amount(new BigDecimal("-250.00")).build());
+		transactions.forEach(
+				trans -> testRestTemplate.postForEntity("/api/bankaccount/v1/transactions", trans, Void.class));
+
+		// when
+		ResponseEntity<BalanceResponse> beforeCompaction = testRestTemplate
+				.getForEntity("/api/bankaccount/v1/balance", BalanceResponse.class);
+		balanceSlotCompactor.compactBalanceSlots();
+		ResponseEntity<BalanceResponse> afterCompaction = testRestTemplate.getForEntity("/api/bankaccount/v1/balance",
+				BalanceResponse.class);
+
+		// then
+		assertEquals(HttpStatus.OK, beforeCompaction.getStatusCode());
+		assertEquals(2050.0, beforeCompaction.getBody().getBalance());
+		assertEquals(HttpStatus.OK, afterCompaction.getStatusCode());
+		assertEquals(2050.0, afterCompaction.getBody().getBalance());
+		assertEquals(0, new BigDecimal("2050.00").compareTo(balanceRepository.findById("ACC123456").get().getAmount()));
+		assertTrue(balanceSlotRepository.findNonZeroSlots().isEmpty());
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.bankaccount.balancetracker.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import com.bankaccount.balancetracker.entity.TransactionT;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Test class to count the statements the transaction inserts send to the DB
+ * and to run the balance tail queries
+ */
+@DataJpaTest(properties = { "spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50", "spring.jpa.properties.hibernate.order_inserts=true" })
+class TransactionRepositoryTest {
+
+	@Autowired
+	TransactionRepository transactionRepository;
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	/**
+	 * Verifies a new transaction is persisted with a single INSERT and no SELECT
+	 */
+	@DisplayName("Should insert a new transaction without selecting it first")
+	@Test
+	void testSaveInsertsWithoutSelect() {
+
+		// given
+		TransactionT transaction = transaction("CRE1235");
+
+		// when
+		transactionRepository.save(transaction);
+		entityManager.flush();
+
+		// then
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(1, statistics.getEntityInsertCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	/**
+	 * Verifies new transactions saved together are inserted in JDBC batches, the
+	 * one INSERT statement prepared once and reused by every batch
+	 */
+	@DisplayName("Should insert new transactions in JDBC batches without selecting them first")
+	@Test
+	void testSaveAllInsertsInBatches() {
+
+		// given
+		List<TransactionT> transactions = IntStream.range(0, 120).mapToObj(i -> transaction("CRE" + i)).toList();
+
+		// when
+		transactionRepository.saveAll(transactions);
+		entityManager.flush();
+
+		// then
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(120, statistics.getEntityInsertCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	/**
+	 * Verifies a loaded transaction saved again is updated, not inserted
+	 */
+	@DisplayName("Should update a loaded transaction when saved again")
+	@Test
+	void testSaveLoadedTransactionUpdates() {
+
+		// given
+		transactionRepository.save(transaction("DEB1255"));
+		entityManager.flush();
+		entityManager.clear();
+		TransactionT loaded = transactionRepository.findById("DEB1255").orElseThrow();
+		statistics.clear();
+
+		// when
+		loaded.setAuditStatus("PROCESSED");
+		transactionRepository.save(loaded);
+		entityManager.flush();
+
+		// then
+		assertEquals(0, statistics.getEntityInsertCount());
+		assertEquals(1, statistics.getEntityUpdateCount());
+	}
+
+	/**
+	 * Verifies the tail of an account is summed between two sequences, and the
+	 * settled sequence is the latest one ingested before the given time
+	 */
+	@DisplayName("Should sum the transactions of the account between two sequences")
+	@Test
+	void testSumTailAndSettledSeq() {
+
+		// given
+		LocalDateTime now = LocalDateTime.now();
+		transactionRepository.saveAll(List.of(transaction("CRE1", "ACC1", "250", now.minusMinutes(2)),
+				transaction("CRE2", "ACC2", "300", now.minusMinutes(2)),
+				transaction("DEB3", "ACC1", "-100.50", now.minusMinutes(1)),
+				transaction("CRE4", "ACC1", "400", now)));
+		entityManager.flush();
+		entityManager.clear();
+		List<Long> seqs = transactionRepository.findAll().stream()
+				.filter(t -> t.getAccountId().equals("ACC1")).map(TransactionT::getIngestSeq).sorted().toList();
+
+		// when
+		long settledSeq = transactionRepository.findSettledSeq("ACC1", seqs.get(0), now.minusSeconds(30))
+				.orElseThrow();
+		TransactionRepository.BalanceTail checkpointed = transactionRepository.sumTail("ACC1", 0, settledSeq);
+		TransactionRepository.BalanceTail tail = transactionRepository.sumTail("ACC1", settledSeq, Long.MAX_VALUE);
+
+		// then
+		assertEquals(seqs.get(1), settledSeq);
+		assertEquals(2, checkpointed.getCount());
+		assertEquals(0, new BigDecimal("149.50").compareTo(checkpointed.getAmount()));
+		assertEquals(1, tail.getCount());
+		assertEquals(0, new BigDecimal("400").compareTo(tail.getAmount()));
+		assertTrue(transactionRepository.findSettledSeq("ACC1", seqs.get(2), now.minusSeconds(30)).isEmpty());
+	}
+
+	private static TransactionT transaction(String transactionId, String accountId, String amount,
+			LocalDateTime updatedDateTime) {
+		return TransactionT.builder().transactionId(transactionId).accountId(accountId).amount(new BigDecimal(amount))
+				.auditStatus("PENDING").updatedDateTime(updatedDateTime).build();
+	}
+
+	private static TransactionT transaction(String transactionId) {
+		return TransactionT.builder().transactionId(transactionId).accountId("ACC123456")
+				.amount(new BigDecimal("250")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build();
+	}
+
+}
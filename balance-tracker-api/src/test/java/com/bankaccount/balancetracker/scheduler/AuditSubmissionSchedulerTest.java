@@ -1,30 +1,48 @@
 package com.bankaccount.balancetracker.scheduler;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import com.bankaccount.balancetracker.entity.TransactionT;
+import com.bankaccount.balancetracker.dto.SubmissionResult;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
 import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.PendingBacklog;
+import com.bankaccount.balancetracker.repository.TransactionRepository.PendingTransaction;
 import com.bankaccount.balancetracker.service.AuditSubmissionService;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 /**
  * Test class to test the Audit Submission Scheduler function.
  */
@@ -40,9 +58,24 @@ class AuditSubmissionSchedulerTest {
 	@Mock
 	TransactionRepository transactionRepository;
 
+	@Mock
+	PlatformTransactionManager transactionManager;
+
+	@Spy
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final LocalDateTime oldest = LocalDateTime.now().minusSeconds(90);
+
 	@BeforeEach
 	void setup() {
 		ReflectionTestUtils.setField(auditSubmissionScheduler, "transactionLimit", 2);
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "maxDelayMs", 30000L);
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "minDelayMs", 1000L);
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "maxPagesPerRun", 3);
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "maxRunMs", 10000L);
+		lenient().when(transactionRepository.findPendingBacklog()).thenReturn(backlog(1, oldest));
+		lenient().when(transactionRepository.claim(anyList(), anyString(), any(), any()))
+				.thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
 	}
 
 	/**
@@ -53,23 +86,101 @@ class AuditSubmissionSchedulerTest {
 	void testSubmitPendingTransactionsWhenLimitIsMet() {
 
 		// given
-		TransactionT transT1 = TransactionT.builder().accountId("CRE1235").accountId("ACC123456")
-				.amount(new BigDecimal("250")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build();
-		TransactionT transT2 = TransactionT.builder().accountId("DEB1255").accountId("ACC123456")
-				.amount(new BigDecimal("-100")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build();
-		List<TransactionT> pendingTrans = List.of(transT1, transT2);
-		Page<TransactionT> page = new PageImpl<TransactionT>(pendingTrans);
+		PendingTransaction transT1 = pending("CRE1235", "250", 1);
+		PendingTransaction transT2 = pending("DEB1255", "-100", 2);
+		List<PendingTransaction> pendingTrans = List.of(transT1, transT2);
+		Slice<PendingTransaction> page = new SliceImpl<PendingTransaction>(pendingTrans);
+
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(page,
+				new SliceImpl<PendingTransaction>(List.of()));
+		when(transactionRepository.claim(anyList(), anyString(), any(), any())).thenReturn(2);
+		when(transactionRepository.confirmClaim(anyString())).thenReturn(2);
+		when(auditSubmissionService.submitAsync(anyString(), anyList()))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult(2, 1)));
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
+
+		// then
+
+		ArgumentCaptor<String> claimId = ArgumentCaptor.forClass(String.class);
+		verify(transactionRepository, times(1)).claim(eq(List.of("CRE1235", "DEB1255")), claimId.capture(), any(),
+				any());
+		verify(auditSubmissionService, times(1)).submitAsync(eq(claimId.getValue()), anyList());
+		verify(transactionRepository, times(1)).confirmClaim(claimId.getValue());
+		verify(transactionRepository, never()).saveAll(anyList());
+		verify(transactionRepository, never()).releaseClaim(any());
+		assertEquals(1.0, meterRegistry.get("audit.backlog.size").gauge().value());
+		assertEquals(90.0, meterRegistry.get("audit.backlog.age").timeGauge().value(TimeUnit.SECONDS), 5.0);
+
+	}
+
+	/**
+	 * Verifies Scheduler keeps draining full pages until fewer than the limit are
+	 * left, each fetch continuing after the last ingest sequence.
+	 */
+	@DisplayName("Should drain full pages until the backlog drops below the limit")
+	@Test
+	void testSubmitPendingTransactionsDrainsBacklog() {
+
+		// given
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(fullPage(1), fullPage(3),
+				new SliceImpl<PendingTransaction>(List.of(pending("CRE9", "250", 9))));
+		when(auditSubmissionService.submitAsync(anyString(), anyList()))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult(2, 1)));
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
 
-		when(transactionRepository.findPendingTransactions(any())).thenReturn(page);
+		// then
+		verify(auditSubmissionService, times(2)).submitAsync(anyString(), anyList());
+		verify(transactionRepository, times(2)).claim(anyList(), anyString(), any(), any());
+		verify(transactionRepository, times(2)).confirmClaim(anyString());
+		verify(transactionRepository).findClaimableTransactions(eq(0L), any(), any());
+		verify(transactionRepository).findClaimableTransactions(eq(2L), any(), any());
+		verify(transactionRepository).findClaimableTransactions(eq(4L), any(), any());
+	}
+
+	/**
+	 * Verifies Scheduler stops draining once the page budget of the run is used
+	 * up and runs again after the min delay.
+	 */
+	@DisplayName("Should stop at the page budget and schedule the next run after the min delay")
+	@Test
+	void testSubmitPendingTransactionsStopsAtPageBudget() {
+
+		// given
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenAnswer(invocation -> fullPage(1));
+		when(auditSubmissionService.submitAsync(anyString(), anyList()))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult(2, 1)));
+		when(transactionRepository.findPendingBacklog()).thenReturn(backlog(10, oldest));
 
 		// when
 		auditSubmissionScheduler.submitPendingTransactions();
 
 		// then
+		verify(auditSubmissionService, times(3)).submitAsync(anyString(), anyList());
+		assertEquals(1000.0,
+				meterRegistry.get("audit.scheduler.delay").timeGauge().value(TimeUnit.MILLISECONDS));
+	}
 
-		verify(auditSubmissionService, times(1)).submit(anyList());
-		verify(transactionRepository, times(1)).saveAll(anyList());
+	/**
+	 * Verifies the delay is the time to fill the next page at the ingest rate,
+	 * kept between the min and max delay.
+	 */
+	@Test
+	void testNextDelayAdaptsToBacklogAndIngestRate() {
 
+		// page already waiting
+		assertEquals(1000, auditSubmissionScheduler.nextDelayMs(2, 0.0));
+		// nothing coming in
+		assertEquals(30000, auditSubmissionScheduler.nextDelayMs(0, 0.0));
+		// 2 transactions to go at 1 per second
+		assertEquals(2000, auditSubmissionScheduler.nextDelayMs(0, 0.001));
+		// fast ingest
+		assertEquals(1000, auditSubmissionScheduler.nextDelayMs(1, 1.0));
+		// slow ingest
+		assertEquals(30000, auditSubmissionScheduler.nextDelayMs(1, 0.00001));
 	}
 
 	/**
@@ -80,20 +191,19 @@ class AuditSubmissionSchedulerTest {
 	void testSubmitPendingTransactionsWhenLimitNotMet() {
 
 		// given
-		TransactionT transT1 = TransactionT.builder().accountId("CRE1235").accountId("ACC123456")
-				.amount(new BigDecimal("250")).auditStatus("PENDING").updatedDateTime(LocalDateTime.now()).build();
-		List<TransactionT> pendingTrans = List.of(transT1);
-		Page<TransactionT> page = new PageImpl<TransactionT>(pendingTrans);
+		PendingTransaction transT1 = pending("CRE1235", "250", 1);
+		List<PendingTransaction> pendingTrans = List.of(transT1);
+		Slice<PendingTransaction> page = new SliceImpl<PendingTransaction>(pendingTrans);
 
-		when(transactionRepository.findPendingTransactions(any())).thenReturn(page);
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(page);
 
 		// when
 		auditSubmissionScheduler.submitPendingTransactions();
 
 		// then
 
-		verify(auditSubmissionService, times(0)).submit(anyList());
-		verify(transactionRepository, times(0)).saveAll(anyList());
+		verify(auditSubmissionService, times(0)).submitAsync(anyString(), anyList());
+		verify(transactionRepository, times(0)).claim(anyList(), anyString(), any(), any());
 
 	}
 
@@ -105,18 +215,147 @@ class AuditSubmissionSchedulerTest {
 	void testSubmitPendingTransactionsWhenPendingTransactionNotAvailable() {
 
 		// given
-		List<TransactionT> pendingTrans = List.of();
-		Page<TransactionT> page = new PageImpl<TransactionT>(pendingTrans);
+		List<PendingTransaction> pendingTrans = List.of();
+		Slice<PendingTransaction> page = new SliceImpl<PendingTransaction>(pendingTrans);
 
-		when(transactionRepository.findPendingTransactions(any())).thenReturn(page);
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(page);
 
 		// when
 		auditSubmissionScheduler.submitPendingTransactions();
 
 		// then
 
-		verify(auditSubmissionService, times(0)).submit(anyList());
-		verify(transactionRepository, times(0)).saveAll(anyList());
+		verify(auditSubmissionService, times(0)).submitAsync(anyString(), anyList());
+		verify(transactionRepository, times(0)).claim(anyList(), anyString(), any(), any());
+
+	}
+
+	/**
+	 * Verifies Scheduler puts the transactions back to pending when the
+	 * submission fails.
+	 */
+	@DisplayName("Should mark transactions as pending again when the audit submission fails")
+	@Test
+	void testSubmitPendingTransactionsWhenSubmissionFails() {
+
+		// given
+		PendingTransaction transT1 = pending("CRE1235", "250", 1);
+		PendingTransaction transT2 = pending("DEB1255", "-100", 2);
+		Slice<PendingTransaction> page = new SliceImpl<PendingTransaction>(List.of(transT1, transT2));
+
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(page);
+		when(auditSubmissionService.submitAsync(anyString(), anyList())).thenReturn(CompletableFuture.failedFuture(
+				new BalanceTrackerException("Audit submission queue is full", HttpStatus.SERVICE_UNAVAILABLE)));
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
+
+		// then
+		ArgumentCaptor<String> claimId = ArgumentCaptor.forClass(String.class);
+		verify(transactionRepository, times(1)).claim(eq(List.of("CRE1235", "DEB1255")), claimId.capture(), any(),
+				any());
+		verify(transactionRepository, times(1)).releaseClaim(claimId.getValue());
+		verify(transactionRepository, never()).confirmClaim(any());
+	}
+
+	/**
+	 * Verifies Scheduler releases a page it could only claim in part, instead of
+	 * submitting rows claimed by another claimer.
+	 */
+	@DisplayName("Should release a partly claimed page without submitting it")
+	@Test
+	void testSubmitPendingTransactionsWhenPageIsPartlyClaimed() {
+
+		// given
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any())).thenReturn(fullPage(1));
+		when(transactionRepository.claim(anyList(), anyString(), any(), any())).thenReturn(1);
+
+		// when
+		auditSubmissionScheduler.submitPendingTransactions();
+
+		// then
+		ArgumentCaptor<String> claimId = ArgumentCaptor.forClass(String.class);
+		verify(transactionRepository, times(1)).claim(anyList(), claimId.capture(), any(), any());
+		verify(transactionRepository, times(1)).releaseClaim(claimId.getValue());
+		verify(auditSubmissionService, never()).submitAsync(anyString(), anyList());
+		verify(transactionRepository, never()).confirmClaim(any());
+	}
+
+	/**
+	 * Verifies the claim workers of a run share its page budget, each page
+	 * claimed under its own lease.
+	 */
+	@DisplayName("Should claim pages in parallel workers within the page budget of the run")
+	@Test
+	void testSubmitPendingTransactionsWithClaimWorkers() {
+
+		// given
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "claimWorkers", 2);
+		ReflectionTestUtils.setField(auditSubmissionScheduler, "leaseMs", 60000L);
+		auditSubmissionScheduler.startClaimWorkers();
+		when(transactionRepository.findClaimableTransactions(anyLong(), any(), any()))
+				.thenAnswer(invocation -> fullPage(1));
+		when(auditSubmissionService.submitAsync(anyString(), anyList()))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult(2, 1)));
+
+		// when
+		try {
+			auditSubmissionScheduler.submitPendingTransactions();
+		} finally {
+			auditSubmissionScheduler.stopClaimWorkers();
+		}
+
+		// then
+		ArgumentCaptor<LocalDateTime> leaseExpiresAt = ArgumentCaptor.forClass(LocalDateTime.class);
+		ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(transactionRepository, times(3)).claim(anyList(), anyString(), leaseExpiresAt.capture(),
+				now.capture());
+		verify(auditSubmissionService, times(3)).submitAsync(anyString(), anyList());
+		assertEquals(Duration.ofMinutes(1), Duration.between(now.getValue(), leaseExpiresAt.getValue()));
+	}
+
+	private static PendingTransaction pending(String transactionId, String amount, long ingestSeq) {
+		return new PendingTransaction() {
+
+			@Override
+			public String getTransactionId() {
+				return transactionId;
+			}
+
+			@Override
+			public BigDecimal getAmount() {
+				return new BigDecimal(amount);
+			}
+
+			@Override
+			public String getAccountId() {
+				return "ACC123456";
+			}
+
+			@Override
+			public long getIngestSeq() {
+				return ingestSeq;
+			}
+		};
+	}
+
+	private static Slice<PendingTransaction> fullPage(long firstSeq) {
+		return new SliceImpl<PendingTransaction>(
+				List.of(pending("CRE" + firstSeq, "250", firstSeq), pending("DEB" + firstSeq, "-100", firstSeq + 1)));
+	}
+
+	private static PendingBacklog backlog(long size, LocalDateTime oldest) {
+		return new PendingBacklog() {
+
+			@Override
+			public long getSize() {
+				return size;
+			}
 
+			@Override
+			public LocalDateTime getOldest() {
+				return oldest;
+			}
+		};
 	}
 }
@@ -0,0 +1,157 @@
+package com.bankaccount.balancetracker.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
+import com.bankaccount.balancetracker.repository.BalanceCheckpointRepository;
+import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.BalanceTail;
+
+/**
+ * Test class to test the Balance Checkpointer function.
+ */
+@ExtendWith(MockitoExtension.class)
+class BalanceCheckpointerTest {
+
+	private static final String ACCOUNT_ID = "ACC123456";
+
+	@InjectMocks
+	BalanceCheckpointer balanceCheckpointer;
+
+	@Mock
+	BalanceCheckpointRepository balanceCheckpointRepository;
+
+	@Mock
+	BalanceRepository balanceRepository;
+
+	@Mock
+	BalanceSlotRepository balanceSlotRepository;
+
+	@Mock
+	TransactionRepository transactionRepository;
+
+	@Mock
+	PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(balanceCheckpointer, "checkpointInterval", 1000);
+		ReflectionTestUtils.setField(balanceCheckpointer, "graceMs", 10000L);
+		when(balanceSlotRepository.findAccountIds()).thenReturn(List.of(ACCOUNT_ID));
+	}
+
+	/**
+	 * Verifies a checkpoint adds the settled tail to the previous checkpoint and
+	 * older checkpoints are deleted
+	 */
+	@DisplayName("Should checkpoint the balance through the latest settled transaction")
+	@Test
+	void testCheckpointBalances() {
+
+		// given
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(ACCOUNT_ID))
+				.thenReturn(Optional.of(BalanceCheckpointT.builder().accountId(ACCOUNT_ID).throughSeq(5000)
+						.amount(new BigDecimal("2500.50")).build()));
+		when(transactionRepository.findSettledSeq(eq(ACCOUNT_ID), eq(5000L), any())).thenReturn(Optional.of(6200L));
+		when(transactionRepository.sumTail(ACCOUNT_ID, 5000, 6200)).thenReturn(tail(1200, new BigDecimal("-500.25")));
+
+		// when
+		balanceCheckpointer.checkpointBalances();
+
+		// then
+		ArgumentCaptor<BalanceCheckpointT> checkpoint = ArgumentCaptor.forClass(BalanceCheckpointT.class);
+		verify(balanceCheckpointRepository).save(checkpoint.capture());
+		assertEquals(6200, checkpoint.getValue().getThroughSeq());
+		assertEquals(new BigDecimal("2000.25"), checkpoint.getValue().getAmount());
+		verify(balanceCheckpointRepository).deleteOlderThan(ACCOUNT_ID, 5000);
+	}
+
+	/**
+	 * Verifies the settled sequence is read only once the balance rows of the
+	 * account are locked, so writers in flight have committed, and that each
+	 * account is checkpointed in its own DB transaction
+	 */
+	@DisplayName("Should lock the balance rows of the account before reading the settled sequence")
+	@Test
+	void testCheckpointBalancesLocksBalanceRows() {
+
+		// given
+		when(balanceSlotRepository.findAccountIds()).thenReturn(List.of(ACCOUNT_ID, "ACC2"));
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(any()))
+				.thenReturn(Optional.empty());
+		when(transactionRepository.findSettledSeq(any(), eq(0L), any())).thenReturn(Optional.empty());
+
+		// when
+		balanceCheckpointer.checkpointBalances();
+
+		// then
+		InOrder inOrder = inOrder(balanceSlotRepository, balanceRepository, transactionRepository);
+		inOrder.verify(balanceSlotRepository).findForUpdate(ACCOUNT_ID);
+		inOrder.verify(balanceRepository).findForUpdate(ACCOUNT_ID);
+		inOrder.verify(transactionRepository).findSettledSeq(eq(ACCOUNT_ID), eq(0L), any());
+		verify(transactionManager, times(2)).commit(any());
+	}
+
+	/**
+	 * Verifies no checkpoint is taken while fewer transactions than the interval
+	 * have settled after the latest one
+	 */
+	@DisplayName("Should skip the checkpoint until the interval of transactions has settled")
+	@Test
+	void testCheckpointBalancesBelowInterval() {
+
+		// given
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(ACCOUNT_ID))
+				.thenReturn(Optional.empty());
+		when(transactionRepository.findSettledSeq(eq(ACCOUNT_ID), eq(0L), any())).thenReturn(Optional.of(999L));
+		when(transactionRepository.sumTail(ACCOUNT_ID, 0, 999)).thenReturn(tail(999, new BigDecimal("250000")));
+
+		// when
+		balanceCheckpointer.checkpointBalances();
+
+		// then
+		verify(balanceCheckpointRepository, never()).save(any());
+		verify(balanceCheckpointRepository, never()).deleteOlderThan(any(), anyLong());
+	}
+
+	private static BalanceTail tail(long count, BigDecimal amount) {
+		return new BalanceTail() {
+
+			@Override
+			public long getCount() {
+				return count;
+			}
+
+			@Override
+			public BigDecimal getAmount() {
+				return amount;
+			}
+		};
+	}
+}
@@ -0,0 +1,81 @@
+package com.bankaccount.balancetracker.scheduler;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.bankaccount.balancetracker.entity.BalanceSlotT;
+import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
+
+/**
+ * Test class to test the Balance Slot Compactor function.
+ */
+@ExtendWith(MockitoExtension.class)
+class BalanceSlotCompactorTest {
+
+	@InjectMocks
+	BalanceSlotCompactor balanceSlotCompactor;
+
+	@Mock
+	BalanceRepository balanceRepository;
+
+	@Mock
+	BalanceSlotRepository balanceSlotRepository;
+
+	/**
+	 * Verifies the slots are decremented by the folded amount and the total is
+	 * added to the balance row
+	 */
+	@DisplayName("Should fold the slot amounts into the balance row")
+	@Test
+	void testCompactBalanceSlots() {
+
+		// given
+		BalanceSlotT slot0 = BalanceSlotT.builder().slotId("ACC123456#0").accountId("ACC123456").slot(0)
+				.amount(new BigDecimal("250.50")).build();
+		BalanceSlotT slot3 = BalanceSlotT.builder().slotId("ACC123456#3").accountId("ACC123456").slot(3)
+				.amount(new BigDecimal("-100.25")).build();
+		when(balanceSlotRepository.findNonZeroSlots()).thenReturn(List.of(slot0, slot3));
+		when(balanceRepository.incrementAmount("ACC123456", new BigDecimal("150.25"))).thenReturn(1);
+
+		// when
+		balanceSlotCompactor.compactBalanceSlots();
+
+		// then
+		verify(balanceSlotRepository, times(1)).incrementAmount("ACC123456#0", new BigDecimal("-250.50"));
+		verify(balanceSlotRepository, times(1)).incrementAmount("ACC123456#3", new BigDecimal("100.25"));
+		verify(balanceRepository, times(1)).incrementAmount("ACC123456", new BigDecimal("150.25"));
+		verify(balanceRepository, never()).upsertAmount(any(), any());
+	}
+
+	/**
+	 * Verifies nothing is written when all slots are already folded
+	 */
+	@DisplayName("Should skip compaction when there is nothing to fold")
+	@Test
+	void testCompactBalanceSlotsWhenNothingToFold() {
+
+		// given
+		when(balanceSlotRepository.findNonZeroSlots()).thenReturn(List.of());
+
+		// when
+		balanceSlotCompactor.compactBalanceSlots();
+
+		// then
+		verify(balanceSlotRepository, never()).incrementAmount(any(), any());
+		verify(balanceRepository, never()).incrementAmount(any(), any());
+	}
+}
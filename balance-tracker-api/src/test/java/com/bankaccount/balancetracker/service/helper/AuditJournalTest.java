@@ -0,0 +1,339 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bankaccount.balancetracker.dto.Batch;
+import com.bankaccount.balancetracker.dto.Submission;
+import com.bankaccount.balancetracker.service.helper.AuditJournal.FsyncPolicy;
+
+/**
+ * Test class to test the AuditJournal segments, index and recovery
+ */
+class AuditJournalTest {
+
+	@TempDir
+	private Path dir;
+
+	/**
+	 * Verifies a submission is read back by Id and an unknown Id is not found
+	 */
+	@Test
+	void testAppendAndReadById() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+
+			// when
+			journal.append("S1", submission("S1", "999765.98"));
+			journal.append("S2", submission("S2", "250.52"));
+
+			// then
+			assertEquals("{\"submission\":{\"submissionId\":\"S1\",\"batches\":[{\"totalValueOfAllTransactions\""
+					+ ":999765.98,\"countOfTransactions\":1}]}}", read(journal, "S1"));
+			assertTrue(read(journal, "S2").contains("250.52"));
+			assertTrue(journal.read("S3").isEmpty());
+		}
+	}
+
+	/**
+	 * Verifies the journal rolls to a new segment at the size limit and the index
+	 * is rebuilt from every segment on reopen
+	 */
+	@Test
+	void testRollsSegmentsAndRebuildsIndex() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 200, 60_000, 0, FsyncPolicy.NONE)) {
+			for (int i = 0; i < 10; i++) {
+				journal.append("S" + i, submission("S" + i, "1000.0" + i));
+			}
+		}
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 200, 60_000, 0, FsyncPolicy.NONE)) {
+
+			// then
+			assertTrue(segmentCount() > 1);
+			assertEquals(10, reopened.size());
+			for (int i = 0; i < 10; i++) {
+				assertTrue(read(reopened, "S" + i).contains("1000.0" + i));
+			}
+		}
+	}
+
+	/**
+	 * Verifies a torn record left by a crash is truncated on reopen, keeping the
+	 * complete records before it and appending to a new segment
+	 */
+	@Test
+	void testTruncatesTornRecordOnReopen() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+			journal.append("S1", submission("S1", "500"));
+			journal.append("S2", submission("S2", "600"));
+		}
+		Path segment = segments().get(0);
+		long size = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 5);
+		}
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+			reopened.append("S3", submission("S3", "700"));
+
+			// then
+			assertEquals(2, reopened.size());
+			assertTrue(read(reopened, "S1").contains("500"));
+			assertTrue(reopened.read("S2").isEmpty());
+			assertTrue(read(reopened, "S3").contains("700"));
+			assertTrue(Files.size(segment) < size - 5);
+			assertEquals(2, segmentCount());
+		}
+	}
+
+	/**
+	 * Verifies a record failing its checksum in the middle of a segment is
+	 * skipped on reopen, keeping the valid records after it
+	 */
+	@Test
+	void testSkipsCorruptRecordOnReopen() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+			journal.append("S1", submission("S1", "500"));
+			journal.append("S2", submission("S2", "600"));
+			journal.append("S3", submission("S3", "700"));
+		}
+		Path segment = segments().get(0);
+		long size = Files.size(segment);
+		int recordBytes = (int) (size / 3);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap("X".getBytes(StandardCharsets.UTF_8)), recordBytes + recordBytes - 2);
+		}
+		Files.delete(dir.resolve(segment.getFileName().toString().replace(".log", ".idx")));
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+
+			// then
+			assertEquals(2, reopened.size());
+			assertTrue(read(reopened, "S1").contains("500"));
+			assertTrue(reopened.read("S2").isEmpty());
+			assertTrue(read(reopened, "S3").contains("700"));
+			assertEquals(size, Files.size(segment));
+		}
+	}
+
+	/**
+	 * Verifies an unreadable record in a sealed segment fails the open, leaving
+	 * the segment and the records after it in place
+	 */
+	@Test
+	void testFailsOnUnreadableRecordInSealedSegment() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 200, 60_000, 0, FsyncPolicy.NONE)) {
+			for (int i = 0; i < 4; i++) {
+				journal.append("S" + i, submission("S" + i, "1000.0" + i));
+			}
+		}
+		Path segment = segments().get(0);
+		long size = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE), 0);
+		}
+		Files.delete(dir.resolve(segment.getFileName().toString().replace(".log", ".idx")));
+
+		// when / then
+		assertThrows(IOException.class, () -> new AuditJournal(dir, 200, 60_000, 0, FsyncPolicy.NONE));
+		assertEquals(size, Files.size(segment));
+	}
+
+	/**
+	 * Verifies a record whose Id length runs past its end is skipped on reopen
+	 * instead of failing the scan
+	 */
+	@Test
+	void testSkipsRecordWithIdPastItsEnd() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+			journal.append("S1", submission("S1", "500"));
+		}
+		Path segment = segments().get(0);
+		byte[] body = { (byte) 0xFF, (byte) 0xFF, '{', '}' };
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + body.length).putInt(body.length)
+				.putInt((int) crc.getValue()).put(body).flip();
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+			channel.write(record);
+		}
+		long size = Files.size(segment);
+		Files.delete(dir.resolve(segment.getFileName().toString().replace(".log", ".idx")));
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.ALWAYS)) {
+
+			// then
+			assertEquals(1, reopened.size());
+			assertTrue(read(reopened, "S1").contains("500"));
+			assertEquals(size, Files.size(segment));
+		}
+	}
+
+	/**
+	 * Verifies appending to a closed journal fails instead of starting a segment
+	 */
+	@Test
+	void testAppendAfterCloseFails() throws IOException {
+
+		// given
+		AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.NONE);
+		journal.append("S1", submission("S1", "500"));
+		journal.close();
+
+		// when / then
+		assertThrows(IllegalStateException.class, () -> journal.append("S2", submission("S2", "600")));
+		assertEquals(1, segmentCount());
+	}
+
+	/**
+	 * Verifies the index of a sealed segment is loaded from its index file on
+	 * reopen instead of scanning the segment
+	 */
+	@Test
+	void testLoadsSealedSegmentIndexOnReopen() throws IOException {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.NONE)) {
+			journal.append("S1", submission("S1", "500"));
+			journal.append("S2", submission("S2", "600"));
+		}
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(Integer.BYTES), Integer.BYTES); // checksum a scan would reject
+		}
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.NONE)) {
+
+			// then
+			assertEquals(2, reopened.size());
+			assertTrue(read(reopened, "S1").contains("500"));
+			assertTrue(read(reopened, "S2").contains("600"));
+		}
+	}
+
+	/**
+	 * Verifies sealed segments past the retention are deleted with their records
+	 */
+	@Test
+	void testDeletesSegmentsPastRetention() throws Exception {
+
+		// given
+		try (AuditJournal journal = new AuditJournal(dir, 200, 60_000, 0, FsyncPolicy.NONE)) {
+			journal.append("S1", submission("S1", "500"));
+		}
+		Thread.sleep(50);
+
+		// when
+		try (AuditJournal reopened = new AuditJournal(dir, 200, 60_000, 40, FsyncPolicy.NONE)) {
+			reopened.append("S2", submission("S2", "600"));
+
+			// then
+			assertEquals(1, reopened.size());
+			assertTrue(reopened.read("S1").isEmpty());
+			assertTrue(read(reopened, "S2").contains("600"));
+			assertEquals(1, segmentCount());
+		}
+	}
+
+	/**
+	 * Verifies a submission Id too long for its 2 byte length is rejected
+	 */
+	@Test
+	void testRejectsTooLongId() throws IOException {
+
+		// given
+		String id = "S".repeat(65536);
+		try (AuditJournal journal = new AuditJournal(dir, 1024 * 1024, 60_000, 0, FsyncPolicy.NONE)) {
+
+			// when / then
+			assertThrows(IllegalArgumentException.class, () -> journal.append(id, submission("S1", "500")));
+			assertEquals(0, journal.size());
+		}
+	}
+
+	/**
+	 * Verifies concurrent appends with group fsync are all journaled
+	 */
+	@Test
+	void testConcurrentGroupFsyncAppends() throws Exception {
+
+		// given
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (AuditJournal journal = new AuditJournal(dir, 4096, 60_000, 0, FsyncPolicy.GROUP)) {
+
+			// when
+			List<Future<Integer>> appends = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String id = "S" + i;
+				appends.add(executor.submit(() -> journal.append(id, submission(id, "200"))));
+			}
+			for (Future<Integer> append : appends) {
+				append.get();
+			}
+
+			// then
+			assertEquals(200, journal.size());
+			for (int i = 0; i < 200; i++) {
+				assertTrue(read(journal, "S" + i).contains("\"S" + i + "\""));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Submission submission(String submissionId, String amount) {
+		return new Submission(submissionId, List.of(new Batch(new BigDecimal(amount), 1)));
+	}
+
+	private static String read(AuditJournal journal, String submissionId) throws IOException {
+		return new String(journal.read(submissionId).orElseThrow(), StandardCharsets.UTF_8);
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.toString().endsWith(".log")).sorted().toList();
+		}
+	}
+
+	private long segmentCount() throws IOException {
+		return segments().size();
+	}
+
+}
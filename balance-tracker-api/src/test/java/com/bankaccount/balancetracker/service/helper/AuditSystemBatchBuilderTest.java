@@ -3,7 +3,9 @@ package com.bankaccount.balancetracker.service.helper;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -102,4 +104,57 @@ class AuditSystemBatchBuilderTest {
 		assertEquals(new BigDecimal("500"), batches.get(0).getTotalValueOfAllTransactions());
 	}
 
+	/**
+	 * Verifies the batches match a plain linear scan First Fit Decreasing for
+	 * random inputs across amount distributions, including oversized amounts
+	 */
+	@Test
+	void testBuildBatchesMatchesLinearFirstFitDecreasing() {
+		BigDecimal maxAmountPerBatch = new BigDecimal("1000000");
+		Random random = new Random(42);
+		for (int run = 0; run < 200; run++) {
+
+			// given
+			int size = 1 + random.nextInt(500);
+			int distribution = run % 4;
+			List<Transaction> transactions = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				long pence = switch (distribution) {
+				case 0 -> 20_000 + (long) (random.nextDouble() * 50_000_000); // uniform £200 to £500,000
+				case 1 -> 20_000 + random.nextInt(100_000); // small amounts, many per batch
+				case 2 -> random.nextInt(4) * 25_000_000L; // few distinct values, exact fits
+				default -> (long) (random.nextDouble() * 150_000_000); // up to £1.5m, some oversized
+				};
+				BigDecimal amount = BigDecimal.valueOf(random.nextBoolean() ? pence : -pence, 2);
+				transactions.add(new Transaction("TRN" + i, amount));
+			}
+
+			// when
+			List<Batch> batches = auditSystemBatchBuilder.buildBatches(transactions, maxAmountPerBatch);
+
+			// then
+			assertEquals(linearFirstFitDecreasing(transactions, maxAmountPerBatch), batches);
+		}
+	}
+
+	/**
+	 * Reference First Fit Decreasing with a linear scan over the open batches
+	 */
+	private static List<Batch> linearFirstFitDecreasing(List<Transaction> transactions, BigDecimal maxAmountPerBatch) {
+		List<Batch> batches = new ArrayList<>();
+		List<BigDecimal> sortedAmounts = transactions.stream().map(t -> t.getAmount().abs())
+				.sorted((a, b) -> b.compareTo(a)).toList();
+		for (BigDecimal amount : sortedAmounts) {
+			Batch fit = batches.stream()
+					.filter(b -> b.getTotalValueOfAllTransactions().add(amount).compareTo(maxAmountPerBatch) <= 0)
+					.findFirst().orElse(null);
+			if (fit != null) {
+				fit.addTransaction(amount);
+			} else {
+				batches.add(new Batch(amount, 1));
+			}
+		}
+		return batches;
+	}
+
 }
@@ -0,0 +1,213 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+/**
+ * Test class to test the BalanceBroadcaster subscriber cap, coalescing and
+ * send queues
+ */
+class BalanceBroadcasterTest {
+
+	private final BalanceBroadcaster broadcaster = new BalanceBroadcaster();
+	private final AtomicInteger loads = new AtomicInteger();
+	private final AtomicReference<Double> balance = new AtomicReference<>(250.52);
+
+	/**
+	 * Verifies a subscription over the configured cap is rejected with 503
+	 */
+	@Test
+	void testSubscribeOverLimit() {
+
+		// given
+		ReflectionTestUtils.setField(broadcaster, "maxSubscribers", 1);
+		broadcaster.subscribe("ACC1", this::load);
+
+		// when
+		BalanceTrackerException exception = assertThrows(BalanceTrackerException.class,
+				() -> broadcaster.subscribe("ACC1", this::load));
+
+		// then
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+		assertEquals(1, broadcaster.subscriberCount());
+	}
+
+	/**
+	 * Verifies many changes between two broadcasts load the balance once
+	 */
+	@Test
+	void testBroadcastCoalescesChanges() {
+
+		// given
+		broadcaster.subscribe("ACC1", this::load);
+		broadcaster.subscribe("ACC1", this::load);
+		loads.set(0);
+
+		// when
+		balance.set(300.0);
+		for (int i = 0; i < 100; i++) {
+			broadcaster.balanceChanged("ACC1");
+		}
+		broadcaster.broadcast();
+		broadcaster.broadcast();
+
+		// then
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Verifies a heartbeat checks the balance again, without loading an account
+	 * that has not changed in between
+	 */
+	@Test
+	void testHeartbeatChecksBalanceAgain() {
+
+		// given
+		broadcaster.subscribe("ACC1", this::load);
+		loads.set(0);
+		broadcaster.broadcast();
+
+		// when
+		broadcaster.heartbeat();
+		broadcaster.broadcast();
+
+		// then
+		assertEquals(1, loads.get());
+		assertEquals(1, broadcaster.subscriberCount());
+	}
+
+	/**
+	 * Verifies changes to an account without subscribers are ignored
+	 */
+	@Test
+	void testBalanceChangedWithoutSubscribers() {
+
+		// when
+		broadcaster.balanceChanged("ACC2");
+		broadcaster.broadcast();
+
+		// then
+		assertEquals(0, loads.get());
+		assertEquals(0, broadcaster.subscriberCount());
+	}
+
+	/**
+	 * Verifies a subscriber that stops reading does not delay the others
+	 */
+	@Test
+	void testSlowSubscriberDoesNotDelayOthers() throws Exception {
+
+		// given
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch received = new CountDownLatch(2);
+		BalanceBroadcaster streams = broadcaster(blockingEmitter(release), recordingEmitter(received));
+		streams.subscribe("ACC1", this::load);
+		streams.subscribe("ACC1", this::load);
+
+		// when
+		balance.set(300.0);
+		streams.balanceChanged("ACC1");
+		streams.broadcast();
+
+		// then
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		streams.stop();
+	}
+
+	/**
+	 * Verifies a subscriber whose send queue fills up is dropped, and the account
+	 * is forgotten with its last subscriber
+	 */
+	@Test
+	void testFullSendQueueDropsSubscriber() {
+
+		// given
+		CountDownLatch release = new CountDownLatch(1);
+		BalanceBroadcaster streams = broadcaster(blockingEmitter(release));
+		ReflectionTestUtils.setField(streams, "sendQueueSize", 2);
+		streams.subscribe("ACC1", this::load);
+
+		// when
+		for (int i = 1; i <= 3; i++) {
+			balance.set(300.0 + i);
+			streams.balanceChanged("ACC1");
+			streams.broadcast();
+		}
+
+		// then
+		assertEquals(0, streams.subscriberCount());
+		assertEquals(0, streams.topicCount());
+		release.countDown();
+		streams.stop();
+	}
+
+	/**
+	 * Broadcaster handing out the given emitters in turn
+	 */
+	private static BalanceBroadcaster broadcaster(SseEmitter... emitters) {
+		Iterator<SseEmitter> next = List.of(emitters).iterator();
+		return new BalanceBroadcaster() {
+
+			@Override
+			SseEmitter createEmitter() {
+				return next.next();
+			}
+		};
+	}
+
+	/**
+	 * Emitter of a subscriber that stops reading, its writes block until released
+	 */
+	private static SseEmitter blockingEmitter(CountDownLatch release) {
+		return new SseEmitter() {
+
+			@Override
+			public void send(Set<DataWithMediaType> items) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Emitter counting down the latch on every write
+	 */
+	private static SseEmitter recordingEmitter(CountDownLatch received) {
+		return new SseEmitter() {
+
+			@Override
+			public void send(Set<DataWithMediaType> items) {
+				received.countDown();
+			}
+		};
+	}
+
+	private BalanceSnapshot load() {
+		loads.incrementAndGet();
+		return BalanceSnapshot.of(balance.get());
+	}
+
+}
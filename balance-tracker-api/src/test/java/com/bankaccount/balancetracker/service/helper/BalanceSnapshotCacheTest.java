@@ -0,0 +1,195 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
+
+/**
+ * Test class to test the BalanceSnapshotCache invalidation, refresh and time
+ * to live
+ */
+class BalanceSnapshotCacheTest {
+
+	private final BalanceSnapshotCache cache = new BalanceSnapshotCache();
+	private final AtomicInteger loads = new AtomicInteger();
+
+	/**
+	 * Verifies a snapshot is served from the cache until invalidated, then loaded
+	 * again
+	 */
+	@Test
+	void testServesSnapshotUntilInvalidated() {
+
+		// given
+		BalanceSnapshot first = cache.get("ACC1", 60_000, () -> load(250.52));
+
+		// when
+		BalanceSnapshot cached = cache.get("ACC1", 60_000, () -> load(999));
+		cache.invalidate("ACC1");
+		BalanceSnapshot reloaded = cache.get("ACC1", 60_000, () -> load(550.52));
+
+		// then
+		assertSame(first, cached);
+		assertEquals("{\"balance\":250.52}", new String(first.getBody(), StandardCharsets.UTF_8));
+		assertEquals(550.52, reloaded.getBalance(), 0.001);
+		assertNotEquals(first.getEtag(), reloaded.getEtag());
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * Verifies an expired snapshot is loaded again and keeps its ETag when the
+	 * balance is unchanged
+	 */
+	@Test
+	void testReloadsExpiredSnapshotWithStableETag() throws InterruptedException {
+
+		// given
+		BalanceSnapshot first = cache.get("ACC1", 10, () -> load(100));
+		Thread.sleep(20);
+
+		// when
+		BalanceSnapshot reloaded = cache.get("ACC1", 10, () -> load(100));
+
+		// then
+		assertEquals(2, loads.get());
+		assertEquals(first.getEtag(), reloaded.getEtag());
+	}
+
+	/**
+	 * Verifies a load racing a commit of the same account is returned but not
+	 * cached
+	 */
+	@Test
+	void testDoesNotCacheLoadRacingInvalidation() {
+
+		// given
+		cache.get("ACC1", 60_000, () -> {
+			cache.invalidate("ACC1");
+			return load(100);
+		});
+
+		// when
+		BalanceSnapshot next = cache.get("ACC1", 60_000, () -> load(200));
+
+		// then
+		assertEquals(200, next.getBalance(), 0.001);
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * Verifies a warmed snapshot is refreshed ahead of its expiry until it is
+	 * first served, so the first read after startup hits the cache
+	 */
+	@Test
+	void testRefreshesWarmSnapshotUntilServed() throws InterruptedException {
+
+		// given
+		cache.warm("ACC1", 100);
+		Thread.sleep(60);
+		cache.refresh(100, accountId -> load(100));
+		Thread.sleep(60);
+		cache.refresh(100, accountId -> load(100));
+
+		// when
+		BalanceSnapshot served = cache.get("ACC1", 100, () -> load(999));
+
+		// then
+		assertEquals(100, served.getBalance(), 0.001);
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * Verifies a snapshot in use is loaded again by the refresh after a commit
+	 * changes it, so the next read hits the cache
+	 */
+	@Test
+	void testReloadsSnapshotInUseAfterCommit() {
+
+		// given
+		cache.get("ACC1", 60_000, () -> load(100));
+		cache.invalidate("ACC1");
+
+		// when
+		cache.refresh(60_000, accountId -> load(200));
+		BalanceSnapshot served = cache.get("ACC1", 60_000, () -> load(999));
+
+		// then
+		assertEquals(200, served.getBalance(), 0.001);
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * Verifies the refresh reads nothing from the store for an account that did
+	 * not change
+	 */
+	@Test
+	void testDoesNotReloadUnchangedSnapshot() {
+
+		// given
+		cache.get("ACC1", 60_000, () -> load(100));
+
+		// when
+		for (int i = 0; i < 3; i++) {
+			cache.refresh(60_000, accountId -> load(100));
+		}
+
+		// then
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Verifies a snapshot not served since it was last loaded is not loaded again
+	 * after the next commit
+	 */
+	@Test
+	void testLeavesSnapshotNotInUseToExpire() {
+
+		// given
+		cache.get("ACC1", 60_000, () -> load(100));
+		cache.invalidate("ACC1");
+		cache.refresh(60_000, accountId -> load(200));
+
+		// when
+		cache.invalidate("ACC1");
+		cache.refresh(60_000, accountId -> load(300));
+
+		// then
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Verifies expired snapshots are dropped and commits to accounts never read
+	 * leave nothing behind, so the cache does not grow with the accounts seen
+	 */
+	@Test
+	void testDropsExpiredSnapshots() throws InterruptedException {
+
+		// given
+		for (int i = 0; i < 3; i++) {
+			cache.get("ACC" + i, 10, () -> load(100));
+		}
+		cache.invalidate("ACC9");
+		Thread.sleep(20);
+
+		// when
+		cache.refresh(10, accountId -> load(100));
+
+		// then
+		assertEquals(0, cache.size());
+		assertEquals(3, loads.get());
+	}
+
+	private double load(double balance) {
+		loads.incrementAndGet();
+		return balance;
+	}
+
+}
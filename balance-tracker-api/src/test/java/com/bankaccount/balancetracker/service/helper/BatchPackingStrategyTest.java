@@ -0,0 +1,162 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bankaccount.balancetracker.dto.Batch;
+
+/**
+ * Test class to test the batch packing strategies
+ */
+class BatchPackingStrategyTest {
+
+	private static final BigDecimal MAX_AMOUNT_PER_BATCH = new BigDecimal("10");
+
+	/**
+	 * Verifies every strategy keeps all amounts and stays within the max per
+	 * batch, apart from oversized amounts in a batch of their own
+	 */
+	@Test
+	void testStrategiesProduceValidPackings() {
+		List<BatchPackingStrategy> strategies = List.of(new FirstFitDecreasingStrategy(),
+				new BestFitDecreasingStrategy(), new NextFitStrategy(), new BranchAndBoundStrategy(50, 12));
+		Random random = new Random(7);
+		for (int run = 0; run < 100; run++) {
+
+			// given
+			List<BigDecimal> amounts = new ArrayList<>();
+			int size = 1 + random.nextInt(12);
+			for (int i = 0; i < size; i++) {
+				amounts.add(BigDecimal.valueOf(random.nextInt(1200), 2));
+			}
+			BigDecimal sum = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+			int lowerBound = PackingReport.lowerBound(amounts, MAX_AMOUNT_PER_BATCH);
+
+			for (BatchPackingStrategy strategy : strategies) {
+
+				// when
+				List<Batch> batches = strategy.pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+				// then
+				assertEquals(size, batches.stream().mapToInt(Batch::getCountOfTransactions).sum());
+				assertEquals(0, sum.compareTo(batches.stream().map(Batch::getTotalValueOfAllTransactions)
+						.reduce(BigDecimal.ZERO, BigDecimal::add)));
+				assertTrue(batches.stream().allMatch(b -> b.getCountOfTransactions() == 1
+						|| b.getTotalValueOfAllTransactions().compareTo(MAX_AMOUNT_PER_BATCH) <= 0));
+				assertTrue(batches.size() >= lowerBound);
+			}
+		}
+	}
+
+	/**
+	 * Verifies the exact strategy finds the optimum where FFD does not
+	 */
+	@Test
+	void testBranchAndBoundBeatsFirstFitDecreasing() {
+
+		// given
+		List<BigDecimal> amounts = amounts("4", "4", "3", "3", "3", "3");
+
+		// when
+		List<Batch> ffdBatches = new FirstFitDecreasingStrategy().pack(amounts, MAX_AMOUNT_PER_BATCH);
+		List<Batch> exactBatches = new BranchAndBoundStrategy(1000, 40).pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// then
+		assertEquals(3, ffdBatches.size());
+		assertEquals(List.of(new Batch(new BigDecimal("10"), 3), new Batch(new BigDecimal("10"), 3)),
+				exactBatches);
+	}
+
+	/**
+	 * Verifies the exact strategy falls back to FFD above the max transaction
+	 * count or without time budget
+	 */
+	@Test
+	void testBranchAndBoundFallsBackToFirstFitDecreasing() {
+
+		// given
+		List<BigDecimal> amounts = amounts("4", "4", "3", "3", "3", "3");
+		List<Batch> ffdBatches = new FirstFitDecreasingStrategy().pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// when
+		List<Batch> aboveMax = new BranchAndBoundStrategy(1000, 5).pack(amounts, MAX_AMOUNT_PER_BATCH);
+		List<Batch> noBudget = new BranchAndBoundStrategy(0, 40).pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// then
+		assertEquals(ffdBatches, aboveMax);
+		assertEquals(ffdBatches, noBudget);
+	}
+
+	/**
+	 * Verifies the exact strategy keeps oversized amounts in batches of their own
+	 */
+	@Test
+	void testBranchAndBoundWithOversizedAmount() {
+
+		// given
+		List<BigDecimal> amounts = amounts("4", "12", "3", "3", "4", "3", "3");
+
+		// when
+		List<Batch> batches = new BranchAndBoundStrategy(1000, 40).pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// then
+		assertEquals(List.of(new Batch(new BigDecimal("12"), 1), new Batch(new BigDecimal("10"), 3),
+				new Batch(new BigDecimal("10"), 3)), batches);
+	}
+
+	/**
+	 * Verifies best fit places an amount in the batch it fills the most
+	 */
+	@Test
+	void testBestFitDecreasingPicksTightestBatch() {
+
+		// given
+		List<BigDecimal> amounts = amounts("6", "7", "3");
+
+		// when
+		List<Batch> batches = new BestFitDecreasingStrategy().pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// then
+		assertEquals(List.of(new Batch(new BigDecimal("10"), 2), new Batch(new BigDecimal("6"), 1)), batches);
+	}
+
+	/**
+	 * Verifies next fit keeps arrival order with a single open batch
+	 */
+	@Test
+	void testNextFitKeepsArrivalOrder() {
+
+		// given
+		List<BigDecimal> amounts = amounts("6", "3", "5", "4", "2");
+
+		// when
+		List<Batch> batches = new NextFitStrategy().pack(amounts, MAX_AMOUNT_PER_BATCH);
+
+		// then
+		assertEquals(List.of(new Batch(new BigDecimal("9"), 2), new Batch(new BigDecimal("9"), 2),
+				new Batch(new BigDecimal("2"), 1)), batches);
+	}
+
+	/**
+	 * Verifies the lower bound rounds the total up to whole batches and counts
+	 * oversized amounts as a batch each
+	 */
+	@Test
+	void testLowerBound() {
+		assertEquals(2, PackingReport.lowerBound(amounts("4", "4", "3", "3", "3", "3"), MAX_AMOUNT_PER_BATCH));
+		assertEquals(3, PackingReport.lowerBound(amounts("10", "10", "0.01"), MAX_AMOUNT_PER_BATCH));
+		assertEquals(2, PackingReport.lowerBound(amounts("25", "3"), MAX_AMOUNT_PER_BATCH));
+	}
+
+	private static List<BigDecimal> amounts(String... values) {
+		return List.of(values).stream().map(BigDecimal::new).toList();
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class to test the GroupCommitter engine
+ */
+class GroupCommitterTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final List<List<Transaction>> committedGroups = Collections.synchronizedList(new ArrayList<>());
+	private final List<Transaction> committedSingles = Collections.synchronizedList(new ArrayList<>());
+	private GroupCommitter groupCommitter;
+
+	@AfterEach
+	void tearDown() {
+		if (groupCommitter != null) {
+			groupCommitter.close();
+		}
+	}
+
+	/**
+	 * Verifies concurrent transactions are collected into fewer groups and every
+	 * caller is completed
+	 */
+	@Test
+	void testConcurrentTransactionsAreGrouped() throws Exception {
+
+		// given
+		groupCommitter = new GroupCommitter(committedGroups::add, committedSingles::add, 50, 10, meterRegistry);
+		int transactionCount = 40;
+		ExecutorService executor = Executors.newFixedThreadPool(transactionCount);
+		CountDownLatch start = new CountDownLatch(1);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < transactionCount; i++) {
+			Transaction trans = new Transaction("CRE" + i, new BigDecimal("250"));
+			futures.add(CompletableFuture.runAsync(() -> {
+				await(start);
+				groupCommitter.submit(trans).join();
+			}, executor));
+		}
+		start.countDown();
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+		executor.shutdownNow();
+
+		// then
+		assertEquals(transactionCount, committedGroups.stream().mapToInt(List::size).sum());
+		assertTrue(committedGroups.size() < transactionCount);
+		assertTrue(committedGroups.stream().allMatch(group -> group.size() <= 10));
+		assertEquals(committedGroups.size(), meterRegistry.get("balance.groupcommit.size").summary().count());
+		assertEquals(transactionCount, meterRegistry.get("balance.groupcommit.wait").timer().count());
+	}
+
+	/**
+	 * Verifies a failed group is retried one transaction at a time and only the
+	 * failing transaction completes exceptionally
+	 */
+	@Test
+	void testFailedGroupIsRetriedIndividually() {
+
+		// given
+		Transaction good = new Transaction("CRE1", new BigDecimal("250"));
+		Transaction bad = new Transaction("CRE2", new BigDecimal("250"));
+		groupCommitter = new GroupCommitter(group -> {
+			throw new IllegalStateException("Duplicate key");
+		}, trans -> {
+			if (trans == bad) {
+				throw new IllegalStateException("Duplicate key");
+			}
+			committedSingles.add(trans);
+		}, 200, 2, meterRegistry);
+
+		// when
+		CompletableFuture<Void> goodFuture = groupCommitter.submit(good);
+		CompletableFuture<Void> badFuture = groupCommitter.submit(bad);
+
+		// then
+		goodFuture.join();
+		CompletionException ex = assertThrows(CompletionException.class, badFuture::join);
+		assertInstanceOf(IllegalStateException.class, ex.getCause());
+		assertEquals(List.of(good), committedSingles);
+	}
+
+	/**
+	 * Verifies transactions are refused once the engine is closed
+	 */
+	@Test
+	void testSubmitAfterClose() {
+
+		// given
+		groupCommitter = new GroupCommitter(committedGroups::add, committedSingles::add, 1, 10, meterRegistry);
+		groupCommitter.close();
+
+		// when
+		CompletableFuture<Void> future = groupCommitter.submit(new Transaction("CRE1", new BigDecimal("250")));
+
+		// then
+		CompletionException ex = assertThrows(CompletionException.class, future::join);
+		BalanceTrackerException cause = assertInstanceOf(BalanceTrackerException.class, ex.getCause());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, cause.getStatus());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test class to test when the IdempotencyGuard goes to the store
+ */
+class IdempotencyGuardTest {
+
+	private final IdempotencyGuard guard = new IdempotencyGuard();
+	private final Set<String> stored = new HashSet<>();
+	private final AtomicInteger storeChecks = new AtomicInteger();
+	private final Predicate<String> store = id -> {
+		storeChecks.incrementAndGet();
+		return stored.contains(id);
+	};
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(guard, "recentIdCount", 2);
+		guard.init();
+	}
+
+	/**
+	 * Verifies a new Id is let through without checking the store
+	 */
+	@Test
+	void testNewIdSkipsStore() {
+
+		// when
+		boolean duplicate = guard.isDuplicate("CRE1", store);
+
+		// then
+		assertFalse(duplicate);
+		assertEquals(0, storeChecks.get());
+	}
+
+	/**
+	 * Verifies a recent Id is a duplicate without checking the store
+	 */
+	@Test
+	void testRecentIdSkipsStore() {
+
+		// given
+		guard.record("CRE1");
+
+		// when
+		boolean duplicate = guard.isDuplicate("CRE1", store);
+
+		// then
+		assertTrue(duplicate);
+		assertEquals(0, storeChecks.get());
+	}
+
+	/**
+	 * Verifies an Id evicted from the recent Ids is confirmed by the store
+	 */
+	@Test
+	void testEvictedIdCheckedInStore() {
+
+		// given
+		for (String id : new String[] { "CRE1", "CRE2", "CRE3" }) {
+			guard.record(id);
+			stored.add(id);
+		}
+
+		// when
+		boolean duplicate = guard.isDuplicate("CRE1", store);
+		boolean duplicateAgain = guard.isDuplicate("CRE1", store);
+
+		// then
+		assertTrue(duplicate);
+		assertTrue(duplicateAgain);
+		assertEquals(1, storeChecks.get());
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+/**
+ * Test class to test the PenceBalance fixed point balance
+ */
+class PenceBalanceTest {
+
+	/**
+	 * Verifies concurrent credits and debits add up exactly
+	 */
+	@Test
+	void testConcurrentAddsAreExact() throws Exception {
+
+		// given
+		PenceBalance balance = new PenceBalance(4);
+		int threads = 8;
+		int addsPerThread = 10_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < threads; i++) {
+			long pence = i % 2 == 0 ? 25052 : -10063;
+			futures.add(CompletableFuture.runAsync(() -> {
+				for (int j = 0; j < addsPerThread; j++) {
+					balance.add(pence);
+				}
+			}, executor));
+		}
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+		executor.shutdownNow();
+
+		// then
+		assertEquals(new BigDecimal("5995600.00"), balance.sum());
+	}
+
+	/**
+	 * Verifies an overflow is rejected once every cell is full and leaves the balance unchanged
+	 */
+	@Test
+	void testAddOverflow() {
+
+		// given
+		PenceBalance balance = new PenceBalance(1);
+		balance.add(Long.MAX_VALUE);
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class, () -> balance.add(1));
+
+		// then
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatus());
+		assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2), balance.sum());
+	}
+
+	/**
+	 * Verifies the sum stays exact when the cells add up beyond the long range
+	 */
+	@Test
+	void testSumBeyondLongRange() {
+
+		// given
+		PenceBalance balance = new PenceBalance(2);
+
+		// when
+		balance.add(Long.MAX_VALUE);
+		balance.add(Long.MAX_VALUE);
+
+		// then
+		assertEquals(new BigDecimal("184467440737095516.14"), balance.sum());
+	}
+
+	/**
+	 * Verifies conversion to pence and rejection of fractional pence
+	 */
+	@Test
+	void testToPence() {
+		assertEquals(25052, PenceBalance.toPence(new BigDecimal("250.52")));
+		assertEquals(-20000, PenceBalance.toPence(new BigDecimal("-200")));
+		assertEquals(10, PenceBalance.toPence(new BigDecimal("0.100")));
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> PenceBalance.toPence(new BigDecimal("250.525")));
+		assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class to test the ScalableBloomFilter growth and false positive rate
+ */
+class ScalableBloomFilterTest {
+
+	/**
+	 * Verifies an empty filter contains nothing and an added value is found
+	 */
+	@Test
+	void testMightContainAddedValue() {
+
+		// given
+		ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+
+		// when
+		boolean beforePut = filter.mightContain("CRE123");
+		filter.put("CRE123");
+
+		// then
+		assertFalse(beforePut);
+		assertTrue(filter.mightContain("CRE123"));
+	}
+
+	/**
+	 * Verifies the filter grows past its initial capacity without losing any
+	 * value and keeps its false positive rate under twice the initial one
+	 */
+	@Test
+	void testGrowsPastInitialCapacity() {
+
+		// given
+		ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+
+		// when
+		IntStream.range(0, 20_000).forEach(i -> filter.put("CRE" + i));
+		long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("DEB" + i)).count();
+
+		// then
+		assertEquals(5, filter.filterCount());
+		assertTrue(IntStream.range(0, 20_000).allMatch(i -> filter.mightContain("CRE" + i)));
+		assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+	}
+
+}
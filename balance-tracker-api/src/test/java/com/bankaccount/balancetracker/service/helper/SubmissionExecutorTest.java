@@ -0,0 +1,122 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+import com.bankaccount.balancetracker.service.helper.SubmissionExecutor.SaturationPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class to test the SubmissionExecutor saturation policies
+ */
+class SubmissionExecutorTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private SubmissionExecutor submissionExecutor;
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		submissionExecutor.close();
+	}
+
+	/**
+	 * Verifies a task is rejected with 503 and counted once the queue is full
+	 */
+	@Test
+	void testRejectPolicy() {
+
+		// given
+		submissionExecutor = new SubmissionExecutor(1, 1, SaturationPolicy.REJECT, meterRegistry);
+		submissionExecutor.submit(this::awaitRelease);
+		submissionExecutor.submit(this::awaitRelease);
+
+		// when
+		CompletableFuture<Integer> rejected = submissionExecutor.submit(() -> 1);
+
+		// then
+		CompletionException ex = assertThrows(CompletionException.class, rejected::join);
+		BalanceTrackerException cause = assertInstanceOf(BalanceTrackerException.class, ex.getCause());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, cause.getStatus());
+		assertEquals(1.0, meterRegistry.get("audit.submission.rejected").counter().count());
+	}
+
+	/**
+	 * Verifies tasks beyond the queue capacity are spilled and all of them run
+	 * once the workers free up
+	 */
+	@Test
+	void testSpillPolicy() throws Exception {
+
+		// given
+		submissionExecutor = new SubmissionExecutor(1, 1, SaturationPolicy.SPILL, meterRegistry);
+		submissionExecutor.submit(this::awaitRelease);
+		List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < 5; i++) {
+			int value = i;
+			futures.add(submissionExecutor.submit(() -> value));
+		}
+		double spillDepth = meterRegistry.get("audit.submission.spill.depth").gauge().value();
+		release.countDown();
+
+		// then
+		assertEquals(4.0, spillDepth);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, futures.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(4.0, meterRegistry.get("audit.submission.spilled").counter().count());
+		assertEquals(0.0, meterRegistry.get("audit.submission.spill.depth").gauge().value());
+	}
+
+	/**
+	 * Verifies the caller waits for space in the queue instead of failing
+	 */
+	@Test
+	void testBlockPolicy() throws Exception {
+
+		// given
+		submissionExecutor = new SubmissionExecutor(1, 1, SaturationPolicy.BLOCK, meterRegistry);
+		submissionExecutor.submit(this::awaitRelease);
+		submissionExecutor.submit(() -> 1);
+
+		// when
+		CompletableFuture<CompletableFuture<Integer>> blocked = CompletableFuture
+				.supplyAsync(() -> submissionExecutor.submit(() -> 2));
+		Thread.sleep(100);
+		boolean doneBeforeRelease = blocked.isDone();
+		release.countDown();
+
+		// then
+		assertFalse(doneBeforeRelease);
+		assertEquals(2, blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+		assertEquals(0.0, meterRegistry.get("audit.submission.rejected").counter().count());
+	}
+
+	private int awaitRelease() {
+		try {
+			release.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return 0;
+	}
+
+}
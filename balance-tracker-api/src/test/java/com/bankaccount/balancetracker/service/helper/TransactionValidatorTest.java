@@ -0,0 +1,64 @@
+package com.bankaccount.balancetracker.service.helper;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+
+/**
+ * Test class to test the Transaction Validator
+ */
+class TransactionValidatorTest {
+
+	private final TransactionValidator validator = new TransactionValidator(new BigDecimal("200"),
+			new BigDecimal("500000"));
+
+	/**
+	 * Verifies credits and debits in range with the right sign are valid
+	 */
+	@Test
+	void testValidTransactions() {
+		assertDoesNotThrow(() -> validator.validate(new Transaction("CRE1", new BigDecimal("250.52"))));
+		assertDoesNotThrow(() -> validator.validate(new Transaction("DEB1", new BigDecimal("-500000"))));
+	}
+
+	/**
+	 * Verifies an amount out of range is rejected
+	 */
+	@Test
+	void testAmountOutOfRange() {
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> validator.validate(new Transaction("CRE1", new BigDecimal("199.99"))));
+
+		// then
+		assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+		assertEquals("Amount must be between £200 and £500000", ex.getMessage());
+	}
+
+	/**
+	 * Verifies a credit or a debit with the wrong sign is rejected
+	 */
+	@Test
+	void testWrongSign() {
+
+		// when
+		BalanceTrackerException credit = assertThrows(BalanceTrackerException.class,
+				() -> validator.validate(new Transaction("CRE1", new BigDecimal("-250"))));
+		BalanceTrackerException debit = assertThrows(BalanceTrackerException.class,
+				() -> validator.validate(new Transaction("DEB1", new BigDecimal("250"))));
+
+		// then
+		assertEquals("Credit must have positive amount", credit.getMessage());
+		assertEquals("Debit must have negative amount", debit.getMessage());
+	}
+
+}
@@ -3,6 +3,8 @@
  */
 package com.bankaccount.balancetracker.service.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
@@ -11,19 +13,31 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.bankaccount.balancetracker.dto.Batch;
+import com.bankaccount.balancetracker.dto.SubmissionResult;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.service.helper.AuditJournal;
+import com.bankaccount.balancetracker.service.helper.AuditJournal.FsyncPolicy;
 import com.bankaccount.balancetracker.service.helper.AuditSystemBatchBuilder;
+import com.bankaccount.balancetracker.service.helper.SubmissionExecutor.SaturationPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 /**
  * Test class to test AuditSubmissionService implementation
@@ -37,9 +51,28 @@ class AuditSubmissionServiceImplTest {
 	@Mock
 	private AuditSystemBatchBuilder auditSystemBatchBuilder;
 
+	@Spy
+	private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@TempDir
+	private Path journalDir;
+
 	@BeforeEach
 	void setup() {
 		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "maxAmountPerBatch", new BigDecimal("500"));
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "submissionThreads", 1);
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "submissionQueueCapacity", 10);
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "saturationPolicy", SaturationPolicy.BLOCK);
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "journalDir", journalDir.toString());
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "journalSegmentMaxBytes", 1024L * 1024);
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "journalSegmentMaxAgeMs", 60_000L);
+		ReflectionTestUtils.setField(auditSubmissionServiceImpl, "journalFsyncPolicy", FsyncPolicy.GROUP);
+		auditSubmissionServiceImpl.startSubmissionExecutor();
+	}
+
+	@AfterEach
+	void tearDown() {
+		auditSubmissionServiceImpl.stopSubmissionExecutor();
 	}
 
 	/**
@@ -96,4 +129,32 @@ class AuditSubmissionServiceImplTest {
 		verify(auditSystemBatchBuilder, times(0)).buildBatches(anyList(), eq(new BigDecimal("500")));
 	}
 
+	/**
+	 * Verifies the asynchronous submit completes with the transaction and batch
+	 * counts, and the submission can be read back from the journal by its Id
+	 */
+	@Test
+	void testAuditSubmitAsync() throws Exception {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE1234", new BigDecimal("250")),
+				new Transaction("CRE1244", new BigDecimal("250")), new Transaction("DEB1254", new BigDecimal("-300")));
+
+		when(auditSystemBatchBuilder.buildBatches(anyList(), any()))
+				.thenReturn(List.of(new Batch(new BigDecimal("500"), 2), new Batch(new BigDecimal("-300"), 1)));
+
+		// when
+		SubmissionResult result = auditSubmissionServiceImpl.submitAsync(transactions).get(5, TimeUnit.SECONDS);
+
+		// then
+		assertEquals(3, result.getTransactionCount());
+		assertEquals(2, result.getBatchCount());
+		verify(auditSystemBatchBuilder, times(1)).buildBatches(anyList(), eq(new BigDecimal("500")));
+		AuditJournal auditJournal = (AuditJournal) ReflectionTestUtils.getField(auditSubmissionServiceImpl,
+				"auditJournal");
+		String json = new String(auditJournal.read(result.getSubmissionId()).orElseThrow(), StandardCharsets.UTF_8);
+		assertTrue(json.contains(result.getSubmissionId()));
+		assertTrue(json.contains("\"countOfTransactions\":2"));
+	}
+
 }
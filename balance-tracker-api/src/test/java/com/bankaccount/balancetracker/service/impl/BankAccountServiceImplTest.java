@@ -1,13 +1,22 @@
 package com.bankaccount.balancetracker.service.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -15,13 +24,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import com.bankaccount.balancetracker.dto.BalanceSnapshot;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.dto.TransactionResult;
+import com.bankaccount.balancetracker.entity.BalanceCheckpointT;
 import com.bankaccount.balancetracker.entity.BalanceT;
+import com.bankaccount.balancetracker.entity.TransactionT;
 import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+import com.bankaccount.balancetracker.repository.BalanceCheckpointRepository;
 import com.bankaccount.balancetracker.repository.BalanceRepository;
+import com.bankaccount.balancetracker.repository.BalanceSlotRepository;
 import com.bankaccount.balancetracker.repository.TransactionRepository;
+import com.bankaccount.balancetracker.repository.TransactionRepository.BalanceTail;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
+import com.bankaccount.balancetracker.service.helper.IdempotencyGuard;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 /**
  * Test class to test BankAccountService implementation with DB integration.
@@ -37,9 +60,24 @@ class BankAccountServiceImplTest {
 	@Mock
 	private BalanceRepository balanceRepository;
 
+	@Mock
+	private BalanceSlotRepository balanceSlotRepository;
+
+	@Mock
+	private BalanceCheckpointRepository balanceCheckpointRepository;
+
 	@Mock
 	private TransactionRepository transactionRepository;
 
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private BalanceBroadcaster balanceBroadcaster;
+
+	@Mock
+	private IdempotencyGuard idempotencyGuard;
+
 	/**
 	 * Verifies balance and transaction persistance
 	 */
@@ -49,32 +87,231 @@ class BankAccountServiceImplTest {
 		// given
 		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
 
-		BalanceT balanceT = BalanceT.builder().accountId(ACCOUNT_ID).amount(new BigDecimal("10")).build();
-
-		when(balanceRepository.findForUpdate(ACCOUNT_ID)).thenReturn(Optional.of(balanceT));
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(1);
 
 		// when
 		bankAccountServiceImpl.processTransaction(trans);
 
 		// then
-		verify(balanceRepository, times(1)).save(any());
+		verify(balanceRepository, times(1)).incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"));
+		verify(balanceRepository, never()).upsertAmount(any(), any());
 		verify(transactionRepository, times(1)).save(any());
 	}
 
+	/**
+	 * Verifies the balance row is initialised through the upsert when the atomic
+	 * increment finds no row
+	 */
 	@Test
 	void testProcessTransactionWithNoBalance() {
 
 		// given
 		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
 
-		when(balanceRepository.findForUpdate(ACCOUNT_ID)).thenReturn(Optional.empty());
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(0);
 
 		// when
 		bankAccountServiceImpl.processTransaction(trans);
 
 		// then
-		verify(balanceRepository, times(2)).save(any());
+		verify(balanceRepository, times(1)).upsertAmount(ACCOUNT_ID, new BigDecimal("250.52"));
+		verify(transactionRepository, times(1)).save(any());
+	}
+
+	/**
+	 * Verifies a first transaction that loses the race to create the balance row
+	 * is rolled back and applied again to the row created meanwhile
+	 */
+	@Test
+	void testProcessTransactionRetriedAfterLosingBalanceRowRace() {
+
+		// given
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(0, 1);
+		when(balanceRepository.upsertAmount(ACCOUNT_ID, new BigDecimal("250.52")))
+				.thenThrow(new DataIntegrityViolationException("duplicate key"));
+		when(transactionRepository.existsById("CRE123")).thenReturn(false);
+
+		// when
+		boolean applied = bankAccountServiceImpl.processTransaction(trans);
+
+		// then
+		assertTrue(applied);
+		verify(balanceRepository, times(2)).incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"));
 		verify(transactionRepository, times(1)).save(any());
+		verify(idempotencyGuard, times(1)).record("CRE123");
+	}
+
+	/**
+	 * Verifies a batch applies the net amount with a single balance update and
+	 * persists all transactions in one call
+	 */
+	@Test
+	void testProcessTransactionsAppliesNetAmountOnce() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250.52")),
+				new Transaction("DEB124", new BigDecimal("-50.52")), new Transaction("CRE125", new BigDecimal("300")));
+
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("500.00"))).thenReturn(1);
+
+		// when
+		bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		verify(balanceRepository, times(1)).incrementAmount(ACCOUNT_ID, new BigDecimal("500.00"));
+		verify(transactionRepository, times(1)).saveAll(anyList());
+	}
+
+	/**
+	 * Verifies a batch across accounts applies one net amount per account
+	 */
+	@Test
+	void testProcessTransactionsAcrossAccounts() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250.52"), "ACC2"),
+				new Transaction("DEB124", new BigDecimal("-50.52"), "ACC1"), new Transaction("CRE125", new BigDecimal("300")),
+				new Transaction("CRE126", new BigDecimal("100"), "ACC1"));
+
+		when(balanceRepository.incrementAmount(any(), any())).thenReturn(1);
+
+		// when
+		bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		verify(balanceRepository, times(1)).incrementAmount("ACC1", new BigDecimal("49.48"));
+		verify(balanceRepository, times(1)).incrementAmount("ACC2", new BigDecimal("250.52"));
+		verify(balanceRepository, times(1)).incrementAmount(ACCOUNT_ID, new BigDecimal("300"));
+		verify(transactionRepository, times(1)).saveAll(anyList());
+	}
+
+	/**
+	 * Verifies a batch breaking a constraint is applied one transaction at a time
+	 * and only the offending transaction is rejected
+	 */
+	@Test
+	void testProcessTransactionsRejectsConflictingItem() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250.52")),
+				new Transaction("DEB124", new BigDecimal("-50.52")));
+
+		when(balanceRepository.incrementAmount(any(), any())).thenReturn(1);
+		when(transactionRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("check"));
+		when(transactionRepository.save(any())).thenAnswer(invocation -> {
+			TransactionT entity = invocation.getArgument(0);
+			if ("DEB124".equals(entity.getTransactionId())) {
+				throw new DataIntegrityViolationException("check");
+			}
+			return entity;
+		});
+
+		// when
+		List<TransactionResult> results = bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		assertEquals(2, results.size());
+		assertEquals("CRE123", results.get(0).getTransactionId());
+		assertEquals(TransactionResult.ACCEPTED, results.get(0).getStatus());
+		assertEquals("DEB124", results.get(1).getTransactionId());
+		assertEquals(TransactionResult.REJECTED, results.get(1).getStatus());
+		assertEquals("Transaction conflicts with stored data", results.get(1).getMessage());
+		verify(transactionRepository, times(1)).save(argThat(t -> "CRE123".equals(t.getTransactionId())));
+		verify(transactionRepository, times(2)).save(argThat(t -> "DEB124".equals(t.getTransactionId())));
+	}
+
+	/**
+	 * Verifies a batch leaves out the Ids the idempotency guard knows as applied
+	 * and records the others once committed
+	 */
+	@Test
+	void testProcessTransactionsSkipsReplayedIds() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250.52")),
+				new Transaction("DEB124", new BigDecimal("-50.52")));
+
+		when(idempotencyGuard.isDuplicate(eq("CRE123"), any())).thenReturn(true);
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("-50.52"))).thenReturn(1);
+
+		// when
+		List<TransactionResult> results = bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		assertEquals(TransactionResult.ALREADY_APPLIED, results.get(0).getStatus());
+		assertEquals("Transaction already applied", results.get(0).getMessage());
+		assertEquals(TransactionResult.ACCEPTED, results.get(1).getStatus());
+		verify(balanceRepository, times(1)).incrementAmount(ACCOUNT_ID, new BigDecimal("-50.52"));
+		verify(idempotencyGuard, times(1)).record("DEB124");
+		verify(idempotencyGuard, never()).record("CRE123");
+	}
+
+	/**
+	 * Verifies a replay that gets past the idempotency guard rolls the batch back
+	 * and is then reported as already applied
+	 */
+	@Test
+	void testProcessTransactionsReplayPastGuard() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250.52")),
+				new Transaction("DEB124", new BigDecimal("-50.52")));
+
+		when(balanceRepository.incrementAmount(any(), any())).thenReturn(1);
+		when(transactionRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+		when(transactionRepository.save(any())).thenAnswer(invocation -> {
+			TransactionT entity = invocation.getArgument(0);
+			if ("CRE123".equals(entity.getTransactionId())) {
+				throw new DataIntegrityViolationException("duplicate key");
+			}
+			return entity;
+		});
+		when(transactionRepository.existsById("CRE123")).thenReturn(true);
+
+		// when
+		List<TransactionResult> results = bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		assertEquals(TransactionResult.ALREADY_APPLIED, results.get(0).getStatus());
+		assertEquals(TransactionResult.ACCEPTED, results.get(1).getStatus());
+		verify(idempotencyGuard, times(1)).record("CRE123");
+		verify(idempotencyGuard, times(1)).record("DEB124");
+	}
+
+	/**
+	 * Verifies that in group commit mode the transaction is applied by the group
+	 * committer in its own DB transaction
+	 */
+	@Test
+	void testProcessTransactionInGroupCommitMode() {
+
+		// given
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		BankAccountServiceImpl groupCommitService = new BankAccountServiceImpl(balanceRepository,
+				balanceSlotRepository, balanceCheckpointRepository, transactionRepository, transactionManager,
+				meterRegistry, balanceBroadcaster, idempotencyGuard);
+		ReflectionTestUtils.setField(groupCommitService, "groupCommitEnabled", true);
+		ReflectionTestUtils.setField(groupCommitService, "groupCommitWindowMs", 1L);
+		ReflectionTestUtils.setField(groupCommitService, "groupCommitMaxSize", 10);
+		groupCommitService.startGroupCommit();
+
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(1);
+
+		// when
+		try {
+			groupCommitService.processTransaction(trans);
+		} finally {
+			groupCommitService.stopGroupCommit();
+		}
+
+		// then
+		verify(balanceRepository, times(1)).incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"));
+		verify(transactionManager, times(1)).commit(any());
+		verify(transactionRepository, times(1)).saveAll(anyList());
+		assertEquals(1, meterRegistry.get("balance.groupcommit.size").summary().count());
 	}
 
 	/**
@@ -105,4 +342,204 @@ class BankAccountServiceImplTest {
 		assertEquals(100.0, balance, 0.001);
 	}
 
+	/**
+	 * Verifies the balance snapshot is served without going to the DB until a
+	 * transaction changes the balance
+	 */
+	@Test
+	void testRetrieveBalanceSnapshotServedUntilBalanceChanges() {
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "snapshotTtlMs", 60000L);
+		when(balanceRepository.findById(ACCOUNT_ID)).thenReturn(
+				Optional.of(BalanceT.builder().accountId(ACCOUNT_ID).amount(new BigDecimal("100")).build()),
+				Optional.of(BalanceT.builder().accountId(ACCOUNT_ID).amount(new BigDecimal("350.52")).build()));
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(1);
+
+		// when
+		BalanceSnapshot first = bankAccountServiceImpl.retrieveBalanceSnapshot();
+		BalanceSnapshot cached = bankAccountServiceImpl.retrieveBalanceSnapshot();
+		bankAccountServiceImpl.processTransaction(
+				Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build());
+		BalanceSnapshot changed = bankAccountServiceImpl.retrieveBalanceSnapshot();
+
+		// then
+		assertSame(first, cached);
+		assertEquals(350.52, changed.getBalance(), 0.001);
+		assertNotEquals(first.getEtag(), changed.getEtag());
+		verify(balanceRepository, times(2)).findById(ACCOUNT_ID);
+	}
+
+	/**
+	 * Verifies that in striped mode the delta goes to the slot picked by the
+	 * transaction Id and the balance row is not touched
+	 */
+	@Test
+	void testProcessTransactionInStripedMode() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "stripeCount", 4);
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+		int slot = Math.floorMod("CRE123".hashCode(), 4);
+		String slotId = ACCOUNT_ID + "#" + slot;
+
+		when(balanceSlotRepository.incrementAmount(slotId, new BigDecimal("250.52"))).thenReturn(0);
+
+		// when
+		bankAccountServiceImpl.processTransaction(trans);
+
+		// then
+		verify(balanceSlotRepository, times(1)).upsertAmount(slotId, ACCOUNT_ID, slot, new BigDecimal("250.52"));
+		verify(balanceRepository, never()).incrementAmount(any(), any());
+		verify(transactionRepository, times(1)).save(any());
+	}
+
+	/**
+	 * Verifies that in striped mode the balance is the sum of the balance row and
+	 * its slots
+	 */
+	@Test
+	void testRetrieveBalanceInStripedMode() {
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "stripeCount", 4);
+		when(balanceSlotRepository.sumTotalAmount(ACCOUNT_ID)).thenReturn(Optional.of(new BigDecimal("350.25")));
+		// when
+		double balance = bankAccountServiceImpl.retrieveBalance();
+		// then
+		assertEquals(350.25, balance, 0.001);
+		verify(balanceRepository, never()).findById(any());
+	}
+
+	/**
+	 * Verifies the derived balance is the latest checkpoint plus the transactions
+	 * ingested after it
+	 */
+	@Test
+	void testDeriveBalanceFromCheckpointAndTail() {
+		// given
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(ACCOUNT_ID))
+				.thenReturn(Optional.of(BalanceCheckpointT.builder().accountId(ACCOUNT_ID).throughSeq(10000)
+						.amount(new BigDecimal("1000000.50")).build()));
+		when(transactionRepository.sumTail(ACCOUNT_ID, 10000, Long.MAX_VALUE))
+				.thenReturn(tail(3, new BigDecimal("-250.25")));
+		// when
+		BigDecimal balance = bankAccountServiceImpl.deriveBalance(ACCOUNT_ID);
+		// then
+		assertEquals(new BigDecimal("999750.25"), balance);
+	}
+
+	/**
+	 * Verifies the derived balance is the sum of all transactions before the
+	 * first checkpoint
+	 */
+	@Test
+	void testDeriveBalanceWithoutCheckpoint() {
+		// given
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(ACCOUNT_ID))
+				.thenReturn(Optional.empty());
+		when(transactionRepository.sumTail(ACCOUNT_ID, 0, Long.MAX_VALUE)).thenReturn(tail(2, new BigDecimal("450.52")));
+		// when
+		BigDecimal balance = bankAccountServiceImpl.deriveBalance(ACCOUNT_ID);
+		// then
+		assertEquals(new BigDecimal("450.52"), balance);
+	}
+
+	/**
+	 * Verifies a reconciled balance warms the snapshot, so the first read does
+	 * not go to the DB again, and a mismatch is counted
+	 */
+	@Test
+	void testReconcileBalances() {
+		// given
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		BankAccountServiceImpl service = new BankAccountServiceImpl(balanceRepository, balanceSlotRepository,
+				balanceCheckpointRepository, transactionRepository, transactionManager, meterRegistry,
+				balanceBroadcaster, idempotencyGuard);
+		ReflectionTestUtils.setField(service, "snapshotTtlMs", 60000L);
+		when(balanceSlotRepository.findAccountIds()).thenReturn(List.of(ACCOUNT_ID, "ACC2"));
+		when(balanceCheckpointRepository.findFirstByAccountIdOrderByThroughSeqDesc(any()))
+				.thenReturn(Optional.empty());
+		when(transactionRepository.sumTail(ACCOUNT_ID, 0, Long.MAX_VALUE)).thenReturn(tail(1, new BigDecimal("100")));
+		when(transactionRepository.sumTail("ACC2", 0, Long.MAX_VALUE)).thenReturn(tail(1, new BigDecimal("200")));
+		when(balanceRepository.findById(ACCOUNT_ID)).thenReturn(
+				Optional.of(BalanceT.builder().accountId(ACCOUNT_ID).amount(new BigDecimal("100.00")).build()));
+		when(balanceRepository.findById("ACC2"))
+				.thenReturn(Optional.of(BalanceT.builder().accountId("ACC2").amount(new BigDecimal("150")).build()));
+
+		// when
+		service.reconcileBalances();
+		double balance = service.retrieveBalance();
+
+		// then
+		assertEquals(100.0, balance, 0.001);
+		verify(balanceRepository, times(1)).findById(ACCOUNT_ID);
+		assertEquals(1.0, meterRegistry.counter("balance.reconciliation.mismatch").count());
+	}
+
+	/**
+	 * Verifies a transaction Id the guard knows as applied is acknowledged without
+	 * any DB work
+	 */
+	@Test
+	void testProcessTransactionWithReplayedId() {
+		// given
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+		when(idempotencyGuard.isDuplicate(eq("CRE123"), any())).thenReturn(true);
+		// when
+		boolean applied = bankAccountServiceImpl.processTransaction(trans);
+		// then
+		assertFalse(applied);
+		verify(balanceRepository, never()).incrementAmount(any(), any());
+		verify(transactionRepository, never()).save(any());
+		verify(idempotencyGuard, never()).record(any());
+	}
+
+	/**
+	 * Verifies a replay that gets past the guard and fails on the primary key is
+	 * acknowledged once the transaction is found, and recorded in the guard
+	 */
+	@Test
+	void testProcessTransactionWithReplayFailingOnPrimaryKey() {
+		// given
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(1);
+		when(transactionRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+		when(transactionRepository.existsById("CRE123")).thenReturn(true);
+		// when
+		boolean applied = bankAccountServiceImpl.processTransaction(trans);
+		// then
+		assertFalse(applied);
+		verify(idempotencyGuard, times(1)).record("CRE123");
+	}
+
+	/**
+	 * Verifies a constraint violation of a transaction that is not stored is
+	 * rethrown
+	 */
+	@Test
+	void testProcessTransactionWithOtherConstraintViolation() {
+		// given
+		Transaction trans = Transaction.builder().transactionId("CRE123").amount(new BigDecimal("250.52")).build();
+		when(balanceRepository.incrementAmount(ACCOUNT_ID, new BigDecimal("250.52"))).thenReturn(1);
+		when(transactionRepository.save(any())).thenThrow(new DataIntegrityViolationException("not null"));
+		when(transactionRepository.existsById("CRE123")).thenReturn(false);
+		// when, then
+		assertThrows(DataIntegrityViolationException.class, () -> bankAccountServiceImpl.processTransaction(trans));
+		verify(idempotencyGuard, never()).record(any());
+	}
+
+	private static BalanceTail tail(long count, BigDecimal amount) {
+		return new BalanceTail() {
+
+			@Override
+			public long getCount() {
+				return count;
+			}
+
+			@Override
+			public BigDecimal getAmount() {
+				return amount;
+			}
+		};
+	}
+
 }
@@ -1,24 +1,39 @@
 package com.bankaccount.balancetracker.service.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.bankaccount.balancetracker.dto.SubmissionResult;
 import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
 import com.bankaccount.balancetracker.service.AuditSubmissionService;
+import com.bankaccount.balancetracker.service.BankAccountService;
+import com.bankaccount.balancetracker.service.helper.AuditBuffer.Backpressure;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
 
 /**
  * Test class to test BankAccountService implementation with in memory logic
@@ -32,9 +47,24 @@ class InMemoryBankAccountServiceImplTest {
 	@Mock
 	private AuditSubmissionService auditSubmissionService;
 
+	@Mock
+	private BalanceBroadcaster balanceBroadcaster;
+
 	@BeforeEach
 	void setup() {
 		ReflectionTestUtils.setField(bankAccountServiceImpl, "transactionLimit", 5);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "bufferCapacity", 10);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "backpressure", Backpressure.BLOCK);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "blockTimeoutMs", 50L);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "retryMs", 10L);
+		lenient().when(auditSubmissionService.submitAsync(anyList()))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult()));
+		bankAccountServiceImpl.startAuditDrainer();
+	}
+
+	@AfterEach
+	void tearDown() {
+		bankAccountServiceImpl.stopAuditDrainer();
 	}
 
 	/**
@@ -53,7 +83,8 @@ class InMemoryBankAccountServiceImplTest {
 		// then
 		double balance = bankAccountServiceImpl.retrieveBalance();
 		assertEquals(250.52, balance, 0.001);
-		verify(auditSubmissionService, never()).submit(anyList());
+		verify(auditSubmissionService, never()).submitAsync(anyList());
+		verify(balanceBroadcaster).balanceChanged(BankAccountService.DEFAULT_ACCOUNT_ID);
 
 	}
 
@@ -73,7 +104,7 @@ class InMemoryBankAccountServiceImplTest {
 		// then
 		double balance = bankAccountServiceImpl.retrieveBalance();
 		assertEquals(-250.52, balance, 0.001);
-		verify(auditSubmissionService, never()).submit(anyList());
+		verify(auditSubmissionService, never()).submitAsync(anyList());
 
 	}
 
@@ -95,7 +126,29 @@ class InMemoryBankAccountServiceImplTest {
 		// then
 		double balance = bankAccountServiceImpl.retrieveBalance();
 		assertEquals(299.37, balance, 0.001);
-		verify(auditSubmissionService, times(1)).submit(transactions);
+		verify(auditSubmissionService, timeout(1000).times(1)).submitAsync(transactions);
+
+	}
+
+	/**
+	 * Verifies a batch updates the balance and triggers the audit submission once
+	 * the transaction limit is reached
+	 */
+	@Test
+	void testProcessTransactionsAtMaxLimit() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250")),
+				new Transaction("CRE124", new BigDecimal("250")), new Transaction("DEB125", new BigDecimal("-300")),
+				new Transaction("CRE126", new BigDecimal("200")), new Transaction("DEB127", new BigDecimal("-100.63")));
+
+		// when
+		bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		double balance = bankAccountServiceImpl.retrieveBalance();
+		assertEquals(299.37, balance, 0.001);
+		verify(auditSubmissionService, timeout(1000).times(1)).submitAsync(transactions);
 
 	}
 
@@ -110,4 +163,198 @@ class InMemoryBankAccountServiceImplTest {
 		assertEquals(0.0, balance, 0.001);
 	}
 
+	/**
+	 * Verifies each account keeps its own balance and accounts share the audit
+	 * queue by default
+	 */
+	@Test
+	void testProcessTransactionsAcrossAccountsWithSharedQueue() {
+
+		// given
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250"), "ACC1"),
+				new Transaction("CRE124", new BigDecimal("100"), "ACC2"),
+				new Transaction("DEB125", new BigDecimal("-50"), "ACC1"),
+				new Transaction("CRE126", new BigDecimal("200"), "ACC2"),
+				new Transaction("CRE127", new BigDecimal("10"), "ACC1"));
+
+		// when
+		bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		assertEquals(210.0, bankAccountServiceImpl.retrieveBalance("ACC1"), 0.001);
+		assertEquals(300.0, bankAccountServiceImpl.retrieveBalance("ACC2"), 0.001);
+		assertEquals(0.0, bankAccountServiceImpl.retrieveBalance(), 0.001);
+		verify(auditSubmissionService, timeout(1000).times(1)).submitAsync(anyList());
+
+	}
+
+	/**
+	 * Verifies the audit limit is counted per account when queues are per account
+	 */
+	@Test
+	void testProcessTransactionsWithQueuePerAccount() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "queuePerAccount", true);
+		List<Transaction> transactions = List.of(new Transaction("CRE123", new BigDecimal("250"), "ACC1"),
+				new Transaction("CRE124", new BigDecimal("100"), "ACC2"),
+				new Transaction("DEB125", new BigDecimal("-50"), "ACC1"),
+				new Transaction("CRE126", new BigDecimal("200"), "ACC2"),
+				new Transaction("CRE127", new BigDecimal("10"), "ACC1"));
+
+		// when
+		bankAccountServiceImpl.processTransactions(transactions);
+
+		// then
+		assertEquals(210.0, bankAccountServiceImpl.retrieveBalance("ACC1"), 0.001);
+		assertEquals(300.0, bankAccountServiceImpl.retrieveBalance("ACC2"), 0.001);
+		verify(auditSubmissionService, never()).submitAsync(anyList());
+
+	}
+
+	/**
+	 * Verifies a transaction with fractional pence is rejected and the balance is
+	 * unchanged
+	 */
+	@Test
+	void testProcessTransactionWithFractionalPence() {
+
+		// given
+		Transaction trans = new Transaction("CRE123", new BigDecimal("250.525"));
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> bankAccountServiceImpl.processTransaction(trans));
+
+		// then
+		assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+		assertEquals(0.0, bankAccountServiceImpl.retrieveBalance(), 0.001);
+		verify(auditSubmissionService, never()).submitAsync(anyList());
+	}
+
+	/**
+	 * Verifies a transaction is rejected with 503 and the balance reverted when
+	 * the audit buffer is full
+	 */
+	@Test
+	void testProcessTransactionWithFullBufferRejected() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "transactionLimit", 100);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "backpressure", Backpressure.REJECT);
+		for (int i = 0; i < 10; i++) {
+			bankAccountServiceImpl.processTransaction(new Transaction("CRE" + i, new BigDecimal("250")));
+		}
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> bankAccountServiceImpl.processTransaction(new Transaction("CRE10", new BigDecimal("250"))));
+
+		// then
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals(2500.0, bankAccountServiceImpl.retrieveBalance(), 0.001);
+	}
+
+	/**
+	 * Verifies a batch across accounts that does not fit the shared buffer is
+	 * rejected without updating any balance
+	 */
+	@Test
+	void testProcessTransactionsWithFullBufferRejectedAcrossAccounts() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "transactionLimit", 100);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "backpressure", Backpressure.REJECT);
+		for (int i = 0; i < 8; i++) {
+			bankAccountServiceImpl.processTransaction(new Transaction("CRE" + i, new BigDecimal("10"), "ACC3"));
+		}
+		List<Transaction> batch = List.of(new Transaction("CRE8", new BigDecimal("100"), "ACC1"),
+				new Transaction("CRE9", new BigDecimal("200"), "ACC2"),
+				new Transaction("CRE10", new BigDecimal("300"), "ACC2"));
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> bankAccountServiceImpl.processTransactions(batch));
+
+		// then
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals(0.0, bankAccountServiceImpl.retrieveBalance("ACC1"), 0.001);
+		assertEquals(0.0, bankAccountServiceImpl.retrieveBalance("ACC2"), 0.001);
+	}
+
+	/**
+	 * Verifies a batch is rejected without updating any balance when one of the
+	 * per account buffers is full
+	 */
+	@Test
+	void testProcessTransactionsWithFullAccountBufferRejected() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "queuePerAccount", true);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "transactionLimit", 100);
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "backpressure", Backpressure.REJECT);
+		for (int i = 0; i < 10; i++) {
+			bankAccountServiceImpl.processTransaction(new Transaction("CRE" + i, new BigDecimal("10"), "ACC2"));
+		}
+		List<Transaction> batch = List.of(new Transaction("CRE10", new BigDecimal("100"), "ACC1"),
+				new Transaction("CRE11", new BigDecimal("200"), "ACC2"));
+
+		// when
+		BalanceTrackerException ex = assertThrows(BalanceTrackerException.class,
+				() -> bankAccountServiceImpl.processTransactions(batch));
+		bankAccountServiceImpl.processTransactions(List.of(new Transaction("CRE12", new BigDecimal("100"), "ACC1")));
+
+		// then
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals(100.0, bankAccountServiceImpl.retrieveBalance("ACC1"), 0.001);
+		assertEquals(100.0, bankAccountServiceImpl.retrieveBalance("ACC2"), 0.001);
+	}
+
+	/**
+	 * Verifies a blocked producer proceeds once the drainer frees space
+	 */
+	@Test
+	void testProcessTransactionWithFullBufferBlocksUntilDrained() {
+
+		// given
+		ReflectionTestUtils.setField(bankAccountServiceImpl, "blockTimeoutMs", 1000L);
+		doAnswer(invocation -> {
+			Thread.sleep(100);
+			return CompletableFuture.completedFuture(new SubmissionResult());
+		}).when(auditSubmissionService).submitAsync(anyList());
+
+		// when
+		for (int i = 0; i < 15; i++) {
+			bankAccountServiceImpl.processTransaction(new Transaction("CRE" + i, new BigDecimal("250")));
+		}
+
+		// then
+		assertEquals(3750.0, bankAccountServiceImpl.retrieveBalance(), 0.001);
+		verify(auditSubmissionService, timeout(1000).times(3)).submitAsync(anyList());
+	}
+
+	/**
+	 * Verifies drained transactions are submitted again when the audit submission
+	 * fails, instead of being dropped
+	 */
+	@Test
+	void testProcessTransactionRetriesFailedSubmission() {
+
+		// given
+		when(auditSubmissionService.submitAsync(anyList()))
+				.thenReturn(CompletableFuture.failedFuture(new IOException("journal unavailable")))
+				.thenThrow(new BalanceTrackerException("Audit submission is saturated", HttpStatus.SERVICE_UNAVAILABLE))
+				.thenReturn(CompletableFuture.completedFuture(new SubmissionResult()));
+		List<Transaction> transactions = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Transaction transaction = new Transaction("CRE" + i, new BigDecimal("250"));
+			transactions.add(transaction);
+			bankAccountServiceImpl.processTransaction(transaction);
+		}
+
+		// then
+		verify(auditSubmissionService, timeout(1000).times(3)).submitAsync(transactions);
+		verify(auditSubmissionService, times(3)).submitAsync(anyList());
+	}
+
 }
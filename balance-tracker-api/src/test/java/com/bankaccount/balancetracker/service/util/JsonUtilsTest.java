@@ -3,12 +3,18 @@ package com.bankaccount.balancetracker.service.util;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.bankaccount.balancetracker.dto.Batch;
+import com.bankaccount.balancetracker.dto.Submission;
 import com.bankaccount.balancetracker.dto.Transaction;
 
 /**
@@ -50,4 +56,28 @@ class JsonUtilsTest {
 
 	}
 
+	/**
+	 * Verifies a submission is streamed as compact JSON wrapped in its root name,
+	 * the same as toJson, leaving the output open
+	 */
+	@Test
+	void testWriteJsonStreamsCompactSubmission() throws IOException {
+
+		// given
+		Submission submission = new Submission("S1",
+				List.of(new Batch(new BigDecimal("999765.98"), 3), new Batch(new BigDecimal("250.52"), 1)));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// when
+		JsonUtils.writeJson(submission, out);
+		out.write('\n');
+
+		// then
+		String json = out.toString(StandardCharsets.UTF_8);
+		assertEquals("{\"submission\":{\"submissionId\":\"S1\",\"batches\":[{\"totalValueOfAllTransactions\":999765.98,\"countOfTransactions\":3},"
+				+ "{\"totalValueOfAllTransactions\":250.52,\"countOfTransactions\":1}]}}\n", json);
+		assertEquals(JsonUtils.toJson(submission) + "\n", json);
+
+	}
+
 }
@@ -0,0 +1,79 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+
+/**
+ * Transaction amount distributions used as benchmark inputs, all within the
+ * £200 to £500,000 range the API accepts and generated from a fixed seed so
+ * runs are comparable across releases.
+ */
+public enum AmountDistribution {
+
+	/**
+	 * Uniform over the whole accepted range
+	 */
+	UNIFORM {
+		@Override
+		long pence(Random random) {
+			return MIN_PENCE + (long) (random.nextDouble() * (MAX_PENCE - MIN_PENCE));
+		}
+	},
+	/**
+	 * Retail sized payments between £200 and £1,000
+	 */
+	SMALL {
+		@Override
+		long pence(Random random) {
+			return MIN_PENCE + (long) (random.nextDouble() * 80_000);
+		}
+	},
+	/**
+	 * Mostly small payments with one in a hundred near the maximum
+	 */
+	HEAVY_TAIL {
+		@Override
+		long pence(Random random) {
+			return random.nextInt(100) == 0 ? MAX_PENCE - (long) (random.nextDouble() * 5_000_000)
+					: SMALL.pence(random);
+		}
+	},
+	/**
+	 * Amounts just either side of half the £1,000,000 batch limit, where two
+	 * rarely fit together
+	 */
+	NEAR_HALF {
+		@Override
+		long pence(Random random) {
+			return 48_000_000 + (long) (random.nextDouble() * 2_000_000);
+		}
+	};
+
+	private static final long MIN_PENCE = 20_000;
+	private static final long MAX_PENCE = 50_000_000;
+
+	abstract long pence(Random random);
+
+	/**
+	 * Credit and debit transactions with amounts from this distribution
+	 *
+	 * @param size number of transactions
+	 * @return transactions with CRE or DEB prefixed Ids matching the amount sign
+	 */
+	public List<Transaction> transactions(int size) {
+		Random random = new Random(42);
+		List<Transaction> transactions = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			long pence = pence(random);
+			boolean isCredit = random.nextBoolean();
+			transactions.add(new Transaction((isCredit ? "CRE" : "DEB") + i,
+					BigDecimal.valueOf(isCredit ? pence : -pence, 2)));
+		}
+		return transactions;
+	}
+
+}
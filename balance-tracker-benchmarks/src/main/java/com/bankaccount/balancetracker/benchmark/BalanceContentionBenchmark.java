@@ -0,0 +1,58 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bankaccount.balancetracker.service.helper.PenceBalance;
+
+/**
+ * Contention benchmark of a single account balance, all threads crediting the
+ * same balance. Compares the previous {@code AtomicReference<BigDecimal>}
+ * update loop with the striped fixed point {@link PenceBalance}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class BalanceContentionBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("250.52");
+	private static final long AMOUNT_PENCE = 25052;
+
+	private AtomicReference<BigDecimal> bigDecimalBalance;
+	private PenceBalance penceBalance;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		bigDecimalBalance = new AtomicReference<>(BigDecimal.ZERO);
+		penceBalance = new PenceBalance();
+	}
+
+	@Benchmark
+	public BigDecimal atomicReferenceBigDecimal() {
+		return bigDecimalBalance.updateAndGet(balance -> balance.add(AMOUNT));
+	}
+
+	@Benchmark
+	public void penceBalance() {
+		penceBalance.add(AMOUNT_PENCE);
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bankaccount.balancetracker.dto.Batch;
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.service.helper.AuditSystemBatchBuilder;
+
+/**
+ * Scaling benchmark of the First Fit Decreasing batch builder with the
+ * remaining capacity tree, amounts uniform between £200 and £500,000 against a
+ * £1,000,000 batch limit. The linear scan it replaced is measured up to 10k
+ * transactions only, past that it takes minutes per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BatchBuilderScalingBenchmark {
+
+	private static final BigDecimal MAX_AMOUNT_PER_BATCH = new BigDecimal("1000000");
+	private static final AuditSystemBatchBuilder BATCH_BUILDER = new AuditSystemBatchBuilder();
+
+	@State(Scope.Benchmark)
+	public static class TreeInput {
+
+		@Param({ "1000", "10000", "100000", "1000000" })
+		int size;
+
+		List<Transaction> transactions;
+
+		@Setup
+		public void setup() {
+			transactions = AmountDistribution.UNIFORM.transactions(size);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class LinearInput {
+
+		@Param({ "1000", "10000" })
+		int size;
+
+		List<Transaction> transactions;
+
+		@Setup
+		public void setup() {
+			transactions = AmountDistribution.UNIFORM.transactions(size);
+		}
+	}
+
+	@Benchmark
+	public List<Batch> capacityTree(TreeInput input) {
+		return BATCH_BUILDER.buildBatches(input.transactions, MAX_AMOUNT_PER_BATCH);
+	}
+
+	@Benchmark
+	public List<Batch> linearScan(LinearInput input) {
+		List<Batch> batches = new ArrayList<>();
+		List<BigDecimal> sortedAmounts = input.transactions.stream().map(t -> t.getAmount().abs())
+				.sorted((a, b) -> b.compareTo(a)).toList();
+		for (BigDecimal amount : sortedAmounts) {
+			boolean isPlaced = false;
+			for (Batch batch : batches) {
+				if (batch.getTotalValueOfAllTransactions().add(amount).compareTo(MAX_AMOUNT_PER_BATCH) <= 0) {
+					batch.addTransaction(amount);
+					isPlaced = true;
+					break;
+				}
+			}
+			if (!isPlaced) {
+				batches.add(new Batch(amount, 1));
+			}
+		}
+		return batches;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line, sweeping
+ * {@link ProcessTransactionBenchmark} over 1 to 64 threads, and writes every
+ * result to one JSON file ({@code -rff}, by default
+ * {@code target/jmh-result.json}) to compare across releases. Other JMH
+ * options such as {@code -wi} or {@code -f} are passed through.
+ */
+public class BenchmarkRunner {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+	private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		String processTransaction = ProcessTransactionBenchmark.class.getName();
+
+		List<RunResult> results = new ArrayList<>();
+		results.addAll(run(options(commandLine).exclude(Pattern.quote(processTransaction))));
+		if (isIncluded(commandLine, processTransaction)) {
+			// Includes add up with the command line ones, so everything else is excluded instead
+			String otherBenchmarks = "^(?!" + Pattern.quote(processTransaction) + ")";
+			for (int threads : THREADS) {
+				results.addAll(run(options(commandLine).exclude(otherBenchmarks).threads(threads)));
+			}
+		}
+
+		String resultFile = commandLine.getResult().orElse(DEFAULT_RESULT_FILE);
+		ResultFormatFactory.getInstance(ResultFormatType.JSON, resultFile).writeOut(results);
+		System.out.println("Wrote " + results.size() + " benchmark results to " + resultFile);
+	}
+
+	private static ChainedOptionsBuilder options(CommandLineOptions commandLine) {
+		return new OptionsBuilder().parent(commandLine);
+	}
+
+	private static Collection<RunResult> run(ChainedOptionsBuilder options) throws RunnerException {
+		try {
+			return new Runner(options.build()).run();
+		} catch (NoBenchmarksException e) {
+			return List.of();
+		}
+	}
+
+	private static boolean isIncluded(CommandLineOptions commandLine, String benchmark) {
+		List<String> includes = commandLine.getIncludes();
+		boolean included = includes.isEmpty()
+				|| includes.stream().anyMatch(include -> Pattern.compile(include).matcher(benchmark).find());
+		return included && commandLine.getExcludes().stream()
+				.noneMatch(exclude -> Pattern.compile(exclude).matcher(benchmark).find());
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bankaccount.balancetracker.dto.Batch;
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.service.helper.AuditSystemBatchBuilder;
+import com.bankaccount.balancetracker.service.helper.PackingStrategyType;
+
+/**
+ * Audit batch building across input sizes, amount distributions and packing
+ * strategies against the £1,000,000 batch limit. The exact strategy is left
+ * out, above its transaction cap it falls back to First Fit Decreasing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildBatchesBenchmark {
+
+	private static final BigDecimal MAX_AMOUNT_PER_BATCH = new BigDecimal("1000000");
+
+	@Param({ "100", "1000", "10000" })
+	int size;
+
+	@Param({ "UNIFORM", "SMALL", "HEAVY_TAIL", "NEAR_HALF" })
+	AmountDistribution distribution;
+
+	@Param({ "FFD", "BFD", "NEXT_FIT" })
+	PackingStrategyType strategy;
+
+	private final AuditSystemBatchBuilder batchBuilder = new AuditSystemBatchBuilder();
+	private List<Transaction> transactions;
+
+	@Setup
+	public void setup() {
+		transactions = distribution.transactions(size);
+	}
+
+	@Benchmark
+	public List<Batch> buildBatches() {
+		return batchBuilder.buildBatches(transactions, MAX_AMOUNT_PER_BATCH, strategy);
+	}
+
+}
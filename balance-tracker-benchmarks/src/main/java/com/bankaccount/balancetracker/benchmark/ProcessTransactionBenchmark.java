@@ -0,0 +1,124 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import com.bankaccount.balancetracker.dto.SubmissionResult;
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.service.AuditSubmissionService;
+import com.bankaccount.balancetracker.service.helper.AuditBuffer.Backpressure;
+import com.bankaccount.balancetracker.service.helper.BalanceBroadcaster;
+import com.bankaccount.balancetracker.service.impl.InMemoryBankAccountServiceImpl;
+
+/**
+ * Throughput of {@link InMemoryBankAccountServiceImpl#processTransaction}
+ * with the audit drainer running and an audit submission that does nothing,
+ * so only the balance update and the audit buffer are measured. Producers
+ * block on a full buffer rather than fail, so once the drainer falls behind the
+ * score is the drainer throughput. Run it through {@link BenchmarkRunner} for
+ * the 1 to 64 thread sweep, or with {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessTransactionBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Service {
+
+		/**
+		 * Accounts the threads spread over, 1 for all threads on one balance
+		 */
+		@Param({ "1", "64" })
+		int accounts;
+
+		InMemoryBankAccountServiceImpl bankAccountService;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			bankAccountService = new InMemoryBankAccountServiceImpl(new NoOpAuditSubmissionService(),
+					new BalanceBroadcaster());
+			setField("transactionLimit", 1000);
+			setField("bufferCapacity", 10000);
+			setField("backpressure", Backpressure.BLOCK);
+			setField("blockTimeoutMs", 60_000L);
+			bankAccountService.startAuditDrainer();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			bankAccountService.stopAuditDrainer();
+		}
+
+		private void setField(String name, Object value) {
+			Field field = ReflectionUtils.findField(InMemoryBankAccountServiceImpl.class, name);
+			ReflectionUtils.makeAccessible(field);
+			ReflectionUtils.setField(field, bankAccountService, value);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Transactions {
+
+		private static final int SIZE = 1024;
+
+		private final Transaction[] transactions = new Transaction[SIZE];
+		private int next;
+
+		@Setup(Level.Trial)
+		public void setup(Service service) {
+			String accountId = "ACC" + (int) (Thread.currentThread().getId() % service.accounts);
+			List<Transaction> generated = AmountDistribution.SMALL.transactions(SIZE);
+			for (int i = 0; i < SIZE; i++) {
+				Transaction transaction = generated.get(i);
+				transactions[i] = new Transaction(transaction.getTransactionId(), transaction.getAmount(),
+						accountId);
+			}
+		}
+
+		Transaction next() {
+			return transactions[next++ & (SIZE - 1)];
+		}
+	}
+
+	@Benchmark
+	public void processTransaction(Service service, Transactions transactions) {
+		service.bankAccountService.processTransaction(transactions.next());
+	}
+
+	/**
+	 * Audit submission that completes straight away without building a
+	 * submission
+	 */
+	static class NoOpAuditSubmissionService implements AuditSubmissionService {
+
+		@Override
+		public void submit(List<Transaction> transactions) {
+		}
+
+		@Override
+		public CompletableFuture<SubmissionResult> submitAsync(String submissionId, List<Transaction> transactions) {
+			return CompletableFuture.completedFuture(new SubmissionResult(transactions.size(), 0));
+		}
+	}
+
+}
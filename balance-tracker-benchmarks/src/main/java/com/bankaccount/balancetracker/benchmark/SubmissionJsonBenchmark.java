@@ -0,0 +1,63 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bankaccount.balancetracker.dto.Submission;
+import com.bankaccount.balancetracker.service.helper.AuditSystemBatchBuilder;
+import com.bankaccount.balancetracker.service.util.JsonUtils;
+
+/**
+ * Serialisation of audit submissions, to a String and streamed to an output,
+ * built from one transaction limit of 1,000 transactions. The distribution
+ * decides how many batches the submission holds: about 1 for small amounts,
+ * 250 for uniform and 1,000 near half the batch limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubmissionJsonBenchmark {
+
+	private static final int TRANSACTION_LIMIT = 1000;
+	private static final BigDecimal MAX_AMOUNT_PER_BATCH = new BigDecimal("1000000");
+
+	@Param({ "SMALL", "UNIFORM", "NEAR_HALF" })
+	AmountDistribution distribution;
+
+	private Submission submission;
+
+	@Setup
+	public void setup() {
+		submission = new Submission(UUID.randomUUID().toString(), new AuditSystemBatchBuilder()
+				.buildBatches(distribution.transactions(TRANSACTION_LIMIT), MAX_AMOUNT_PER_BATCH));
+	}
+
+	@Benchmark
+	public String toJson() {
+		return JsonUtils.toJson(submission);
+	}
+
+	@Benchmark
+	public void writeJson() throws IOException {
+		JsonUtils.writeJson(submission, OutputStream.nullOutputStream());
+	}
+
+}
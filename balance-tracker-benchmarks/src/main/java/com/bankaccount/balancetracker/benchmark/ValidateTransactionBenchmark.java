@@ -0,0 +1,59 @@
+package com.bankaccount.balancetracker.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bankaccount.balancetracker.dto.Transaction;
+import com.bankaccount.balancetracker.exception.BalanceTrackerException;
+import com.bankaccount.balancetracker.service.helper.TransactionValidator;
+
+/**
+ * Amount and sign validation of {@link TransactionValidator} for a valid
+ * credit, a valid debit and a rejected debit, the rejection paying for the
+ * exception.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidateTransactionBenchmark {
+
+	private final Transaction credit = new Transaction("CRE1", new BigDecimal("250.52"));
+	private final Transaction debit = new Transaction("DEB1", new BigDecimal("-250.52"));
+	private final Transaction positiveDebit = new Transaction("DEB2", new BigDecimal("250.52"));
+	private final TransactionValidator validator = new TransactionValidator(new BigDecimal("200"),
+			new BigDecimal("500000"));
+
+	@Benchmark
+	public void validCredit() {
+		validator.validate(credit);
+	}
+
+	@Benchmark
+	public void validDebit() {
+		validator.validate(debit);
+	}
+
+	@Benchmark
+	public String rejectedDebit() {
+		try {
+			validator.validate(positiveDebit);
+			return null;
+		} catch (BalanceTrackerException e) {
+			return e.getMessage();
+		}
+	}
+
+}
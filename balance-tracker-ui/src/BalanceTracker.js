@@ -1,22 +1,39 @@
 import React, { useState, useEffect } from 'react';
-import axios from 'axios';
+
+const MIN_RETRY_MS = 1000;
+const MAX_RETRY_MS = 30000;
 
 function BalanceTracker() {
     const [balance, setBalance] = useState(null);
     const [error, setError] = useState(null);
     useEffect(() => {
-        const fetchBalance = () => {
-            axios.get('/api/bankaccount/v1/balance').then((response) => {
-                setBalance(response.data.balance);
+        // the API pushes the balance as it changes; EventSource reconnects on its own
+        // after a dropped stream, but gives up after a non-200 response such as the
+        // 503 over the subscriber cap, so a closed stream is reopened here with backoff
+        let source;
+        let retryTimer;
+        let retryMs = MIN_RETRY_MS;
+        const connect = () => {
+            source = new EventSource('/api/bankaccount/v1/balance/stream');
+            source.addEventListener('balance', (event) => {
+                setBalance(JSON.parse(event.data).balance);
                 setError(null);
-            })
-                .catch((error) => {
-                    setError(error.message);
-                })
+                retryMs = MIN_RETRY_MS;
+            });
+            source.onerror = () => {
+                setError('Balance stream disconnected, reconnecting');
+                if (source.readyState === EventSource.CLOSED) {
+                    source.close();
+                    retryTimer = setTimeout(connect, retryMs);
+                    retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+                }
+            };
+        };
+        connect();
+        return () => {
+            clearTimeout(retryTimer);
+            source.close();
         };
-        fetchBalance(); // initial fetch
-        const interval = setInterval(fetchBalance, 3000); // refresh every 3 seconds
-        return () => clearInterval(interval);
     }, []);
 
     return (
@@ -33,4 +50,4 @@ function BalanceTracker() {
     )
 }
 
-export default BalanceTracker;
\ No newline at end of file
+export default BalanceTracker;
@@ -0,0 +1,139 @@
+package com.bankaccount.transactionproducer.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.bankaccount.transactionproducer.dto.Transaction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client class to invoke Balance Tracker APIs without blocking. A send returns
+ * as soon as the request is handed to the JDK HttpClient, and completes on the
+ * client threads when the response arrives, so one thread keeps many
+ * transactions in flight. Retries follow the blocking client: a 4xx is not
+ * retried, any other failure is retried after the retry delay, without holding
+ * a thread while waiting.
+ */
+@Component
+@Slf4j
+public class AsyncBalanceTrackerApiClient {
+
+	@Value("${msa.balance-tracker-api.url}")
+	private String baseUrl;
+
+	@Value("${msa.balance-tracker-api.path}")
+	private String path;
+
+	@Value("${msa.producer.client.retry-count}")
+	private int retryCount;
+
+	@Value("${msa.producer.client.retry-delay}")
+	private int retryDelayMs;
+
+	@Value("${msa.producer.client.http.read-timeout-ms:5000}")
+	private long readTimeoutMs = 5000;
+
+	private final HttpClient httpClient;
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Transactions endpoint, built once on the first send
+	 */
+	private URI endpoint;
+
+	public AsyncBalanceTrackerApiClient(HttpClient httpClient, ObjectMapper objectMapper) {
+		this.httpClient = httpClient;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Method to send the transaction to the balance tracker api without blocking.
+	 *
+	 * @param transaction credit/debit transaction
+	 * @return completed with true once the transaction is sent, false once it has
+	 *         failed for good, never exceptionally
+	 */
+	public CompletableFuture<Boolean> sendTransaction(Transaction transaction) {
+		log.debug("sendTransaction: entry: transaction Id {}", transaction.getTransactionId());
+
+		HttpRequest request;
+		try {
+			request = HttpRequest.newBuilder(endpoint()).timeout(Duration.ofMillis(readTimeoutMs))
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(transaction))).build();
+		} catch (JsonProcessingException e) {
+			log.error("Failed to serialize transaction Id: {}", transaction.getTransactionId(), e);
+			return CompletableFuture.completedFuture(false);
+		}
+		return send(request, transaction.getTransactionId(), 0);
+	}
+
+	/**
+	 * Send the request, retrying until the retry count is reached
+	 *
+	 * @param request       transaction request
+	 * @param transactionId transaction Id
+	 * @param attempts      failed attempts so far
+	 */
+	private CompletableFuture<Boolean> send(HttpRequest request, String transactionId, int attempts) {
+		return httpClient.sendAsync(request, BodyHandlers.ofString())
+				.handle((response, error) -> onResponse(request, transactionId, attempts, response, error))
+				.thenCompose(Function.identity());
+	}
+
+	private CompletableFuture<Boolean> onResponse(HttpRequest request, String transactionId, int attempts,
+			HttpResponse<String> response, Throwable error) {
+		int status = error == null ? response.statusCode() : 0;
+		if (error == null && status < 300) {
+			log.info("Sent transaction : {}", transactionId);
+			return CompletableFuture.completedFuture(true);
+		}
+		if (error == null && status < 500) {
+			log.warn("Client error while sending transaction: transactionId = {}: status = {}, body = {}",
+					transactionId, status, response.body());
+			return CompletableFuture.completedFuture(false); // No retry for 4xx error
+		}
+
+		int failedAttempts = attempts + 1;
+		log.warn("Attempt {} failed for transaction: transaction Id {} : {}", failedAttempts, transactionId,
+				error != null ? error.toString() : "status = " + status);
+		if (failedAttempts >= retryCount) {
+			log.error("Failed to send transaction after {} attempts for transaction Id: {}", failedAttempts,
+					transactionId);
+			return CompletableFuture.completedFuture(false);
+		}
+		// Backoff
+		return CompletableFuture
+				.runAsync(() -> log.debug("Retrying transaction Id {} after {} ms", transactionId, retryDelayMs),
+						CompletableFuture.delayedExecutor(retryDelayMs, TimeUnit.MILLISECONDS))
+				.thenCompose(ignored -> send(request, transactionId, failedAttempts));
+	}
+
+	/**
+	 * Transactions endpoint as a URI. Racing first sends build equal URIs.
+	 */
+	private URI endpoint() {
+		URI uri = endpoint;
+		if (uri == null) {
+			uri = URI.create(baseUrl + path);
+			endpoint = uri;
+		}
+		return uri;
+	}
+
+}
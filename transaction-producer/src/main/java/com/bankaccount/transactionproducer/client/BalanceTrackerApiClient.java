@@ -1,5 +1,7 @@
 package com.bankaccount.transactionproducer.client;
 
+import java.net.URI;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
@@ -31,6 +33,11 @@ public class BalanceTrackerApiClient {
 
 	private final RestTemplate restTemplate;
 
+	/**
+	 * Transactions endpoint, built once on the first send
+	 */
+	private URI endpoint;
+
 	public BalanceTrackerApiClient(RestTemplate restTemplate) {
 		this.restTemplate = restTemplate;
 
@@ -47,7 +54,7 @@ public class BalanceTrackerApiClient {
 		boolean isSent = false;
 		int attempts = 0;
 
-		String endpoint = baseUrl + path;
+		URI endpoint = endpoint();
 		log.debug("Sending transaction to endpoint: {}", endpoint);
 
 		// Retry mechanism to reduce failures
@@ -83,4 +90,17 @@ public class BalanceTrackerApiClient {
 
 	}
 
+	/**
+	 * Transactions endpoint as a URI, so the Rest Template does not parse and
+	 * expand a URI template on every send. Racing first sends build equal URIs.
+	 */
+	private URI endpoint() {
+		URI uri = endpoint;
+		if (uri == null) {
+			uri = URI.create(baseUrl + path);
+			endpoint = uri;
+		}
+		return uri;
+	}
+
 }
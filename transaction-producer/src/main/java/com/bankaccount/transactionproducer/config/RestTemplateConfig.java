@@ -1,18 +1,109 @@
 package com.bankaccount.transactionproducer.config;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+
 /**
- * Configuration class for Rest Template
+ * Configuration class for Rest Template. Requests go through a pool of
+ * keep-alive connections to the Balance Tracker API, so a send reuses an open
+ * connection instead of setting one up. The pool is exposed as the
+ * httpcomponents.httpclient.pool metrics. With h2c enabled, requests go
+ * instead through the JDK HttpClient over cleartext HTTP/2, multiplexed on a
+ * single connection, falling back to HTTP/1.1 when the server does not
+ * upgrade. The asynchronous sends always go through the JDK HttpClient. It
+ * keeps connections of its own, not bounded by max-connections and without
+ * pool metrics, so there the in-flight window is what bounds the connections.
  */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
 
+	/**
+	 * Name of the connection pool in the pool metrics
+	 */
+	static final String POOL_NAME = "balance-tracker-api";
+
+	@Value("${msa.producer.client.http.max-connections:20}")
+	private int maxConnections;
+
+	@Value("${msa.producer.client.http.connect-timeout-ms:1000}")
+	private long connectTimeoutMs;
+
+	@Value("${msa.producer.client.http.read-timeout-ms:5000}")
+	private long readTimeoutMs;
+
+	/**
+	 * Time an idle connection is kept for reuse, shorter than the keep-alive
+	 * timeout of the server so the pool does not reuse a connection the server is
+	 * closing
+	 */
+	@Value("${msa.producer.client.http.keep-alive-ms:15000}")
+	private long keepAliveMs;
+
+	@Value("${msa.producer.client.http.h2c:false}")
+	private boolean h2c;
+
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(ClientHttpRequestFactory clientHttpRequestFactory) {
+		return new RestTemplate(clientHttpRequestFactory);
+	}
+
+	/**
+	 * JDK HttpClient of the asynchronous sends, and of the Rest Template with h2c.
+	 * It keeps its own keep-alive connections, over HTTP/2 with h2c, opening one
+	 * per concurrent request over HTTP/1.1 whatever max-connections says.
+	 */
+	@Bean
+	public HttpClient httpClient() {
+		return HttpClient.newBuilder().version(h2c ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofMillis(connectTimeoutMs)).build();
+	}
+
+	@Bean
+	public ClientHttpRequestFactory clientHttpRequestFactory(MeterRegistry meterRegistry) {
+		if (h2c) {
+			log.info("Balance Tracker API client on HTTP/2 cleartext");
+			JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient());
+			requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+			return requestFactory;
+		}
+
+		PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnections)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+						.setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs)).build())
+				.build();
+		new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+
+		// Closed with the request factory when the context shuts down
+		CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(
+						RequestConfig.custom().setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs)).build())
+				.setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+				.evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs)).build();
+		log.info("Balance Tracker API client pooling up to {} keep-alive connections", maxConnections);
+		return new HttpComponentsClientHttpRequestFactory(httpClient);
 	}
 
 }
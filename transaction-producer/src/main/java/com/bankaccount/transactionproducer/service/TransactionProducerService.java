@@ -2,19 +2,27 @@ package com.bankaccount.transactionproducer.service;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import com.bankaccount.transactionproducer.client.AsyncBalanceTrackerApiClient;
 import com.bankaccount.transactionproducer.client.BalanceTrackerApiClient;
 import com.bankaccount.transactionproducer.exception.TransactionProducerException;
+import com.bankaccount.transactionproducer.task.AsyncProducerTask;
 import com.bankaccount.transactionproducer.task.ProducerTask;
+import com.bankaccount.transactionproducer.task.RatePacer;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Producer Service to execute the credit and debit transactions
+ * Producer Service to execute the credit and debit transactions. The thread
+ * pool is split evenly between credits and debits, and the workers of each
+ * share one pacer, so together they keep its rate. In async mode each worker
+ * sends without waiting for the responses, up to the in-flight window of its
+ * type.
  */
 @Service
 @Slf4j
@@ -22,6 +30,7 @@ public class TransactionProducerService {
 
 	private final TransactionGeneratorService transactionGeneratorService;
 	private final BalanceTrackerApiClient balanceTrackerApiClient;
+	private final AsyncBalanceTrackerApiClient asyncBalanceTrackerApiClient;
 	private boolean isRunning = false;
 
 	private ExecutorService executorService;
@@ -30,15 +39,34 @@ public class TransactionProducerService {
 	private int threadPoolCount;
 
 	@Value("${msa.producer.rate.credits-per-sec}")
-	private int creditsPerSec;
+	private double creditsPerSec;
 
 	@Value("${msa.producer.rate.debits-per-sec}")
-	private int debitsPerSec;
+	private double debitsPerSec;
+
+	/**
+	 * Max transactions of each type sent back-to-back ahead of the rate
+	 */
+	@Value("${msa.producer.rate.burst:1}")
+	private int burst = 1;
+
+	@Value("${msa.producer.rate.catch-up:FULL}")
+	private RatePacer.CatchUp catchUp = RatePacer.CatchUp.FULL;
+
+	@Value("${msa.producer.client.async.enabled:false}")
+	private boolean async;
+
+	/**
+	 * Max transactions of each type awaiting a response in async mode
+	 */
+	@Value("${msa.producer.client.async.in-flight:64}")
+	private int inFlight = 64;
 
 	public TransactionProducerService(TransactionGeneratorService transactionGeneratorService,
-			BalanceTrackerApiClient balanceTrackerApiClient) {
+			BalanceTrackerApiClient balanceTrackerApiClient, AsyncBalanceTrackerApiClient asyncBalanceTrackerApiClient) {
 		this.transactionGeneratorService = transactionGeneratorService;
 		this.balanceTrackerApiClient = balanceTrackerApiClient;
+		this.asyncBalanceTrackerApiClient = asyncBalanceTrackerApiClient;
 	}
 
 	/**
@@ -50,16 +78,63 @@ public class TransactionProducerService {
 			throw new TransactionProducerException("Producer is already running", HttpStatus.CONFLICT);
 		}
 
-		executorService = Executors.newFixedThreadPool(threadPoolCount);
-		// Credit Transactions Thread
-		executorService
-				.submit(new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, true, creditsPerSec));
-		// Debit Transactions Thread
-		executorService
-				.submit(new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, false, debitsPerSec));
+		// Pacers are built first, so an invalid rate fails before any worker runs
+		RatePacer creditPacer = ratePacer(creditsPerSec);
+		RatePacer debitPacer = ratePacer(debitsPerSec);
+		if (creditPacer == null && debitPacer == null) {
+			throw new TransactionProducerException("Credit and debit rates are both 0",
+					HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+
+		int workers = Math.max(1, threadPoolCount / 2);
+		executorService = Executors.newFixedThreadPool(creditPacer != null && debitPacer != null ? workers * 2 : workers);
+		// Credit Transactions Threads
+		submitWorkers(true, creditPacer, workers);
+		// Debit Transactions Threads
+		submitWorkers(false, debitPacer, workers);
 
 		isRunning = true;
-		log.info("Producer started");
+		log.info("Producer started with {} {} workers per transaction type", workers, async ? "async" : "blocking");
+	}
+
+	/**
+	 * Pacer of one transaction type
+	 *
+	 * @param transactionsPerSecond rate of the transaction type
+	 * @return the pacer, or null when the rate is 0 and no workers are run
+	 */
+	private RatePacer ratePacer(double transactionsPerSecond) {
+		if (transactionsPerSecond == 0) {
+			return null;
+		}
+		try {
+			return new RatePacer(transactionsPerSecond, burst, catchUp);
+		} catch (IllegalArgumentException e) {
+			throw new TransactionProducerException("Invalid transaction rate: " + e.getMessage(),
+					HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 * Submit the workers of one transaction type, sharing its pacer and in-flight
+	 * window
+	 *
+	 * @param isCredit  credit or debit
+	 * @param ratePacer pacer of the transaction type, null to run no workers
+	 * @param workers   number of workers
+	 */
+	private void submitWorkers(boolean isCredit, RatePacer ratePacer, int workers) {
+		if (ratePacer == null) {
+			log.info("No {} workers, the rate is 0", isCredit ? "credit" : "debit");
+			return;
+		}
+		Semaphore window = new Semaphore(inFlight);
+		for (int i = 0; i < workers; i++) {
+			executorService.submit(async
+					? new AsyncProducerTask(transactionGeneratorService, asyncBalanceTrackerApiClient, isCredit,
+							ratePacer, window)
+					: new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, isCredit, ratePacer));
+		}
 	}
 
 	/**
@@ -0,0 +1,61 @@
+package com.bankaccount.transactionproducer.task;
+
+import java.util.concurrent.Semaphore;
+
+import com.bankaccount.transactionproducer.client.AsyncBalanceTrackerApiClient;
+import com.bankaccount.transactionproducer.dto.Transaction;
+import com.bankaccount.transactionproducer.service.TransactionGeneratorService;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Class to run the produce transaction task without waiting for the
+ * responses. Each transaction waits for its slot from the pacer and for room
+ * in the in-flight window, then is sent and its permit returned when the
+ * response arrives. A full window holds the task back, so a slow API slows the
+ * producer down instead of piling up requests.
+ */
+@AllArgsConstructor
+@Slf4j
+public class AsyncProducerTask implements Runnable {
+
+	private final TransactionGeneratorService transactionGeneratorService;
+	private final AsyncBalanceTrackerApiClient asyncBalanceTrackerApiClient;
+	private final boolean isCredit;
+	private final RatePacer ratePacer;
+	private final Semaphore inFlight;
+
+	@Override
+	public void run() {
+		log.debug("run : entry");
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				// Wait for the next slot to maintain transaction rate
+				ratePacer.acquire();
+				// Wait for room in the in-flight window
+				inFlight.acquire();
+				Transaction trans = isCredit ? transactionGeneratorService.generateCredit()
+						: transactionGeneratorService.generateDebit();
+				// Send transaction to Balance Tracker API
+				send(trans);
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.error("Exception occured while producing transaction", e);
+		}
+		log.debug("run : exit");
+
+	}
+
+	private void send(Transaction trans) {
+		try {
+			asyncBalanceTrackerApiClient.sendTransaction(trans).whenComplete((isSent, error) -> inFlight.release());
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+	}
+
+}
@@ -1,7 +1,5 @@
 package com.bankaccount.transactionproducer.task;
 
-import java.util.concurrent.TimeUnit;
-
 import com.bankaccount.transactionproducer.client.BalanceTrackerApiClient;
 import com.bankaccount.transactionproducer.dto.Transaction;
 import com.bankaccount.transactionproducer.service.TransactionGeneratorService;
@@ -10,7 +8,8 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Class to run the produce transaction task
+ * Class to run the produce transaction task. Each transaction waits for its
+ * slot from the pacer before it is generated and sent.
  */
 @AllArgsConstructor
 @Slf4j
@@ -19,21 +18,19 @@ public class ProducerTask implements Runnable {
 	private final TransactionGeneratorService transactionGeneratorService;
 	private final BalanceTrackerApiClient balanceTrackerApiClient;
 	private final boolean isCredit;
-	private final int transactionsPerSecond;
+	private final RatePacer ratePacer;
 
 	@Override
 	public void run() {
 		log.debug("run : entry");
 		try {
-			// Calculate delay between transactions based on transactions per second (tps)
-			long milliSeconds = 1000 / transactionsPerSecond;
 			while (!Thread.currentThread().isInterrupted()) {
+				// Wait for the next slot to maintain transaction rate
+				ratePacer.acquire();
 				Transaction trans = isCredit ? transactionGeneratorService.generateCredit()
 						: transactionGeneratorService.generateDebit();
 				// Send transaction to Balance Tracker API
 				balanceTrackerApiClient.sendTransaction(trans);
-				// Sleep to maintain transaction rate
-				TimeUnit.MILLISECONDS.sleep(milliSeconds);
 			}
 		} catch (InterruptedException ie) {
 			Thread.currentThread().interrupt();
@@ -0,0 +1,118 @@
+package com.bankaccount.transactionproducer.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces transactions to a fixed rate with the Generic Cell Rate Algorithm, a
+ * token bucket kept as the theoretical arrival time of the next transaction.
+ * The schedule is absolute on the nanosecond clock, so the time a send takes
+ * and the jitter of a wake-up are absorbed by the next wait instead of adding
+ * up, and fractional rates keep their exact interval. Up to the burst size
+ * transactions may go back-to-back ahead of the schedule. Waits longer than the
+ * spin threshold sleep, the rest is spun, as a sleep overshoots by tens of
+ * microseconds, longer than the interval at high rates.
+ * <p>
+ * Workers sharing a rate share a pacer: each takes its slot under the lock and
+ * waits for it outside, so together they keep the one rate.
+ */
+public class RatePacer {
+
+	/**
+	 * What to do with the transactions a sender fell behind on, after a slow send
+	 * or a stall
+	 */
+	public enum CatchUp {
+		/**
+		 * Send them back-to-back until back on schedule, so the average rate is kept
+		 */
+		FULL,
+		/**
+		 * Drop those beyond the burst, so the rate never goes above the burst
+		 */
+		SKIP
+	}
+
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	/**
+	 * Waits shorter than this are spun instead of slept
+	 */
+	private static final long SPIN_NANOS = 100_000L;
+
+	private final double intervalNanos;
+	private final double toleranceNanos;
+	private final CatchUp catchUp;
+	private final LongSupplier clock;
+
+	private boolean started;
+	private long origin;
+
+	/**
+	 * Theoretical arrival time of the next transaction, in nanos from the first
+	 */
+	private double arrival;
+
+	/**
+	 * @param transactionsPerSecond rate, may be fractional
+	 * @param burst                 max transactions sent back-to-back
+	 * @param catchUp               catch-up policy
+	 */
+	public RatePacer(double transactionsPerSecond, int burst, CatchUp catchUp) {
+		this(transactionsPerSecond, burst, catchUp, System::nanoTime);
+	}
+
+	RatePacer(double transactionsPerSecond, int burst, CatchUp catchUp, LongSupplier clock) {
+		if (!(transactionsPerSecond > 0) || Double.isInfinite(transactionsPerSecond)) {
+			throw new IllegalArgumentException("Transactions per second must be positive: " + transactionsPerSecond);
+		}
+		if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be at least 1: " + burst);
+		}
+		this.intervalNanos = NANOS_PER_SECOND / transactionsPerSecond;
+		this.toleranceNanos = (burst - 1) * intervalNanos;
+		this.catchUp = catchUp;
+		this.clock = clock;
+	}
+
+	/**
+	 * Wait until the next transaction is due
+	 *
+	 * @throws InterruptedException when interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		long deadline = reserve();
+		long remaining = deadline - clock.getAsLong();
+		while (remaining > 0) {
+			if (remaining > SPIN_NANOS) {
+				TimeUnit.NANOSECONDS.sleep(remaining - SPIN_NANOS);
+			} else if (Thread.interrupted()) {
+				throw new InterruptedException();
+			} else {
+				Thread.onSpinWait();
+			}
+			remaining = deadline - clock.getAsLong();
+		}
+	}
+
+	/**
+	 * Take the next transaction slot
+	 *
+	 * @return clock time the transaction is due at, in the past when due already
+	 */
+	synchronized long reserve() {
+		long now = clock.getAsLong();
+		if (!started) {
+			origin = now;
+			started = true;
+		}
+		double elapsed = now - origin;
+		if (catchUp == CatchUp.SKIP) {
+			arrival = Math.max(arrival, elapsed);
+		}
+		double due = arrival - toleranceNanos;
+		arrival += intervalNanos;
+		return origin + (long) Math.ceil(due);
+	}
+
+}
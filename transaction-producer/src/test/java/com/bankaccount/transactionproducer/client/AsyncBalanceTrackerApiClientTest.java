@@ -0,0 +1,135 @@
+package com.bankaccount.transactionproducer.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.bankaccount.transactionproducer.dto.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * test cases to test AsyncBalanceTrackerApiClient operations
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncBalanceTrackerApiClientTest {
+
+	private static final URI ENDPOINT = URI.create("http://localhost:8091/api/bankaccount/v1/transactions");
+
+	private AsyncBalanceTrackerApiClient apiClient;
+
+	@Mock
+	HttpClient httpClient;
+
+	@Mock
+	HttpResponse<String> response;
+
+	private final Transaction transaction = Transaction.builder().transactionId("DEB123")
+			.amount(BigDecimal.valueOf(100)).build();
+
+	@BeforeEach
+	void setup() {
+		apiClient = new AsyncBalanceTrackerApiClient(httpClient, new ObjectMapper());
+		ReflectionTestUtils.setField(apiClient, "baseUrl", "http://localhost:8091");
+		ReflectionTestUtils.setField(apiClient, "path", "/api/bankaccount/v1/transactions");
+		ReflectionTestUtils.setField(apiClient, "retryCount", 3);
+		ReflectionTestUtils.setField(apiClient, "retryDelayMs", 10);
+	}
+
+	/**
+	 * Verifies Send transaction to the Balance tracker API
+	 */
+	@Test
+	void testSendTransactionWithValidTransaction() {
+
+		// given
+		when(response.statusCode()).thenReturn(200);
+		when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+		// when
+		boolean isSent = apiClient.sendTransaction(transaction).join();
+
+		// then
+		assertTrue(isSent);
+		ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+		verify(httpClient, times(1)).sendAsync(request.capture(), any());
+		assertEquals(ENDPOINT, request.getValue().uri());
+		assertEquals("POST", request.getValue().method());
+	}
+
+	/**
+	 * Verifies a client error is not retried
+	 */
+	@Test
+	void testSendTransactionWithClientError() {
+
+		// given
+		when(response.statusCode()).thenReturn(400);
+		when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+		// when
+		boolean isSent = apiClient.sendTransaction(transaction).join();
+
+		// then
+		assertFalse(isSent);
+		verify(httpClient, times(1)).sendAsync(any(), any());
+	}
+
+	/**
+	 * Verifies a failed send is retried until it goes through
+	 */
+	@Test
+	void testSendTransactionRetriesUntilSent() {
+
+		// given
+		when(response.statusCode()).thenReturn(503, 200);
+		when(httpClient.<String>sendAsync(any(), any()))
+				.thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection refused")))
+				.thenReturn(CompletableFuture.completedFuture(response));
+
+		// when
+		boolean isSent = apiClient.sendTransaction(transaction).join();
+
+		// then
+		assertTrue(isSent);
+		verify(httpClient, times(3)).sendAsync(any(), any());
+	}
+
+	/**
+	 * Verifies the send gives up after the retry count
+	 */
+	@Test
+	void testSendTransactionFailsAfterRetries() {
+
+		// given
+		when(httpClient.<String>sendAsync(any(), any()))
+				.thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+
+		// when
+		boolean isSent = apiClient.sendTransaction(transaction).join();
+
+		// then
+		assertFalse(isSent);
+		verify(httpClient, times(3)).sendAsync(any(), any());
+	}
+
+}
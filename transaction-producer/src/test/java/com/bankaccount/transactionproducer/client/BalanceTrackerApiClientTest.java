@@ -4,13 +4,13 @@
 package com.bankaccount.transactionproducer.client;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.net.URI;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,6 +33,8 @@ import com.bankaccount.transactionproducer.dto.Transaction;
 @ExtendWith(MockitoExtension.class)
 class BalanceTrackerApiClientTest {
 
+	private static final URI ENDPOINT = URI.create("http://localhost:8091/api/bankaccount/v1/transactions");
+
 	@InjectMocks
 	private BalanceTrackerApiClient apiClient;
 
@@ -56,12 +58,12 @@ class BalanceTrackerApiClientTest {
 		// given
 		Transaction transaction = Transaction.builder().transactionId("DEB123").amount(BigDecimal.valueOf(100)).build();
 
-		when(restTemplate.postForEntity(anyString(), eq(transaction), any())).thenReturn(ResponseEntity.ok().build());
+		when(restTemplate.postForEntity(eq(ENDPOINT), eq(transaction), any())).thenReturn(ResponseEntity.ok().build());
 		// when
 		apiClient.sendTransaction(transaction);
 
 		// then
-		verify(restTemplate, times(1)).postForEntity(anyString(), eq(transaction), any());
+		verify(restTemplate, times(1)).postForEntity(eq(ENDPOINT), eq(transaction), any());
 
 	}
 
@@ -75,14 +77,14 @@ class BalanceTrackerApiClientTest {
 		// given
 		Transaction transaction = Transaction.builder().transactionId("DEB123").amount(BigDecimal.valueOf(100)).build();
 
-		when(restTemplate.postForEntity(anyString(), eq(transaction), any()))
+		when(restTemplate.postForEntity(eq(ENDPOINT), eq(transaction), any()))
 				.thenThrow(new RestClientException("Temporary failure"))
 				.thenThrow(new RestClientException("Temporary failure")).thenReturn(ResponseEntity.ok().build());
 		// when
 		apiClient.sendTransaction(transaction);
 
 		// then
-		verify(restTemplate, times(3)).postForEntity(anyString(), eq(transaction), any());
+		verify(restTemplate, times(3)).postForEntity(eq(ENDPOINT), eq(transaction), any());
 
 	}
 
@@ -95,13 +97,13 @@ class BalanceTrackerApiClientTest {
 		// given
 		Transaction transaction = Transaction.builder().transactionId("DEB123").amount(BigDecimal.valueOf(100)).build();
 
-		when(restTemplate.postForEntity(anyString(), eq(transaction), any()))
+		when(restTemplate.postForEntity(eq(ENDPOINT), eq(transaction), any()))
 				.thenThrow(new RestClientException("Failure"));
 		// when
 		apiClient.sendTransaction(transaction);
 
 		// then
-		verify(restTemplate, times(3)).postForEntity(anyString(), eq(transaction), any());
+		verify(restTemplate, times(3)).postForEntity(eq(ENDPOINT), eq(transaction), any());
 
 	}
 
@@ -114,13 +116,33 @@ class BalanceTrackerApiClientTest {
 		// given
 		Transaction transaction = Transaction.builder().transactionId("DEB123").amount(BigDecimal.valueOf(100)).build();
 
-		when(restTemplate.postForEntity(anyString(), eq(transaction), any()))
+		when(restTemplate.postForEntity(eq(ENDPOINT), eq(transaction), any()))
 				.thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
 		// when
 		apiClient.sendTransaction(transaction);
 
 		// then
-		verify(restTemplate, times(1)).postForEntity(anyString(), eq(transaction), any());
+		verify(restTemplate, times(1)).postForEntity(eq(ENDPOINT), eq(transaction), any());
+
+	}
+
+	/*
+	 * Verifies the endpoint is built once and reused by later sends
+	 */
+	@Test
+	void testEndpointBuiltOnce() {
+
+		// given
+		Transaction transaction = Transaction.builder().transactionId("DEB123").amount(BigDecimal.valueOf(100)).build();
+		when(restTemplate.postForEntity(eq(ENDPOINT), eq(transaction), any())).thenReturn(ResponseEntity.ok().build());
+		apiClient.sendTransaction(transaction);
+
+		// when
+		ReflectionTestUtils.setField(apiClient, "baseUrl", "http://localhost:9999");
+		apiClient.sendTransaction(transaction);
+
+		// then
+		verify(restTemplate, times(2)).postForEntity(eq(ENDPOINT), eq(transaction), any());
 
 	}
 
@@ -0,0 +1,84 @@
+package com.bankaccount.transactionproducer.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.http.HttpClient;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * test cases to test the Rest Template request factories
+ */
+class RestTemplateConfigTest {
+
+	private final RestTemplateConfig config = new RestTemplateConfig();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(config, "maxConnections", 8);
+		ReflectionTestUtils.setField(config, "connectTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(config, "readTimeoutMs", 5000L);
+		ReflectionTestUtils.setField(config, "keepAliveMs", 15000L);
+	}
+
+	/**
+	 * Verifies the default request factory pools connections and exposes the pool
+	 * metrics
+	 */
+	@Test
+	void testPooledRequestFactory() throws Exception {
+
+		// when
+		ClientHttpRequestFactory requestFactory = config.clientHttpRequestFactory(meterRegistry);
+
+		// then
+		assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, requestFactory);
+		assertEquals(8.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+				.tag("httpclient", RestTemplateConfig.POOL_NAME).gauge().value());
+		((HttpComponentsClientHttpRequestFactory) requestFactory).destroy();
+	}
+
+	/**
+	 * Verifies h2c switches to the JDK HttpClient, without pool metrics
+	 */
+	@Test
+	void testH2cRequestFactory() {
+
+		// given
+		ReflectionTestUtils.setField(config, "h2c", true);
+
+		// when
+		ClientHttpRequestFactory requestFactory = config.clientHttpRequestFactory(meterRegistry);
+
+		// then
+		assertInstanceOf(JdkClientHttpRequestFactory.class, requestFactory);
+		assertTrue(meterRegistry.find("httpcomponents.httpclient.pool.total.max").gauges().isEmpty());
+	}
+
+	/**
+	 * Verifies the JDK HttpClient speaks HTTP/1.1 unless h2c is enabled
+	 */
+	@Test
+	void testHttpClientVersion() {
+
+		// when
+		HttpClient http1 = config.httpClient();
+		ReflectionTestUtils.setField(config, "h2c", true);
+		HttpClient h2c = config.httpClient();
+
+		// then
+		assertEquals(HttpClient.Version.HTTP_1_1, http1.version());
+		assertEquals(HttpClient.Version.HTTP_2, h2c.version());
+	}
+
+}
@@ -4,8 +4,20 @@
 package com.bankaccount.transactionproducer.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,7 +28,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.bankaccount.transactionproducer.client.AsyncBalanceTrackerApiClient;
 import com.bankaccount.transactionproducer.client.BalanceTrackerApiClient;
+import com.bankaccount.transactionproducer.dto.Transaction;
 import com.bankaccount.transactionproducer.exception.TransactionProducerException;
 
 /**
@@ -34,6 +48,9 @@ class TransactionProducerServiceTest {
 	@Mock
 	private BalanceTrackerApiClient balanceTrackerApiClient;
 
+	@Mock
+	private AsyncBalanceTrackerApiClient asyncBalanceTrackerApiClient;
+
 	@BeforeEach
 	void setup() {
 
@@ -56,6 +73,97 @@ class TransactionProducerServiceTest {
 		transactionProducerService.shutdown();
 	}
 
+	/**
+	 * Verifies in async mode the workers of each type stop sending once the
+	 * in-flight window is full of unanswered transactions
+	 */
+	@Test
+	void testAsyncInFlightWindowBoundsSends() throws InterruptedException {
+		// given
+		ReflectionTestUtils.setField(transactionProducerService, "threadPoolCount", 4);
+		ReflectionTestUtils.setField(transactionProducerService, "async", true);
+		ReflectionTestUtils.setField(transactionProducerService, "inFlight", 3);
+		ReflectionTestUtils.setField(transactionProducerService, "creditsPerSec", 1000);
+		ReflectionTestUtils.setField(transactionProducerService, "debitsPerSec", 1000);
+		Transaction credit = Transaction.builder().transactionId("CRE-1").amount(new BigDecimal("200")).build();
+		Transaction debit = Transaction.builder().transactionId("DEB-1").amount(new BigDecimal("-200")).build();
+		when(generatorService.generateCredit()).thenReturn(credit);
+		when(generatorService.generateDebit()).thenReturn(debit);
+		when(asyncBalanceTrackerApiClient.sendTransaction(any())).thenAnswer(invocation -> new CompletableFuture<>());
+
+		// when
+		transactionProducerService.startProducing();
+		Thread.sleep(300);
+
+		// then
+		verify(asyncBalanceTrackerApiClient, times(3)).sendTransaction(credit);
+		verify(asyncBalanceTrackerApiClient, times(3)).sendTransaction(debit);
+
+		// cleanup
+		transactionProducerService.shutdown();
+	}
+
+	/**
+	 * Verifies the workers of a type share one pacer, so together they keep its
+	 * rate
+	 */
+	@Test
+	void testWorkersShareOneRate() throws InterruptedException {
+		// given
+		ReflectionTestUtils.setField(transactionProducerService, "threadPoolCount", 8);
+		ReflectionTestUtils.setField(transactionProducerService, "creditsPerSec", 20);
+		ReflectionTestUtils.setField(transactionProducerService, "debitsPerSec", 0);
+		Transaction credit = Transaction.builder().transactionId("CRE-1").amount(new BigDecimal("200")).build();
+		when(generatorService.generateCredit()).thenReturn(credit);
+		AtomicInteger sent = new AtomicInteger();
+		doAnswer(invocation -> sent.incrementAndGet()).when(balanceTrackerApiClient).sendTransaction(credit);
+
+		// when
+		transactionProducerService.startProducing();
+		Thread.sleep(475);
+		transactionProducerService.shutdown();
+
+		// then
+		assertTrue(sent.get() >= 9 && sent.get() <= 11, "Sent " + sent.get() + " credits in 475 ms at 20 per second");
+	}
+
+	/**
+	 * Verifies a rate of 0 runs no workers for that type
+	 */
+	@Test
+	void testStartProducerWithZeroDebitRate() {
+		// given
+		ReflectionTestUtils.setField(transactionProducerService, "debitsPerSec", 0);
+
+		// when
+		transactionProducerService.startProducing();
+
+		// then
+		assertTrue(transactionProducerService.isRunning());
+
+		// cleanup
+		transactionProducerService.shutdown();
+	}
+
+	/**
+	 * Verifies a negative rate fails the start before any worker runs
+	 */
+	@Test
+	void testStartProducerWithNegativeRate() {
+		// given
+		ReflectionTestUtils.setField(transactionProducerService, "debitsPerSec", -1);
+
+		// when
+		TransactionProducerException tpe = assertThrows(TransactionProducerException.class,
+				() -> transactionProducerService.startProducing());
+
+		// then
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, tpe.getStatus());
+		assertFalse(transactionProducerService.isRunning());
+		assertNull(ReflectionTestUtils.getField(transactionProducerService, "executorService"));
+		verifyNoInteractions(generatorService);
+	}
+
 	/**
 	 * Verifies start producer with duplicate start
 	 */
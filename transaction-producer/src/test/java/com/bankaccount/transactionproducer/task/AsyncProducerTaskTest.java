@@ -0,0 +1,72 @@
+package com.bankaccount.transactionproducer.task;
+
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.bankaccount.transactionproducer.client.AsyncBalanceTrackerApiClient;
+import com.bankaccount.transactionproducer.dto.Transaction;
+import com.bankaccount.transactionproducer.service.TransactionGeneratorService;
+import com.bankaccount.transactionproducer.task.RatePacer.CatchUp;
+
+/**
+ * Class to test Async Producer Task
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncProducerTaskTest {
+
+	@Mock
+	private TransactionGeneratorService transactionGeneratorService;
+
+	@Mock
+	private AsyncBalanceTrackerApiClient asyncBalanceTrackerApiClient;
+
+	@Test
+	void testProduceCreditTransactions() throws InterruptedException {
+		// given
+		Transaction trans = Transaction.builder().transactionId("CRE-1234").amount(new BigDecimal("200")).build();
+		AsyncProducerTask task = new AsyncProducerTask(transactionGeneratorService, asyncBalanceTrackerApiClient, true,
+				new RatePacer(100, 1, CatchUp.FULL), new Semaphore(4));
+		when(transactionGeneratorService.generateCredit()).thenReturn(trans);
+		when(asyncBalanceTrackerApiClient.sendTransaction(trans)).thenReturn(CompletableFuture.completedFuture(true));
+
+		// when
+		Thread thread = new Thread(task);
+		thread.start();
+		Thread.sleep(300);
+		thread.interrupt();
+
+		// then
+		verify(asyncBalanceTrackerApiClient, atLeast(5)).sendTransaction(trans);
+	}
+
+	@Test
+	void testInFlightWindowHoldsBack() throws InterruptedException {
+		// given
+		Transaction trans = Transaction.builder().transactionId("DEB-1234").amount(new BigDecimal("200")).build();
+		AsyncProducerTask task = new AsyncProducerTask(transactionGeneratorService, asyncBalanceTrackerApiClient, false,
+				new RatePacer(1000, 1, CatchUp.FULL), new Semaphore(2));
+		when(transactionGeneratorService.generateDebit()).thenReturn(trans);
+		when(asyncBalanceTrackerApiClient.sendTransaction(trans)).thenReturn(new CompletableFuture<>());
+
+		// when
+		Thread thread = new Thread(task);
+		thread.start();
+		Thread.sleep(300);
+		thread.interrupt();
+
+		// then
+		verify(asyncBalanceTrackerApiClient, times(2)).sendTransaction(trans);
+	}
+
+}
@@ -14,6 +14,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import com.bankaccount.transactionproducer.client.BalanceTrackerApiClient;
 import com.bankaccount.transactionproducer.dto.Transaction;
 import com.bankaccount.transactionproducer.service.TransactionGeneratorService;
+import com.bankaccount.transactionproducer.task.RatePacer.CatchUp;
 
 /**
  * Class to test Producer Task
@@ -31,7 +32,8 @@ class ProducerTaskTest {
 	void testProduceCreditTransactions() throws InterruptedException {
 		// given
 		Transaction trans = Transaction.builder().transactionId("CRI-1234").amount(new BigDecimal("200")).build();
-		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, true, 2);
+		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, true,
+				new RatePacer(2, 1, CatchUp.FULL));
 		when(transactionGeneratorService.generateCredit()).thenReturn(trans);
 
 		// when
@@ -49,7 +51,8 @@ class ProducerTaskTest {
 	void testProduceDebitTransactions() throws InterruptedException {
 		// given
 		Transaction trans = Transaction.builder().transactionId("DEB-1234").amount(new BigDecimal("200")).build();
-		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, false, 2);
+		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, false,
+				new RatePacer(2, 1, CatchUp.FULL));
 		when(transactionGeneratorService.generateDebit()).thenReturn(trans);
 
 		// when
@@ -66,7 +69,8 @@ class ProducerTaskTest {
 	@Test
 	void testUnexpectedExceptionHandle() throws InterruptedException {
 		// given
-		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, false, 2);
+		ProducerTask task = new ProducerTask(transactionGeneratorService, balanceTrackerApiClient, false,
+				new RatePacer(2, 1, CatchUp.FULL));
 		when(transactionGeneratorService.generateDebit()).thenThrow(new RuntimeException("Unexpected failure"));
 
 		// when
@@ -0,0 +1,229 @@
+package com.bankaccount.transactionproducer.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.bankaccount.transactionproducer.task.RatePacer.CatchUp;
+
+/**
+ * Class to test Rate Pacer
+ */
+class RatePacerTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+	/**
+	 * Verifies a fractional rate keeps its exact interval
+	 */
+	@DisplayName("Should space transactions by the exact interval of a fractional rate")
+	@Test
+	void testFractionalRate() {
+		// given
+		RatePacer pacer = new RatePacer(0.4, 1, CatchUp.FULL, clock::get);
+
+		// when
+		long first = waitFor(pacer);
+		long second = waitFor(pacer);
+
+		// then
+		assertEquals(0, first);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(2500), second);
+	}
+
+	/**
+	 * Verifies the time a send takes is absorbed by the next wait
+	 */
+	@DisplayName("Should deduct the send time from the next wait")
+	@Test
+	void testSendTimeDeducted() {
+		// given
+		RatePacer pacer = new RatePacer(10, 1, CatchUp.FULL, clock::get);
+		waitFor(pacer);
+
+		// when
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+		long wait = waitFor(pacer);
+
+		// then
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(70), wait);
+	}
+
+	/**
+	 * Verifies the burst goes back-to-back and the schedule holds after it
+	 */
+	@DisplayName("Should send the burst back-to-back then keep the rate")
+	@Test
+	void testBurst() {
+		// given
+		RatePacer pacer = new RatePacer(100, 3, CatchUp.FULL, clock::get);
+
+		// when / then
+		assertEquals(0, waitFor(pacer));
+		assertEquals(0, waitFor(pacer));
+		assertEquals(0, waitFor(pacer));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(10), waitFor(pacer));
+	}
+
+	/**
+	 * Verifies the transactions missed in a stall are all sent back-to-back with
+	 * full catch-up
+	 */
+	@DisplayName("Should catch up every missed transaction with full catch-up")
+	@Test
+	void testFullCatchUp() {
+		// given
+		RatePacer pacer = new RatePacer(100, 1, CatchUp.FULL, clock::get);
+		waitFor(pacer);
+
+		// when
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+
+		// then
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, waitFor(pacer));
+		}
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(10), waitFor(pacer));
+	}
+
+	/**
+	 * Verifies the transactions missed in a stall beyond the burst are dropped
+	 * with skip
+	 */
+	@DisplayName("Should drop missed transactions beyond the burst with skip")
+	@Test
+	void testSkipCatchUp() {
+		// given
+		RatePacer pacer = new RatePacer(100, 2, CatchUp.SKIP, clock::get);
+		waitFor(pacer);
+		waitFor(pacer);
+
+		// when
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+
+		// then
+		assertEquals(0, waitFor(pacer));
+		assertEquals(0, waitFor(pacer));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(10), waitFor(pacer));
+	}
+
+	/**
+	 * Verifies the schedule does not drift at 100k transactions per second
+	 */
+	@DisplayName("Should keep the schedule at 100k transactions per second")
+	@Test
+	void testHighRateSchedule() {
+		// given
+		RatePacer pacer = new RatePacer(100_000, 1, CatchUp.FULL, clock::get);
+
+		// when
+		long waited = 0;
+		for (int i = 0; i < 100_000; i++) {
+			long wait = waitFor(pacer);
+			clock.addAndGet(wait);
+			waited += wait;
+		}
+
+		// then
+		assertEquals(TimeUnit.SECONDS.toNanos(1) - TimeUnit.MICROSECONDS.toNanos(10), waited);
+	}
+
+	/**
+	 * Verifies the measured rate matches the configured one on the real clock
+	 */
+	@DisplayName("Should send at the configured rate")
+	@Test
+	void testMeasuredRate() throws InterruptedException {
+		// given
+		RatePacer pacer = new RatePacer(20_000, 1, CatchUp.FULL);
+
+		// when
+		long start = System.nanoTime();
+		for (int i = 0; i <= 4000; i++) {
+			pacer.acquire();
+		}
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// then
+		assertTrue(elapsedMs >= 199 && elapsedMs < 230, "Elapsed " + elapsedMs + " ms for 4000 intervals");
+	}
+
+	/**
+	 * Verifies workers sharing a pacer keep its rate together
+	 */
+	@DisplayName("Should keep the rate across workers sharing the pacer")
+	@Test
+	void testSharedRate() throws InterruptedException {
+		// given
+		RatePacer pacer = new RatePacer(20_000, 1, CatchUp.FULL);
+		pacer.acquire();
+		Thread[] workers = new Thread[4];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(() -> {
+				try {
+					for (int j = 0; j < 1000; j++) {
+						pacer.acquire();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+
+		// when
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// then
+		assertTrue(elapsedMs >= 199 && elapsedMs < 230, "Elapsed " + elapsedMs + " ms for 4000 intervals");
+	}
+
+	/**
+	 * Verifies the slot is an absolute time, however late the worker asks
+	 */
+	@DisplayName("Should return the slot as an absolute clock time")
+	@Test
+	void testAbsoluteDeadline() {
+		// given
+		RatePacer pacer = new RatePacer(10, 1, CatchUp.FULL, clock::get);
+		long start = clock.get();
+		pacer.reserve();
+
+		// when
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+		long deadline = pacer.reserve();
+
+		// then
+		assertEquals(start + TimeUnit.MILLISECONDS.toNanos(100), deadline);
+	}
+
+	/**
+	 * Verifies a rate that is not positive is rejected
+	 */
+	@DisplayName("Should reject a rate that is not positive")
+	@Test
+	void testInvalidRate() {
+		assertThrows(IllegalArgumentException.class, () -> new RatePacer(0, 1, CatchUp.FULL));
+		assertThrows(IllegalArgumentException.class, () -> new RatePacer(10, 0, CatchUp.FULL));
+	}
+
+	/**
+	 * Nanos from now until the next slot, 0 when due already
+	 */
+	private long waitFor(RatePacer pacer) {
+		return Math.max(0, pacer.reserve() - clock.get());
+	}
+
+}